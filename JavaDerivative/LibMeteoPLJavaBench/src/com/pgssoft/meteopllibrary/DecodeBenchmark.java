@@ -0,0 +1,77 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PNG bytes to parsed ModelUM: ImageIO against PngDecoder, alone and followed
+ * by the parse. The file is read into memory in setup, so no disk IO is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DecodeBenchmark {
+
+    @Param({"mgram1.png", "mgram2.png", "mgram_snow.png"})
+    public String image;
+
+    private byte[] png;
+    private Utils utils;
+    private PngDecoder decoder;
+
+    @Setup
+    public void setup() throws IOException {
+        png = SampleImages.bytes(image);
+        utils = SampleImages.utils();
+        decoder = new PngDecoder();
+    }
+
+    @TearDown
+    public void tearDown() {
+        decoder.end();
+    }
+
+    @Benchmark
+    public BufferedImage imageIO() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+
+    @Benchmark
+    public PixelSource pngDecoder() throws IOException {
+        return decoder.decode(png, 0, png.length, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public PixelSource pngDecoderModelUMRows() throws IOException {
+        return decoder.decode(png, 0, png.length, PngDecoder.MODELUM_ROWS);
+    }
+
+    @Benchmark
+    public ModelUM imageIOAndParse() throws IOException {
+        return new ModelUM(PixelSource.of(ImageIO.read(new ByteArrayInputStream(png))), utils, true);
+    }
+
+    @Benchmark
+    public ModelUM pngDecoderAndParse() throws IOException {
+        return new ModelUM(decoder.decode(png, 0, png.length, PngDecoder.MODELUM_ROWS), utils, true);
+    }
+}
@@ -0,0 +1,83 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forecast store queries on POINTS grid points with RUNS model runs each, six
+ * hours apart: latest run of a point, and all runs covering a time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ForecastStoreBenchmark {
+
+    private static final int POINTS = 1000;
+    private static final int RUNS = 8;
+    private static final long RUN_STEP = 6 * 60 * 60 * 1000L;
+
+    private Path directory;
+    private ForecastStore store;
+    private long base;
+    private long next;
+
+    @Setup
+    public void setup() throws IOException {
+        ModelUMResult result = new ModelUMResult();
+        new ModelUM(SampleImages.utils(), true).parse(SampleImages.source("mgram1.png"), result);
+        base = result.timestamp;
+        directory = Files.createTempDirectory("meteopl");
+        store = new ForecastStore(directory);
+        for (int run = 0; run < RUNS; run++) {
+            result.timestamp = base + run * RUN_STEP;
+            for (int point = 0; point < POINTS; point++) {
+                store.append(point, result);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private long nextPoint() {
+        next = (next + 7919) % POINTS;
+        return next;
+    }
+
+    @Benchmark
+    public double latest() throws IOException {
+        return store.latest(nextPoint()).getSample(ModelUM.TYPE_TEMPERATURE, 100);
+    }
+
+    @Benchmark
+    public List<ForecastStore.Run> covering() throws IOException {
+        return store.covering(nextPoint(), base + RUNS * RUN_STEP);
+    }
+}
@@ -0,0 +1,70 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ModelUMBatch on the sample files repeated to a batch of FILES, from disk
+ * (page cache) to parsed results, run in the calling thread and on the common
+ * ForkJoinPool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ModelUMBatchBenchmark {
+
+    private static final int FILES = 96;
+
+    @Param({"caller", "forkjoin"})
+    public String executor;
+
+    private List<Path> files;
+    private ModelUMBatch batch;
+
+    @Setup
+    public void setup() throws IOException {
+        files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            files.add(SampleImages.file(SampleImages.NAMES[i % SampleImages.NAMES.length]).toPath());
+        }
+        Executor exec = executor.equals("caller") ? Runnable::run : ForkJoinPool.commonPool();
+        batch = new ModelUMBatch(SampleImages.utils(), true, exec, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        batch.close();
+    }
+
+    @Benchmark
+    public List<ModelUMBatch.Item> parse() throws InterruptedException {
+        List<ModelUMBatch.Item> items = batch.parse(files);
+        for (ModelUMBatch.Item item : items) {
+            if (item.getError() != null) {
+                throw new IllegalStateException(item.getFile() + " failed", item.getError());
+            }
+        }
+        return items;
+    }
+}
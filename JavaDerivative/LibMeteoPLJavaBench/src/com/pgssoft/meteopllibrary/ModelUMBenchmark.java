@@ -0,0 +1,89 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of new ModelUM(int[], Utils, boolean) on the bundled samples,
+ * of parsing TYPE_INT_RGB raster and the decoded palette image in place, of a
+ * lazy ModelUM asked for pressure only and of one reused parser writing into
+ * one reused ModelUMResult, which should report no allocation at all.
+ * Image decoding is done once in setup and is not measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ModelUMBenchmark {
+
+    @Param({"mgram1.png", "mgram2.png", "mgram_snow.png"})
+    public String image;
+
+    @Param({"true", "false"})
+    public boolean heuristic;
+
+    private int[] pixels;
+    private BufferedImage rgbImage;
+    private BufferedImage indexedImage;
+    private Utils utils;
+    private PixelSource source;
+    private ModelUM parser;
+    private ModelUMResult result;
+
+    @Setup
+    public void setup() throws IOException {
+        pixels = SampleImages.pixels(image);
+        utils = SampleImages.utils();
+
+        BufferedImage img = SampleImages.image(image);
+        indexedImage = img;
+        rgbImage = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgbImage.getGraphics().drawImage(img, 0, 0, null);
+
+        source = PixelSource.of(indexedImage);
+        parser = new ModelUM(utils, heuristic);
+        result = new ModelUMResult();
+    }
+
+    @Benchmark
+    public ModelUM parse() {
+        return new ModelUM(pixels, utils, heuristic);
+    }
+
+    @Benchmark
+    public ModelUM parseRaster() {
+        return new ModelUM(PixelSource.of(rgbImage), utils, heuristic);
+    }
+
+    @Benchmark
+    public ModelUM parseIndexed() {
+        return new ModelUM(PixelSource.of(indexedImage), utils, heuristic);
+    }
+
+    @Benchmark
+    public ModelUMResult parseReused() {
+        parser.parse(source, result);
+        return result;
+    }
+
+    @Benchmark
+    public double[] parseLazyPressureOnly() {
+        ModelUM model = new ModelUM(pixels, utils, heuristic, true);
+        return model.getSamples(model.TYPE_PRESSURE_HPA);
+    }
+}
@@ -0,0 +1,83 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One ModelUM shared by several threads, each parsing the samples in turn into
+ * its own ModelUMResult.
+ *
+ * This is also a stress check of the parser's thread safety: every parse is
+ * compared with the result of a single threaded parse of the same image and a
+ * difference fails the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ModelUMConcurrencyBenchmark {
+
+    private static final int[] TYPES = {
+            ModelUM.TYPE_TEMPERATURE, ModelUM.TYPE_TEMPERATURE_MIN, ModelUM.TYPE_TEMPERATURE_MAX,
+            ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN,
+            ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX, ModelUM.TYPE_PRESSURE_HPA, ModelUM.TYPE_PRESSURE_MMHG,
+            ModelUM.TYPE_DAYNIGHT};
+
+    private ModelUM parser;
+    private PixelSource[] sources;
+    private ModelUMResult[] expected;
+
+    @Setup
+    public void setup() throws IOException {
+        parser = new ModelUM(SampleImages.utils(), true);
+        sources = new PixelSource[SampleImages.NAMES.length];
+        expected = new ModelUMResult[SampleImages.NAMES.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = SampleImages.source(SampleImages.NAMES[i]);
+            expected[i] = new ModelUMResult();
+            new ModelUM(SampleImages.utils(), true).parse(sources[i], expected[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        final ModelUMResult result = new ModelUMResult();
+        int next;
+    }
+
+    @Benchmark
+    public ModelUMResult parseShared(Worker worker) {
+        int image = worker.next;
+        worker.next = (image + 1) % sources.length;
+
+        parser.parse(sources[image], worker.result);
+
+        ModelUMResult reference = expected[image];
+        for (int type : TYPES) {
+            if (!Arrays.equals(worker.result.getSamples(type), reference.getSamples(type))) {
+                throw new IllegalStateException("Concurrent parse of " + SampleImages.NAMES[image]
+                        + " differs in type " + type);
+            }
+        }
+        if (worker.result.getTimestamp(0) != reference.getTimestamp(0)) {
+            throw new IllegalStateException("Concurrent parse of " + SampleImages.NAMES[image] + " differs in date");
+        }
+        return worker.result;
+    }
+}
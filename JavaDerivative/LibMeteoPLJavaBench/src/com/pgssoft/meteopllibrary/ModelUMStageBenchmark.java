@@ -0,0 +1,152 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of every stage of ModelUM.parsePixels, measured separately; readChartValues
+ * is the single pass used by eager parse in place of the three read*Values.
+ * layoutCheck is the LayoutCheck done by ModelUMBatch before parsing.
+ *
+ * Each stage runs on a ModelUMResult that has already been parsed from the same
+ * image, so the scale read by the earlier stages is in place, as it is during
+ * a real parse. The *Cached variants read scales through a warm ScaleCache, as
+ * every image after the first of a model run does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ModelUMStageBenchmark {
+
+    @Param({"mgram1.png", "mgram2.png", "mgram_snow.png"})
+    public String image;
+
+    private PixelSource pixels;
+    private ModelUM model;
+    private ModelUM cachedModel;
+    private ModelUMResult result;
+
+    @Setup
+    public void setup() throws IOException {
+        pixels = SampleImages.source(image);
+        model = new ModelUM(SampleImages.utils(), false);
+        result = new ModelUMResult();
+        cachedModel = new ModelUM(SampleImages.utils(), false, new ScaleCache(16));
+        cachedModel.parse(pixels, result);
+        model.parse(pixels, result);
+        result.pixels = pixels; // released at the end of parse
+    }
+
+    @Benchmark
+    public LayoutCheck.Verdict layoutCheck() {
+        return LayoutCheck.check(pixels);
+    }
+
+    @Benchmark
+    public ModelUMResult readTemperatureScale() {
+        model.readTemperatureScale(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readTemperatureScaleCached() {
+        cachedModel.readTemperatureScale(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readTemperatureValues() {
+        model.readTemperatureValues(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readPressureScale() {
+        model.readPressureScale(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readPressureScaleCached() {
+        cachedModel.readPressureScale(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readPressureValues() {
+        model.readPressureValues(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readOtherValues() {
+        model.readOtherValues(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readChartValues() {
+        model.readChartValues(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult readDate() {
+        model.readDate(result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult fixMissingData(RawValues raw) {
+        raw.model.fixMissingData(raw.result);
+        return raw.result;
+    }
+
+    /*
+    fixMissingData works in place, so the unfixed series are put back before every call
+    */
+    @State(Scope.Thread)
+    public static class RawValues {
+
+        ModelUM model;
+        ModelUMResult result;
+        private ModelUMResult snapshot;
+
+        @Setup
+        public void setup(ModelUMStageBenchmark bench) {
+            model = bench.model;
+            result = new ModelUMResult();
+            snapshot = new ModelUMResult();
+            model.parse(bench.pixels, result);
+            model.parse(bench.pixels, snapshot);
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() {
+            System.arraycopy(snapshot.temperature, 0, result.temperature, 0, snapshot.temperature.length);
+            System.arraycopy(snapshot.temperatureMin, 0, result.temperatureMin, 0, snapshot.temperatureMin.length);
+            System.arraycopy(snapshot.temperatureMax, 0, result.temperatureMax, 0, snapshot.temperatureMax.length);
+            System.arraycopy(snapshot.temperaturePerc, 0, result.temperaturePerc, 0, snapshot.temperaturePerc.length);
+            System.arraycopy(snapshot.temperaturePercMin, 0, result.temperaturePercMin, 0, snapshot.temperaturePercMin.length);
+            System.arraycopy(snapshot.temperaturePercMax, 0, result.temperaturePercMax, 0, snapshot.temperaturePercMax.length);
+            System.arraycopy(snapshot.pressurehPa, 0, result.pressurehPa, 0, snapshot.pressurehPa.length);
+            System.arraycopy(snapshot.pressuremmHg, 0, result.pressuremmHg, 0, snapshot.pressuremmHg.length);
+        }
+    }
+}
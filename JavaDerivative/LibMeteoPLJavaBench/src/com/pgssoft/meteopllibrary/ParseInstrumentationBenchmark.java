@@ -0,0 +1,78 @@
+package com.pgssoft.meteopllibrary;
+
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parse metrics: one reused parser writing into one reused
+ * ModelUMResult, as ModelUMBenchmark.parseReused, with no listener, with a
+ * listener that only consumes the metrics, and with the parse event recorded
+ * by JDK Flight Recorder. Without listener or recording the parse should take
+ * the same time as before metrics and still report no allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParseInstrumentationBenchmark {
+
+    @Param({"mgram1.png", "mgram_snow.png"})
+    public String image;
+
+    @Param({"none", "listener", "jfr"})
+    public String metrics;
+
+    private PixelSource source;
+    private ModelUM parser;
+    private ModelUMResult result;
+    private Recording recording;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws IOException {
+        source = SampleImages.source(image);
+        result = new ModelUMResult();
+        if (metrics.equals("listener")) {
+            parser = new ModelUM(SampleImages.utils(), GapFiller.DEFAULT, null,
+                    (parsed, m) -> blackhole.consume(m.getTotalNanos() + m.getGlyphProbes()));
+        } else {
+            parser = new ModelUM(SampleImages.utils(), GapFiller.DEFAULT, null);
+        }
+        if (metrics.equals("jfr")) {
+            // events go to the in-memory buffers only, nothing is written out
+            recording = new Recording();
+            recording.enable("com.pgssoft.meteopllibrary.Parse");
+            recording.setToDisk(false);
+            recording.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Benchmark
+    public ModelUMResult parseReused() {
+        parser.parse(source, result);
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ModelUM.reparse against a full parse of the new image. The new image is the
+ * previous one either unchanged, with the temperature line moved in one block
+ * of columns, or another sample altogether.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReparseBenchmark {
+
+    @Param({"mgram1.png", "mgram2.png", "mgram_snow.png"})
+    public String image;
+
+    @Param({"none", "block", "all"})
+    public String change;
+
+    private PixelSource previousPixels;
+    private PixelSource pixels;
+    private ModelUM model;
+    private ModelUMResult previous;
+    private ModelUMResult result;
+
+    @Setup
+    public void setup() throws IOException {
+        previousPixels = decode(image);
+        if (change.equals("all")) {
+            pixels = decode(image.equals("mgram1.png") ? "mgram2.png" : "mgram1.png");
+        } else {
+            PixelSource.Indexed source = (PixelSource.Indexed) decode(image);
+            if (change.equals("block")) {
+                // one column of the temperature panel painted red from top to bottom
+                byte red = (byte) source.keyOf(ModelUM.COLOR_TEMPERATURE_RED);
+                for (int y = ModelUM.TEMPERATURE_ROW_START; y <= ModelUM.TEMPERATURE_ROW_END; y++) {
+                    source.data[source.offset + y * source.scanline + ModelUM.CHART_START_COL + 100] = red;
+                }
+            }
+            pixels = source;
+        }
+        model = new ModelUM(SampleImages.utils(), true);
+        previous = new ModelUMResult();
+        result = new ModelUMResult();
+        model.parse(previousPixels, previous);
+    }
+
+    private static PixelSource decode(String name) throws IOException {
+        byte[] png = SampleImages.bytes(name);
+        return new PngDecoder().decode(png, 0, png.length, PngDecoder.MODELUM_ROWS);
+    }
+
+    @Benchmark
+    public ModelUMResult parse() {
+        model.parse(pixels, result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult reparse() {
+        model.reparse(previousPixels, previous, pixels, result);
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An unchanged PNG answered from a warm ResultCache against decoding and
+ * parsing it again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ResultCacheBenchmark {
+
+    @Param({"mgram1.png", "mgram2.png", "mgram_snow.png"})
+    public String image;
+
+    private byte[] png;
+    private ModelUM model;
+    private ModelUMResult result;
+    private PngDecoder decoder;
+    private ResultCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        png = SampleImages.bytes(image);
+        model = new ModelUM(SampleImages.utils(), true);
+        result = new ModelUMResult();
+        decoder = new PngDecoder();
+        cache = new ResultCache(1 << 20);
+        model.parse(decoder.decode(png, 0, png.length, PngDecoder.MODELUM_ROWS), result);
+        cache.store(model, png, 0, png.length, result);
+    }
+
+    @Benchmark
+    public ModelUMResult decodeAndParse() throws IOException {
+        model.parse(decoder.decode(png, 0, png.length, PngDecoder.MODELUM_ROWS), result);
+        return result;
+    }
+
+    @Benchmark
+    public ModelUMResult load() {
+        if (!cache.load(model, png, 0, png.length, result)) {
+            throw new IllegalStateException("not cached");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Columnar result file: encoding one record, and reading one sample or one
+ * series of a random record from a mapped file of RECORDS records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ResultFileBenchmark {
+
+    private static final int RECORDS = 10000;
+
+    private ModelUMResult result;
+    private ResultFileWriter writer;
+    private Path file;
+    private ResultFileReader reader;
+    private final double[] series = new double[ModelUM.CHART_WIDTH];
+    private long next;
+
+    @Setup
+    public void setup() throws IOException {
+        result = new ModelUMResult();
+        new ModelUM(SampleImages.utils(), true).parse(SampleImages.source("mgram1.png"), result);
+        writer = new ResultFileWriter(OutputStream.nullOutputStream());
+        file = Files.createTempFile("meteopl", ".umc");
+        try (ResultFileWriter out = new ResultFileWriter(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int i = 0; i < RECORDS; i++) {
+                out.write(result);
+            }
+        }
+        reader = new ResultFileReader(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        Files.delete(file);
+    }
+
+    private long nextRecord() {
+        next = (next + 7919) % RECORDS;
+        return next;
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        writer.write(result);
+        return writer.getRecordCount();
+    }
+
+    @Benchmark
+    public double readSample() {
+        return reader.getSample(nextRecord(), ModelUM.TYPE_TEMPERATURE, (int) (next % ModelUM.CHART_WIDTH));
+    }
+
+    @Benchmark
+    public double[] readSeries() {
+        return reader.getSamples(nextRecord(), ModelUM.TYPE_PRESSURE_HPA, series);
+    }
+}
@@ -0,0 +1,87 @@
+package com.pgssoft.meteopllibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chart panels scanned pixel by pixel against the Vector API row classifier.
+ *
+ * The same code runs in two kinds of forks: *Scalar with the vector kernel
+ * switched off, *Vector with jdk.incubator.vector added to the boot layer.
+ * Sources are the two layouts the kernel reads: int RGB array and palette
+ * indices from PngDecoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RowClassifierBenchmark {
+
+    private static final String SCALAR = "-Dlibmeteopl.vector=false";
+    private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+
+    @Param({"mgram1.png", "mgram2.png", "mgram_snow.png"})
+    public String image;
+
+    @Param({"rgb", "indexed"})
+    public String layout;
+
+    private PixelSource pixels;
+    private ModelUM model;
+    private ModelUMResult result;
+
+    @Setup
+    public void setup() throws IOException {
+        if (layout.equals("rgb")) {
+            pixels = SampleImages.source(image);
+        } else {
+            byte[] png = SampleImages.bytes(image);
+            pixels = new PngDecoder().decode(png, 0, png.length, PngDecoder.MODELUM_ROWS);
+        }
+        model = new ModelUM(SampleImages.utils(), false);
+        result = new ModelUMResult();
+        model.parse(pixels, result);
+        result.pixels = pixels; // released at the end of parse
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = SCALAR)
+    public ModelUMResult readChartValuesScalar() {
+        model.readChartValues(result);
+        return result;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = VECTOR)
+    public ModelUMResult readChartValuesVector() {
+        model.readChartValues(result);
+        return result;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = SCALAR)
+    public ModelUMResult parseScalar() {
+        model.parse(pixels, result);
+        return result;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = VECTOR)
+    public ModelUMResult parseVector() {
+        model.parse(pixels, result);
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package com.pgssoft.meteopllibrary;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Access to the meteograms bundled in the top level Samples directory.
+ *
+ * The directory is taken from the libmeteopl.samples system property or,
+ * when it is not set, looked up from the working directory upwards.
+ */
+public final class SampleImages implements Utils {
+
+    public static final String[] NAMES = {"mgram1.png", "mgram2.png", "mgram_snow.png"};
+
+    // sample images do not carry the year, benchmarks only need a stable value: 2015, not a leap year
+    private static final long YEAR_START_DAY = 16436;
+    private static final int[] MONTH_START_DAY = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private SampleImages() {
+    }
+
+    public static Utils utils() {
+        return new SampleImages();
+    }
+
+    public static File file(String name) throws IOException {
+        String property = System.getProperty("libmeteopl.samples");
+        if (property != null) {
+            return new File(property, name);
+        }
+        File dir = new File("").getAbsoluteFile();
+        while (dir != null) {
+            File candidate = new File(new File(dir, "Samples"), name);
+            if (candidate.isFile()) {
+                return candidate;
+            }
+            dir = dir.getParentFile();
+        }
+        throw new IOException("Cannot find Samples/" + name + ", set -Dlibmeteopl.samples=<dir>");
+    }
+
+    public static byte[] bytes(String name) throws IOException {
+        return Files.readAllBytes(file(name).toPath());
+    }
+
+    public static BufferedImage image(String name) throws IOException {
+        return ImageIO.read(file(name));
+    }
+
+    public static int[] pixels(String name) throws IOException {
+        BufferedImage img = image(name);
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+
+    public static PixelSource source(String name) throws IOException {
+        BufferedImage img = image(name);
+        int[] pixels = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        return PixelSource.ofRGB(pixels, img.getWidth(), img.getHeight());
+    }
+
+    @Override
+    public long getTimestamp(int m, int d, double hour) {
+        if (m < 1 || m > 12 || d < 1 || d > 31) {
+            return 0; // date row not recognized
+        }
+        // computed without java.time, so that allocation reported for a parse is parser's own
+        return (YEAR_START_DAY + MONTH_START_DAY[m - 1] + d - 1) * DAY_MILLIS + (long) (hour * 60 * 60 * 1000);
+    }
+
+    @Override
+    public void throwException(String description) {
+        throw new RuntimeException(description);
+    }
+}
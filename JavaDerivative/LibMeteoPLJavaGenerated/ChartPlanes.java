@@ -0,0 +1,368 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Bit plane index of one chart panel: for every tracked color, which pixels of the panel have it.
+
+Planes are column-major, column x of a plane is words(height) longs with bit y set where pixel
+(x, y) of panel has the color, so questions about a column - first or last row of a color, is it
+there at all - are answered with Long.numberOfTrailingZeros() / numberOfLeadingZeros() on a word
+or two instead of a walk down the panel. Rows and columns are panel relative, rows counted from
+the top.
+
+Index is filled row by row (addRow(), or build() for the whole panel), so it can be built in
+the same pass over image as other sections; a RowClassifier, when given, classifies each row
+many pixels at once. Any section extractor can keep one for its panel and colors; instance is
+reused from image to image and allocates nothing after construction.
+
+Extractor needing only the first row of each color can ask for first-hit index: it keeps one bit
+per column and color, and pixels of columns where every color is found are not read any more.
+*/
+final class ChartPlanes
+    {
+        private static final int INLINE_PLANES = 5;
+
+        final int colStart;
+        final int rowStart;
+        final int width;
+        final int height;
+        final int[] keys; // color key of each plane, see PixelSource.getKey()
+        final int columnWords;
+        final long[][] planes;
+        final boolean firstOnly;
+        // first-hit index: per column, planes with no bit set yet; per plane, columns with no bit set,
+        // and bits of columns with one, in row layout
+        private final int[] colorsLeft;
+        private final int[] emptyColumns;
+        private final long[] found;
+        private final int rowWords;
+        private final long[] rowHits;
+
+        /*
+        firstOnly - first-hit index, last() is then the same as first()
+        */
+        ChartPlanes(int colStart, int rowStart, int width, int height, int planeCount, boolean firstOnly)
+        {
+            this.colStart = colStart;
+            this.rowStart = rowStart;
+            this.width = width;
+            this.height = height;
+            this.keys = new int[planeCount];
+            this.columnWords = RowClassifier.words(height);
+            this.planes = new long[planeCount][width * columnWords];
+            this.firstOnly = firstOnly;
+            this.colorsLeft = new int[width];
+            this.emptyColumns = new int[planeCount];
+            this.found = new long[planeCount * RowClassifier.words(width)];
+            this.rowWords = RowClassifier.words(width);
+            this.rowHits = new long[planeCount * rowWords];
+        }
+
+        /*
+        empty all planes
+        */
+        void clear()
+        {
+            for (long[] plane : planes)
+            {
+                for (int i = 0; i < plane.length; i++)
+                {
+                    plane[i] = 0;
+                }
+            }
+            for (int x = 0; x < width; x++)
+            {
+                colorsLeft[x] = keys.length;
+            }
+            for (int k = 0; k < keys.length; k++)
+            {
+                emptyColumns[k] = width;
+            }
+            for (int i = 0; i < found.length; i++)
+            {
+                found[i] = 0;
+            }
+        }
+
+        /*
+        clear and index whole panel; classifier may be null
+        */
+        void build(PixelSource pixels, RowClassifier classifier)
+        {
+            clear();
+            for (int y = 0; y < height; y++)
+            {
+                addRow(pixels, classifier, y);
+            }
+        }
+
+        /*
+        index panel row y, rows must be added top to bottom; classifier may be null, pixels are then
+        compared one by one
+        */
+        void addRow(PixelSource pixels, RowClassifier classifier, int y)
+        {
+            int row = rowStart + y;
+            if (classifier != null)
+            {
+                // row planes to column planes, visiting set bits only
+                classifier.classify(pixels, colStart, row, width, keys, 0, keys.length, rowHits);
+                int word = y >>> 6;
+                long bit = 1L << y;
+                for (int k = 0; k < keys.length; k++)
+                {
+                    long[] plane = planes[k];
+                    for (int w = 0; w < rowWords; w++)
+                    {
+                        long bits = rowHits[k * rowWords + w];
+                        if (firstOnly)
+                        {
+                            bits &= ~found[k * rowWords + w]; // columns seen already
+                        }
+                        while (bits != 0)
+                        {
+                            int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            if (firstOnly)
+                            {
+                                setFirst(k, x, y);
+                            }
+                            else
+                            {
+                                plane[x * columnWords + word] |= bit;
+                            }
+                            bits &= bits - 1;
+                        }
+                    }
+                }
+            }
+            else if (firstOnly)
+            {
+                addFirstHits(pixels, row, y);
+            }
+            else
+            {
+                for (int k = 0; k < keys.length; k += INLINE_PLANES)
+                {
+                    addRow(pixels, row, k, Math.min(INLINE_PLANES, keys.length - k), y);
+                }
+            }
+        }
+
+        /*
+        scalar addRow() of first-hit index, columns where every color is found are skipped
+        */
+        private void addFirstHits(PixelSource pixels, int row, int y)
+        {
+            int k0 = keys[0];
+            for (int x = 0; x < width; x++)
+            {
+                if (colorsLeft[x] == 0)
+                {
+                    continue;
+                }
+                int pixel = pixels.getKey(colStart + x, row);
+                if (pixel == k0)
+                {
+                    setFirst(0, x, y);
+                }
+                for (int k = 1; k < keys.length; k++)
+                {
+                    if (pixel == keys[k])
+                    {
+                        setFirst(k, x, y);
+                    }
+                }
+            }
+        }
+
+        /*
+        scalar addRow() of full index for planes first ... first + count - 1, count up to INLINE_PLANES:
+        their keys are held in locals, unused ones padded with the first key and skipped
+        */
+        private void addRow(PixelSource pixels, int row, int first, int count, int y)
+        {
+            int word = y >>> 6;
+            long bit = 1L << y;
+            int k0 = keys[first];
+            int k1 = count > 1 ? keys[first + 1] : k0;
+            int k2 = count > 2 ? keys[first + 2] : k0;
+            int k3 = count > 3 ? keys[first + 3] : k0;
+            int k4 = count > 4 ? keys[first + 4] : k0;
+            for (int x = 0; x < width; x++)
+            {
+                int pixel = pixels.getKey(colStart + x, row);
+                int index = x * columnWords + word;
+                if (pixel == k0)
+                {
+                    planes[first][index] |= bit;
+                }
+                if (pixel == k1 && count > 1)
+                {
+                    planes[first + 1][index] |= bit;
+                }
+                if (pixel == k2 && count > 2)
+                {
+                    planes[first + 2][index] |= bit;
+                }
+                if (pixel == k3 && count > 3)
+                {
+                    planes[first + 3][index] |= bit;
+                }
+                if (pixel == k4 && count > 4)
+                {
+                    planes[first + 4][index] |= bit;
+                }
+            }
+        }
+
+        /*
+        take columns x ... x + count - 1 from index of the same panel and colors, built for another image
+        equal in these columns; other columns are left as they are
+        */
+        void copyColumns(ChartPlanes from, int x, int count)
+        {
+            for (int k = 0; k < keys.length; k++)
+            {
+                System.arraycopy(from.planes[k], x * columnWords, planes[k], x * columnWords, count * columnWords);
+            }
+            if (firstOnly)
+            {
+                for (int k = 0; k < keys.length; k++)
+                {
+                    for (int i = x; i < x + count; i++)
+                    {
+                        if ((from.found[k * rowWords + (i >>> 6)] & (1L << i)) != 0)
+                        {
+                            found[k * rowWords + (i >>> 6)] |= 1L << i;
+                            emptyColumns[k]--;
+                            colorsLeft[i]--;
+                        }
+                    }
+                }
+            }
+        }
+
+        /*
+        index columns x ... x + count - 1 of whole panel from pixels, top to bottom;
+        first-hit index stops when every color of these columns is found
+        */
+        void addColumns(PixelSource pixels, int x, int count)
+        {
+            int left = 0;
+            for (int i = x; i < x + count; i++)
+            {
+                left += colorsLeft[i];
+            }
+            for (int y = 0; y < height && (left > 0 || !firstOnly); y++)
+            {
+                int row = rowStart + y;
+                for (int i = x; i < x + count; i++)
+                {
+                    if (firstOnly && colorsLeft[i] == 0)
+                    {
+                        continue;
+                    }
+                    int pixel = pixels.getKey(colStart + i, row);
+                    for (int k = 0; k < keys.length; k++)
+                    {
+                        if (pixel != keys[k])
+                        {
+                            continue;
+                        }
+                        if (!firstOnly)
+                        {
+                            planes[k][i * columnWords + (y >>> 6)] |= 1L << y;
+                        }
+                        else if ((found[k * rowWords + (i >>> 6)] & (1L << i)) == 0)
+                        {
+                            setFirst(k, i, y);
+                            left--;
+                        }
+                    }
+                }
+            }
+        }
+
+        /*
+        first-hit index: set bit of row y only if column x of plane k has none yet
+        */
+        private void setFirst(int k, int x, int y)
+        {
+            int index = k * rowWords + (x >>> 6);
+            if ((found[index] & (1L << x)) == 0)
+            {
+                found[index] |= 1L << x;
+                planes[k][x * columnWords + (y >>> 6)] = 1L << y;
+                emptyColumns[k]--;
+                colorsLeft[x]--;
+            }
+        }
+
+        /*
+        first-hit index: number of columns where color of plane was not seen in rows added so far;
+        once it is 0, first() of the plane is known for every column and further rows may be skipped
+        */
+        int emptyColumns(int plane)
+        {
+            return emptyColumns[plane];
+        }
+
+        /*
+        first (topmost) row of column x having color of plane, NOVALUE if none
+        */
+        int first(int plane, int x)
+        {
+            long[] bits = planes[plane];
+            int base = x * columnWords;
+            for (int w = 0; w < columnWords; w++)
+            {
+                if (bits[base + w] != 0)
+                {
+                    return (w << 6) + Long.numberOfTrailingZeros(bits[base + w]);
+                }
+            }
+            return ModelUM.NOVALUE;
+        }
+
+        /*
+        last (bottom) row of column x having color of plane, NOVALUE if none
+        */
+        int last(int plane, int x)
+        {
+            long[] bits = planes[plane];
+            int base = x * columnWords;
+            for (int w = columnWords - 1; w >= 0; w--)
+            {
+                if (bits[base + w] != 0)
+                {
+                    return (w << 6) + 63 - Long.numberOfLeadingZeros(bits[base + w]);
+                }
+            }
+            return ModelUM.NOVALUE;
+        }
+
+        /*
+        first row of column x having color of either plane
+        */
+        int first(int plane1, int plane2, int x)
+        {
+            return Math.min(first(plane1, x), first(plane2, x));
+        }
+
+        /*
+        last row of column x having color of either plane
+        */
+        int last(int plane1, int plane2, int x)
+        {
+            int last1 = last(plane1, x);
+            int last2 = last(plane2, x);
+            return last1 == ModelUM.NOVALUE ? last2 : last2 == ModelUM.NOVALUE ? last1 : Math.max(last1, last2);
+        }
+
+        /*
+        pixel (x, y) of panel has color of plane; of first-hit index, only the first row of column does
+        */
+        boolean contains(int plane, int x, int y)
+        {
+            return (planes[plane][x * columnWords + (y >>> 6)] & (1L << y)) != 0;
+        }
+    }
@@ -0,0 +1,247 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Compact, immutable copy of values of ModelUMResult, for keeping many parsed meteograms in memory.
+
+Samples of a series are quantized to short steps of 1/6 of the precision of its scale, counted
+from row0 of the scale: values read from chart are row0 - precision * rows / 3 (line) or
+row0 - precision * rows (shade), so they are kept exactly up to rounding of doubles, and values
+interpolated by heuristics are off by 1/12 of precision at most. Series whose values do not fit
+that grid (scale not read, values far off the chart) are kept as floats. NOVALUE samples are a bit
+mask of series, pressure in mm Hg is computed from hPa as parser does, and day/night is one bit
+per sample.
+
+Series come back as double[] on demand, either in new arrays or in caller's ones; single samples
+can be read without decoding the series.
+*/
+public final class CompactResult
+    {
+        static final int STEPS_PER_PRECISION = 6;
+
+        // one quantized series: offset + code * step, or values as floats when codes is null
+        private static final class Series
+            {
+                final double offset;
+                final double step;
+                final short[] codes;
+                final float[] values;
+                final double missingValue; // NOVALUE or -NOVALUE, as parser marks missing samples of series
+                final long[] missing; // null when no sample is missing
+
+                Series(double[] samples, double offset, double step, double missingValue)
+                {
+                    long[] mask = null;
+                    short[] quantized = new short[samples.length];
+                    boolean fits = step > 0 && !Double.isInfinite(step) && !Double.isNaN(offset) && !Double.isInfinite(offset);
+                    for (int x = 0; x < samples.length; x++)
+                    {
+                        if (samples[x] == missingValue)
+                        {
+                            if (mask == null)
+                            {
+                                mask = new long[RowClassifier.words(samples.length)];
+                            }
+                            mask[x >>> 6] |= 1L << x;
+                        }
+                        else if (fits)
+                        {
+                            double code = Math.rint((samples[x] - offset) / step);
+                            if (code >= Short.MIN_VALUE && code <= Short.MAX_VALUE)
+                            {
+                                quantized[x] = (short) code;
+                            }
+                            else
+                            {
+                                fits = false; // also NaN
+                            }
+                        }
+                    }
+
+                    this.offset = offset;
+                    this.step = step;
+                    this.missingValue = missingValue;
+                    this.missing = mask;
+                    if (fits)
+                    {
+                        this.codes = quantized;
+                        this.values = null;
+                    }
+                    else
+                    {
+                        this.codes = null;
+                        this.values = new float[samples.length];
+                        for (int x = 0; x < samples.length; x++)
+                        {
+                            this.values[x] = (float) samples[x];
+                        }
+                    }
+                }
+
+                double get(int x)
+                {
+                    if (missing != null && (missing[x >>> 6] & (1L << x)) != 0)
+                    {
+                        return missingValue;
+                    }
+                    return codes != null ? offset + codes[x] * step : values[x];
+                }
+
+                long bytes()
+                {
+                    return (codes != null ? 2L * codes.length : 4L * values.length) + (missing != null ? 8L * missing.length : 0);
+                }
+            }
+
+        final long timestamp;
+        final double temperature_precision;
+        final double temperature_row0;
+        final double pressure_row0_hPa;
+        final double pressure_precision_hPa;
+
+        private final Series temperature;
+        private final Series temperatureMin;
+        private final Series temperatureMax;
+        private final Series temperaturePerc;
+        private final Series temperaturePercMin;
+        private final Series temperaturePercMax;
+        private final Series pressurehPa;
+        private final long[] night = new long[RowClassifier.words(ModelUM.CHART_WIDTH)]; // bit set where daynight is 1
+
+        /*
+        copy values of parsed result; result is not used afterwards
+        */
+        public CompactResult(ModelUMResult result)
+        {
+            timestamp = result.timestamp;
+            temperature_precision = result.temperature_precision;
+            temperature_row0 = result.temperature_row0;
+            pressure_row0_hPa = result.pressure_row0_hPa;
+            pressure_precision_hPa = result.pressure_precision_hPa;
+
+            double step = result.temperature_precision / STEPS_PER_PRECISION;
+            double row0 = result.temperature_row0;
+            temperature = new Series(result.temperature, row0, step, ModelUM.NOVALUE);
+            temperatureMin = new Series(result.temperatureMin, row0, step, ModelUM.NOVALUE);
+            temperatureMax = new Series(result.temperatureMax, row0, step, -ModelUM.NOVALUE);
+            temperaturePerc = new Series(result.temperaturePerc, row0, step, ModelUM.NOVALUE);
+            temperaturePercMin = new Series(result.temperaturePercMin, row0, step, ModelUM.NOVALUE);
+            temperaturePercMax = new Series(result.temperaturePercMax, row0, step, -ModelUM.NOVALUE);
+            pressurehPa = new Series(result.pressurehPa, result.pressure_row0_hPa,
+                    result.pressure_precision_hPa / STEPS_PER_PRECISION, ModelUM.NOVALUE);
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++)
+            {
+                if (result.daynight[x] != 0)
+                {
+                    night[x >>> 6] |= 1L << x;
+                }
+            }
+        }
+
+        public long getTimestamp(int px)
+        {
+            return timestamp + TimeIndex.offset(px);
+        }
+
+        // as ModelUM.getPrecision()
+        public double getPrecision(int type)
+        {
+            if (type == ModelUM.TYPE_PRESSURE_HPA || type == ModelUM.TYPE_PRESSURE_MMHG)
+            {
+                return pressure_precision_hPa;
+            }
+            return temperature_precision;
+        }
+
+        /*
+        true for categories kept here, the ones ModelUMResult.getSamples() gives
+        */
+        public boolean hasSamples(int type)
+        {
+            return series(type) != null || type == ModelUM.TYPE_PRESSURE_MMHG || type == ModelUM.TYPE_DAYNIGHT;
+        }
+
+        /*
+        sample x of given category, ModelUM.TYPE_*
+        */
+        public double getSample(int type, int x)
+        {
+            if (x < 0 || x >= ModelUM.CHART_WIDTH)
+            {
+                throw new IndexOutOfBoundsException("Sample " + x + " of " + ModelUM.CHART_WIDTH);
+            }
+            if (type == ModelUM.TYPE_PRESSURE_MMHG)
+            {
+                double hPa = pressurehPa.get(x);
+                return hPa == pressurehPa.missingValue ? hPa : ModelUM.hPaTommHg(hPa);
+            }
+            if (type == ModelUM.TYPE_DAYNIGHT)
+            {
+                return (night[x >>> 6] & (1L << x)) != 0 ? 1 : 0;
+            }
+            Series series = series(type);
+            if (series == null)
+            {
+                throw new IllegalArgumentException("No samples of type " + type);
+            }
+            return series.get(x);
+        }
+
+        /*
+        samples of given category in new array, null for categories not kept
+        */
+        public double[] getSamples(int type)
+        {
+            if (!hasSamples(type))
+            {
+                return null;
+            }
+            return getSamples(type, new double[ModelUM.CHART_WIDTH]);
+        }
+
+        /*
+        samples of given category written to into, which must hold CHART_WIDTH values; returns into
+        */
+        public double[] getSamples(int type, double[] into)
+        {
+            if (!hasSamples(type))
+            {
+                throw new IllegalArgumentException("No samples of type " + type);
+            }
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++)
+            {
+                into[x] = getSample(type, x);
+            }
+            return into;
+        }
+
+        /*
+        approximate heap size of samples held, object headers not counted
+        */
+        public long getByteSize()
+        {
+            return temperature.bytes() + temperatureMin.bytes() + temperatureMax.bytes() + temperaturePerc.bytes() +
+                temperaturePercMin.bytes() + temperaturePercMax.bytes() + pressurehPa.bytes() + 8L * night.length + 5 * 8;
+        }
+
+        private Series series(int type)
+        {
+            switch (type)
+            {
+                case ModelUM.TYPE_TEMPERATURE:
+                    return temperature;
+                case ModelUM.TYPE_TEMPERATURE_MAX:
+                    return temperatureMax;
+                case ModelUM.TYPE_TEMPERATURE_MIN:
+                    return temperatureMin;
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE:
+                    return temperaturePerc;
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX:
+                    return temperaturePercMax;
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN:
+                    return temperaturePercMin;
+                case ModelUM.TYPE_PRESSURE_HPA:
+                    return pressurehPa;
+            }
+            return null;
+        }
+    }
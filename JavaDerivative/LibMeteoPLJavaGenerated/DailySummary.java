@@ -0,0 +1,266 @@
+package com.pgssoft.meteopllibrary;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/*
+Minimum, maximum, mean and trend of every chart series of a meteogram, per calendar day and per
+day or night period.
+
+Columns are put into calendar days of given zone by their timestamps, and into periods by the
+day/night row: a period is a run of columns of the same TYPE_DAYNIGHT value, 1 (shaded) being
+night, so a night spans midnight. Runs shorter than MIN_PERIOD_COLUMNS between two runs of the
+other value are grid lines crossing the row and belong to the period around them. Days and
+periods at chart ends are partial, their first and last column times tell how much. Aggregates
+of all series are then taken in one pass over columns.
+
+Samples NOVALUE or -NOVALUE are left out; an aggregate of no samples is NOVALUE. Trend is last
+valid sample of day or period minus the first one. Summary is computed from values of holder
+at creation and does not change, see ModelUMResult.getDailySummary().
+*/
+public final class DailySummary
+    {
+        // aggregates
+        public static final int MIN = 0;
+        public static final int MAX = 1;
+        public static final int MEAN = 2;
+        public static final int TREND = 3;
+        private static final int STATISTICS = 4;
+        // shorter runs of day/night row inside the chart are not periods
+        static final int MIN_PERIOD_COLUMNS = 3;
+
+        // series summarized
+        static final int[] TYPES = new int[] {
+            ModelUM.TYPE_TEMPERATURE, ModelUM.TYPE_TEMPERATURE_MIN, ModelUM.TYPE_TEMPERATURE_MAX,
+            ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX,
+            ModelUM.TYPE_PRESSURE_HPA, ModelUM.TYPE_PRESSURE_MMHG };
+
+        final ZoneId zone;
+        private final int days;
+        private final int periods;
+        // chart columns of each day and period
+        private final int[] dayColumns;
+        private final int[] periodColumns;
+        private final boolean[] night;
+        private final long timestamp;
+        // (bucket * TYPES.length + series) * STATISTICS + statistic
+        private final double[] dayValues;
+        private final double[] periodValues;
+
+        DailySummary(ModelUMResult result, ZoneId zone)
+        {
+            this.zone = zone;
+            this.timestamp = result.timestamp;
+
+            // night at each column, grid lines taken out
+            boolean[] nightAt = new boolean[ModelUM.CHART_WIDTH];
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++)
+            {
+                nightAt[x] = result.daynight[x] != 0;
+            }
+            for (int x = 0; x < ModelUM.CHART_WIDTH; )
+            {
+                int end = x;
+                while (end < ModelUM.CHART_WIDTH && nightAt[end] == nightAt[x])
+                {
+                    end++;
+                }
+                if (x > 0 && end < ModelUM.CHART_WIDTH && end - x < MIN_PERIOD_COLUMNS)
+                {
+                    for (int i = x; i < end; i++)
+                    {
+                        nightAt[i] = !nightAt[i];
+                    }
+                }
+                x = end;
+            }
+
+            // day and period of each column
+            int[] dayOf = new int[ModelUM.CHART_WIDTH];
+            int[] periodOf = new int[ModelUM.CHART_WIDTH];
+            long midnight = nextMidnight(result.getTimestamp(0));
+            int day = 0;
+            int period = 0;
+            for (int x = 1; x < ModelUM.CHART_WIDTH; x++)
+            {
+                long time = result.getTimestamp(x);
+                if (time >= midnight)
+                {
+                    day++;
+                    midnight = nextMidnight(time);
+                }
+                if (nightAt[x] != nightAt[x - 1])
+                {
+                    period++;
+                }
+                dayOf[x] = day;
+                periodOf[x] = period;
+            }
+            days = day + 1;
+            periods = period + 1;
+            dayColumns = new int[days + 1];
+            periodColumns = new int[periods + 1];
+            night = new boolean[periods];
+            for (int x = ModelUM.CHART_WIDTH - 1; x >= 0; x--)
+            {
+                dayColumns[dayOf[x]] = x;
+                periodColumns[periodOf[x]] = x;
+                night[periodOf[x]] = nightAt[x];
+            }
+            dayColumns[days] = ModelUM.CHART_WIDTH;
+            periodColumns[periods] = ModelUM.CHART_WIDTH;
+
+            // one pass: min, max, sum (MEAN) and first valid sample (TREND) per bucket and series, counts aside
+            double[][] series = new double[TYPES.length][];
+            for (int s = 0; s < TYPES.length; s++)
+            {
+                series[s] = result.getSamples(TYPES[s]);
+            }
+            dayValues = new double[days * TYPES.length * STATISTICS];
+            periodValues = new double[periods * TYPES.length * STATISTICS];
+            int[] dayCounts = new int[days * TYPES.length];
+            int[] periodCounts = new int[periods * TYPES.length];
+            double[] last = new double[(days + periods) * TYPES.length];
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++)
+            {
+                int dayBase = dayOf[x] * TYPES.length;
+                int periodBase = periodOf[x] * TYPES.length;
+                for (int s = 0; s < TYPES.length; s++)
+                {
+                    double value = series[s][x];
+                    if (value == ModelUM.NOVALUE || value == -ModelUM.NOVALUE)
+                    {
+                        continue;
+                    }
+                    add(dayValues, dayCounts, dayBase + s, value);
+                    add(periodValues, periodCounts, periodBase + s, value);
+                    last[dayBase + s] = value;
+                    last[(days + periodOf[x]) * TYPES.length + s] = value;
+                }
+            }
+            finish(dayValues, dayCounts, last, 0);
+            finish(periodValues, periodCounts, last, days * TYPES.length);
+        }
+
+        private static void add(double[] values, int[] counts, int bucket, double value)
+        {
+            int at = bucket * STATISTICS;
+            if (counts[bucket]++ == 0)
+            {
+                values[at + MIN] = value;
+                values[at + MAX] = value;
+                values[at + MEAN] = value;
+                values[at + TREND] = value;
+                return;
+            }
+            values[at + MIN] = Math.min(values[at + MIN], value);
+            values[at + MAX] = Math.max(values[at + MAX], value);
+            values[at + MEAN] += value;
+        }
+
+        private static void finish(double[] values, int[] counts, double[] last, int lastBase)
+        {
+            for (int bucket = 0; bucket < counts.length; bucket++)
+            {
+                int at = bucket * STATISTICS;
+                if (counts[bucket] == 0)
+                {
+                    for (int statistic = 0; statistic < STATISTICS; statistic++)
+                    {
+                        values[at + statistic] = ModelUM.NOVALUE;
+                    }
+                    continue;
+                }
+                values[at + MEAN] /= counts[bucket];
+                values[at + TREND] = last[lastBase + bucket] - values[at + TREND];
+            }
+        }
+
+        private long nextMidnight(long time)
+        {
+            return Instant.ofEpochMilli(time).atZone(zone).toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+
+        public ZoneId getZone()
+        {
+            return zone;
+        }
+
+        // calendar days with at least one chart column
+        public int getDayCount()
+        {
+            return days;
+        }
+
+        // time of first chart column of day
+        public long getDayStart(int day)
+        {
+            return timestamp + TimeIndex.offset(dayColumns[day]);
+        }
+
+        // time of last chart column of day
+        public long getDayEnd(int day)
+        {
+            return timestamp + TimeIndex.offset(dayColumns[day + 1] - 1);
+        }
+
+        public int getPeriodCount()
+        {
+            return periods;
+        }
+
+        public boolean isNight(int period)
+        {
+            return night[period];
+        }
+
+        public long getPeriodStart(int period)
+        {
+            return timestamp + TimeIndex.offset(periodColumns[period]);
+        }
+
+        public long getPeriodEnd(int period)
+        {
+            return timestamp + TimeIndex.offset(periodColumns[period + 1] - 1);
+        }
+
+        /*
+        MIN, MAX, MEAN or TREND of series of given type over calendar day
+        */
+        public double getDay(int type, int day, int statistic)
+        {
+            if (day < 0 || day >= days)
+            {
+                throw new IndexOutOfBoundsException("Day " + day + " of " + days);
+            }
+            return dayValues[index(type, day, statistic)];
+        }
+
+        /*
+        MIN, MAX, MEAN or TREND of series of given type over day or night period
+        */
+        public double getPeriod(int type, int period, int statistic)
+        {
+            if (period < 0 || period >= periods)
+            {
+                throw new IndexOutOfBoundsException("Period " + period + " of " + periods);
+            }
+            return periodValues[index(type, period, statistic)];
+        }
+
+        private static int index(int type, int bucket, int statistic)
+        {
+            if (statistic < MIN || statistic > TREND)
+            {
+                throw new IllegalArgumentException("Unknown statistic " + statistic);
+            }
+            for (int s = 0; s < TYPES.length; s++)
+            {
+                if (TYPES[s] == type)
+                {
+                    return (bucket * TYPES.length + s) * STATISTICS + statistic;
+                }
+            }
+            throw new IllegalArgumentException("No summary of type " + type);
+        }
+    }
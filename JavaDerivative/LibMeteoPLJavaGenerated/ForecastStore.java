@@ -0,0 +1,834 @@
+package com.pgssoft.meteopllibrary;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+Append-only store of parsed meteograms of many grid points, one record per point and model run.
+
+Records are appended to segment files of ResultFileWriter format, each with an index file beside
+it holding grid point and base time (timestamp of first chart column) of every record; a segment
+holding recordsPerSegment records is closed and a new one started. Index files are read once
+when store is opened. In memory, runs of each point are kept sorted by base time, so the latest
+run of a point and runs covering a given time are found by lookup and binary search, and their
+records are read in place from segments mapped with FileChannel.map (see ResultFileReader).
+
+The index is dense, not sparse: every run has an entry in memory (base time, segment, record,
+about 16 bytes and a share of its point's arrays). Appended segments hold records in arrival
+order, so an index of every n-th key could serve only merged segments, and a grid of meteo.pl
+points with a few dozen runs each fits in memory many times over.
+
+A run appended again for the same point and base time replaces the earlier one. Once
+segmentsPerCompaction segments are closed since the last merge they are merged on given
+executor, together with the merged segments before them that are at most MERGE_RATIO times
+bigger than all segments merged after them, so merged segments are merged again as the store
+grows and their count stays logarithmic. Records still in use are copied sorted by point and
+base time, so runs of a point lie together, replaced ones are dropped; compact() merges all
+segments at once. Merged segment is written aside and moved in before old ones are deleted, and
+a store opened on a directory left so by a crash (or by a delete that failed) ignores segments
+covered by a merged one, so no record is lost or seen twice.
+
+Records are not synced to disk, a record cut short by a crash is dropped when store is opened
+again. Runs handed out stay readable after their segment is merged or the store closed. All
+methods may be called from many threads at once; merging copies records outside of the lock.
+*/
+public final class ForecastStore implements Closeable
+    {
+        private static final String PREFIX = "segment-";
+        private static final String SUFFIX = ".umc";
+        private static final String INDEX_SUFFIX = ".umi";
+        private static final String TEMP_SUFFIX = ".tmp";
+        private static final int INDEX_ENTRY = 16; // long point, long base time
+        // from base time to time of last chart column
+        static final long SPAN = TimeIndex.OFFSETS[TimeIndex.LAST];
+        // merged segment is merged again when it has at most this many times the records of segments after it
+        static final int MERGE_RATIO = 2;
+
+        /*
+        stored meteogram of one point and model run
+        */
+        public static final class Run
+            {
+                final long point;
+                final long timestamp;
+                final ResultFileReader file;
+                final long record;
+
+                Run(long point, long timestamp, ResultFileReader file, long record)
+                {
+                    this.point = point;
+                    this.timestamp = timestamp;
+                    this.file = file;
+                    this.record = record;
+                }
+
+                public long getPoint()
+                {
+                    return point;
+                }
+
+                // base time, of first chart column
+                public long getTimestamp()
+                {
+                    return timestamp;
+                }
+
+                public long getTimestamp(int px)
+                {
+                    return timestamp + TimeIndex.offset(px);
+                }
+
+                public double getPrecision(int type)
+                {
+                    return file.getPrecision(record, type);
+                }
+
+                public double getSample(int type, int x)
+                {
+                    return file.getSample(record, type, x);
+                }
+
+                /*
+                series of given type written to into, which must hold CHART_WIDTH values; returns into
+                */
+                public double[] getSamples(int type, double[] into)
+                {
+                    return file.getSamples(record, type, into);
+                }
+
+                public boolean isMissing(int type, int x)
+                {
+                    return file.isMissing(record, type, x);
+                }
+            }
+
+        /*
+        segment of records appended from first to last (inclusive) in sequence of segments; merged
+        segments cover more than one
+        */
+        private static final class Segment
+            {
+                final long first;
+                final long last;
+                final Path data;
+                final Path index;
+                ResultFileReader reader; // guarded by store, mapped again as records are appended
+                int records;
+
+                Segment(Path directory, long first, long last)
+                {
+                    this.first = first;
+                    this.last = last;
+                    String name = String.format("%s%016d-%016d", PREFIX, first, last);
+                    this.data = directory.resolve(name + SUFFIX);
+                    this.index = directory.resolve(name + INDEX_SUFFIX);
+                }
+
+                // segment of data file named by constructor, null for other files
+                static Segment parse(Path directory, String name)
+                {
+                    if (name.length() != PREFIX.length() + 33 + SUFFIX.length() || !name.startsWith(PREFIX) || !name.endsWith(SUFFIX))
+                    {
+                        return null;
+                    }
+                    try
+                    {
+                        long first = Long.parseLong(name.substring(PREFIX.length(), PREFIX.length() + 16));
+                        long last = Long.parseLong(name.substring(PREFIX.length() + 17, PREFIX.length() + 33));
+                        return first <= last ? new Segment(directory, first, last) : null;
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return null;
+                    }
+                }
+
+                ResultFileReader reader(long record) throws IOException
+                {
+                    if (reader == null || record >= reader.getRecordCount())
+                    {
+                        ResultFileReader old = reader;
+                        reader = new ResultFileReader(data);
+                        if (old != null)
+                        {
+                            old.close(); // runs handed out keep reading its mapping
+                        }
+                    }
+                    return reader;
+                }
+
+                void close() throws IOException
+                {
+                    if (reader != null)
+                    {
+                        reader.close();
+                    }
+                }
+            }
+
+        /*
+        runs of one point, sorted by base time
+        */
+        private static final class Runs
+            {
+                long[] times = new long[4];
+                Segment[] segments = new Segment[4];
+                int[] records = new int[4];
+                int size;
+
+                // index of run with given base time, or -(insertion point) - 1
+                int find(long time)
+                {
+                    if (size > 0 && times[size - 1] < time)
+                    {
+                        return -size - 1; // runs come in time order mostly
+                    }
+                    return Arrays.binarySearch(times, 0, size, time);
+                }
+
+                // first run with base time not before given one
+                int from(long time)
+                {
+                    int at = find(time);
+                    if (at < 0)
+                    {
+                        return -at - 1;
+                    }
+                    while (at > 0 && times[at - 1] == time)
+                    {
+                        at--;
+                    }
+                    return at;
+                }
+
+                // true when new run was added, false when one was replaced
+                boolean put(long time, Segment segment, int record)
+                {
+                    int at = find(time);
+                    if (at >= 0)
+                    {
+                        segments[at] = segment;
+                        records[at] = record;
+                        return false;
+                    }
+                    at = -at - 1;
+                    if (size == times.length)
+                    {
+                        times = Arrays.copyOf(times, size * 2);
+                        segments = Arrays.copyOf(segments, size * 2);
+                        records = Arrays.copyOf(records, size * 2);
+                    }
+                    System.arraycopy(times, at, times, at + 1, size - at);
+                    System.arraycopy(segments, at, segments, at + 1, size - at);
+                    System.arraycopy(records, at, records, at + 1, size - at);
+                    times[at] = time;
+                    segments[at] = segment;
+                    records[at] = record;
+                    size++;
+                    return true;
+                }
+            }
+
+        /*
+        record to be copied by a merge
+        */
+        private static final class Live
+            {
+                final long point;
+                final long time;
+                final Segment segment;
+                final int record;
+
+                Live(long point, long time, Segment segment, int record)
+                {
+                    this.point = point;
+                    this.time = time;
+                    this.segment = segment;
+                    this.record = record;
+                }
+            }
+
+        private final Path directory;
+        private final int recordsPerSegment;
+        private final int segmentsPerCompaction;
+        private final Executor executor;
+
+        // guarded by this
+        private final HashMap<Long, Runs> points = new HashMap<Long, Runs>();
+        private final List<Segment> closedSegments = new ArrayList<Segment>(); // by first
+        private Segment active;
+        private long nextSegment;
+        private ResultFileWriter writer;
+        private OutputStream indexOut;
+        private final byte[] entry = new byte[INDEX_ENTRY];
+        private final ByteBuffer entryBuffer = ByteBuffer.wrap(entry).order(ByteOrder.LITTLE_ENDIAN);
+        private long runCount;
+        private boolean compacting;
+        private boolean closed;
+        private long compactions;
+        private long compactionFailures;
+
+        /*
+        store of 4096 records (about 60 MB) per segment, merging every 8 segments on common ForkJoinPool
+        */
+        public ForecastStore(Path directory) throws IOException
+        {
+            this(directory, 4096, 8, ForkJoinPool.commonPool());
+        }
+
+        /*
+        store in directory, created when missing; runs already stored there are indexed first
+        */
+        public ForecastStore(Path directory, int recordsPerSegment, int segmentsPerCompaction, Executor executor) throws IOException
+        {
+            if (recordsPerSegment < 1 || segmentsPerCompaction < 2)
+            {
+                throw new IllegalArgumentException("At least one record per segment and two segments per compaction are needed");
+            }
+            this.directory = directory;
+            this.recordsPerSegment = recordsPerSegment;
+            this.segmentsPerCompaction = segmentsPerCompaction;
+            this.executor = executor;
+
+            Files.createDirectories(directory);
+            List<Segment> found = new ArrayList<Segment>();
+            List<Path> indexes = new ArrayList<Path>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*"))
+            {
+                for (Path file : stream)
+                {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMP_SUFFIX))
+                    {
+                        Files.deleteIfExists(file); // merge cut short
+                    }
+                    else if (name.endsWith(INDEX_SUFFIX))
+                    {
+                        indexes.add(file);
+                    }
+                    else
+                    {
+                        Segment segment = Segment.parse(directory, name);
+                        if (segment != null)
+                        {
+                            found.add(segment);
+                        }
+                    }
+                }
+            }
+            Collections.sort(found, new Comparator<Segment>()
+                {
+                    public int compare(Segment a, Segment b)
+                    {
+                        return a.first != b.first ? Long.compare(a.first, b.first) : Long.compare(b.last, a.last);
+                    }
+                });
+
+            try
+            {
+                long covered = -1;
+                for (Segment segment : found)
+                {
+                    if (segment.last <= covered)
+                    {
+                        delete(segment); // merged already, left by a crash
+                        continue;
+                    }
+                    covered = segment.last;
+                    indexes.remove(segment.index);
+                    if (!load(segment))
+                    {
+                        delete(segment);
+                    }
+                }
+                for (Path index : indexes)
+                {
+                    Files.deleteIfExists(index); // of data file deleted by merge
+                }
+                nextSegment = covered + 1;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                for (Segment segment : closedSegments)
+                {
+                    segment.close();
+                }
+                throw e;
+            }
+        }
+
+        /*
+        grid point id of meteo.pl UM grid row and column
+        */
+        public static long point(int row, int col)
+        {
+            return ((long) row << 32) | (col & 0xffffffffL);
+        }
+
+        /*
+        append run of given point; result must be fully parsed (not lazy), its timestamp is the base time
+        */
+        public void append(long point, ModelUMResult result) throws IOException
+        {
+            if (!result.temperatureParsed || !result.pressureParsed || !result.otherParsed || !result.dateParsed)
+            {
+                throw new IllegalArgumentException("Result is not fully parsed");
+            }
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    throw new IllegalStateException("Store is closed");
+                }
+                if (active == null)
+                {
+                    startSegment();
+                }
+                // data before index, a crash between leaves a record no index entry points to
+                writer.write(result);
+                entryBuffer.putLong(0, point);
+                entryBuffer.putLong(8, result.timestamp);
+                indexOut.write(entry);
+                put(point, result.timestamp, active, active.records);
+                active.records++;
+                if (active.records >= recordsPerSegment)
+                {
+                    closeSegment();
+                    startCompaction();
+                }
+            }
+        }
+
+        /*
+        run of point with the latest base time, null when point has none
+        */
+        public synchronized Run latest(long point) throws IOException
+        {
+            Runs runs = points.get(point);
+            if (runs == null || runs.size == 0)
+            {
+                return null;
+            }
+            return run(point, runs, runs.size - 1);
+        }
+
+        /*
+        runs of point whose charts cover given time (from first to last chart column), oldest first
+        */
+        public synchronized List<Run> covering(long point, long time) throws IOException
+        {
+            List<Run> list = new ArrayList<Run>();
+            Runs runs = points.get(point);
+            if (runs == null)
+            {
+                return list;
+            }
+            for (int i = runs.from(time - SPAN); i < runs.size && runs.times[i] <= time; i++)
+            {
+                list.add(run(point, runs, i));
+            }
+            return list;
+        }
+
+        /*
+        merge all segments, written so far, into one; waits for a merge running in background
+        */
+        public void compact() throws IOException
+        {
+            List<Segment> segments;
+            synchronized (this)
+            {
+                awaitCompaction();
+                if (closed)
+                {
+                    throw new IllegalStateException("Store is closed");
+                }
+                if (active != null)
+                {
+                    closeSegment();
+                }
+                segments = new ArrayList<Segment>(closedSegments);
+                compacting = true;
+            }
+            try
+            {
+                merge(segments);
+            }
+            finally
+            {
+                synchronized (this)
+                {
+                    compacting = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        // points having at least one run
+        public synchronized int getPointCount()
+        {
+            return points.size();
+        }
+
+        public synchronized long getRunCount()
+        {
+            return runCount;
+        }
+
+        // segment files, the one appended to included
+        public synchronized int getSegmentCount()
+        {
+            return closedSegments.size() + (active != null ? 1 : 0);
+        }
+
+        // merges done, in background or by compact()
+        public synchronized long getCompactions()
+        {
+            return compactions;
+        }
+
+        // background merges failed, segments are then left as they were; old segment files that could not be
+        // deleted after a merge are not failures, they are deleted when store is opened again
+        public synchronized long getCompactionFailures()
+        {
+            return compactionFailures;
+        }
+
+        /*
+        close segment appended to, after merge running in background is done
+        */
+        public synchronized void close() throws IOException
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            awaitCompaction();
+            if (active != null)
+            {
+                closeSegment();
+            }
+            for (Segment segment : closedSegments)
+            {
+                segment.close();
+            }
+        }
+
+        /*
+        index records of segment found on opening; false when it holds none
+        */
+        private boolean load(Segment segment) throws IOException
+        {
+            if (Files.size(segment.data) < ResultFileWriter.headerSize(ResultFileWriter.TYPES.length) || !Files.exists(segment.index))
+            {
+                return false;
+            }
+            segment.reader = new ResultFileReader(segment.data);
+            long count;
+            try (FileChannel channel = FileChannel.open(segment.index, StandardOpenOption.READ))
+            {
+                count = Math.min(segment.reader.getRecordCount(), channel.size() / INDEX_ENTRY);
+                if (count > 0)
+                {
+                    MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, count * INDEX_ENTRY);
+                    index.order(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = 0; i < count; i++)
+                    {
+                        put(index.getLong(i * INDEX_ENTRY), index.getLong(i * INDEX_ENTRY + 8), segment, i);
+                    }
+                }
+            }
+            if (count == 0)
+            {
+                segment.close();
+                return false;
+            }
+            segment.records = (int) count;
+            closedSegments.add(segment);
+            return true;
+        }
+
+        private void put(long point, long time, Segment segment, int record)
+        {
+            Runs runs = points.get(point);
+            if (runs == null)
+            {
+                runs = new Runs();
+                points.put(point, runs);
+            }
+            if (runs.put(time, segment, record))
+            {
+                runCount++;
+            }
+        }
+
+        private Run run(long point, Runs runs, int i) throws IOException
+        {
+            int record = runs.records[i];
+            return new Run(point, runs.times[i], runs.segments[i].reader(record), record);
+        }
+
+        private void startSegment() throws IOException
+        {
+            Segment segment = new Segment(directory, nextSegment, nextSegment);
+            OutputStream data = Files.newOutputStream(segment.data, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try
+            {
+                indexOut = Files.newOutputStream(segment.index, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                writer = new ResultFileWriter(data);
+            }
+            catch (IOException e)
+            {
+                data.close();
+                if (indexOut != null)
+                {
+                    indexOut.close();
+                    indexOut = null;
+                }
+                throw e;
+            }
+            nextSegment++;
+            active = segment;
+        }
+
+        private void closeSegment() throws IOException
+        {
+            Segment segment = active;
+            active = null;
+            try
+            {
+                writer.close();
+            }
+            finally
+            {
+                indexOut.close();
+                writer = null;
+                indexOut = null;
+                closedSegments.add(segment);
+            }
+        }
+
+        /*
+        merge segments not merged yet in background, if there are enough of them, with merged segments
+        before them not much bigger; merged segments always precede the others
+        */
+        private void startCompaction()
+        {
+            if (compacting || closed)
+            {
+                return;
+            }
+            int from = closedSegments.size();
+            long records = 0;
+            while (from > 0 && closedSegments.get(from - 1).first == closedSegments.get(from - 1).last)
+            {
+                from--;
+                records += closedSegments.get(from).records;
+            }
+            if (closedSegments.size() - from < segmentsPerCompaction)
+            {
+                return;
+            }
+            while (from > 0 && closedSegments.get(from - 1).records <= MERGE_RATIO * records)
+            {
+                from--;
+                records += closedSegments.get(from).records;
+            }
+            final List<Segment> segments = new ArrayList<Segment>(closedSegments.subList(from, closedSegments.size()));
+            compacting = true;
+            try
+            {
+                executor.execute(new Runnable()
+                    {
+                        public void run()
+                        {
+                            boolean failed = false;
+                            try
+                            {
+                                merge(segments);
+                            }
+                            catch (IOException | RuntimeException e)
+                            {
+                                failed = true;
+                            }
+                            synchronized (ForecastStore.this)
+                            {
+                                if (failed)
+                                {
+                                    compactionFailures++;
+                                }
+                                compacting = false;
+                                ForecastStore.this.notifyAll();
+                            }
+                        }
+                    });
+            }
+            catch (RejectedExecutionException e)
+            {
+                compacting = false; // tried again when next segment is closed
+            }
+        }
+
+        private void awaitCompaction() throws IOException
+        {
+            while (compacting)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for compaction");
+                }
+            }
+        }
+
+        /*
+        copy records in use of given closed segments, consecutive in sequence, into one new segment
+        and drop them; caller holds compacting flag
+        */
+        private void merge(List<Segment> segments) throws IOException
+        {
+            if (segments.size() < 2)
+            {
+                return;
+            }
+            List<Live> live = new ArrayList<Live>();
+            Map<Segment, ResultFileReader> readers = new IdentityHashMap<Segment, ResultFileReader>();
+            synchronized (this)
+            {
+                for (Segment segment : segments)
+                {
+                    readers.put(segment, segment.reader(segment.records - 1));
+                }
+                for (Map.Entry<Long, Runs> point : points.entrySet())
+                {
+                    Runs runs = point.getValue();
+                    for (int i = 0; i < runs.size; i++)
+                    {
+                        if (readers.containsKey(runs.segments[i]))
+                        {
+                            live.add(new Live(point.getKey(), runs.times[i], runs.segments[i], runs.records[i]));
+                        }
+                    }
+                }
+            }
+            Collections.sort(live, new Comparator<Live>()
+                {
+                    public int compare(Live a, Live b)
+                    {
+                        return a.point != b.point ? Long.compare(a.point, b.point) : Long.compare(a.time, b.time);
+                    }
+                });
+
+            Segment merged = new Segment(directory, segments.get(0).first, segments.get(segments.size() - 1).last);
+            Path tempData = directory.resolve(merged.data.getFileName() + TEMP_SUFFIX);
+            Path tempIndex = directory.resolve(merged.index.getFileName() + TEMP_SUFFIX);
+            try
+            {
+                try (ResultFileWriter data = new ResultFileWriter(Files.newOutputStream(tempData));
+                     OutputStream index = new BufferedOutputStream(Files.newOutputStream(tempIndex), 64 * 1024))
+                {
+                    byte[] entry = new byte[INDEX_ENTRY];
+                    ByteBuffer entryBuffer = ByteBuffer.wrap(entry).order(ByteOrder.LITTLE_ENDIAN);
+                    for (Live record : live)
+                    {
+                        data.write(readers.get(record.segment), record.record);
+                        entryBuffer.putLong(0, record.point);
+                        entryBuffer.putLong(8, record.time);
+                        index.write(entry);
+                    }
+                }
+                // data file moved last, from then on it replaces old segments
+                move(tempIndex, merged.index);
+                move(tempData, merged.data);
+            }
+            finally
+            {
+                Files.deleteIfExists(tempData);
+                Files.deleteIfExists(tempIndex);
+            }
+            merged.reader = new ResultFileReader(merged.data);
+            merged.records = live.size();
+
+            synchronized (this)
+            {
+                for (int i = 0; i < live.size(); i++)
+                {
+                    Live record = live.get(i);
+                    Runs runs = points.get(record.point);
+                    int at = runs.find(record.time);
+                    // run appended again meanwhile stays where it is
+                    if (at >= 0 && runs.segments[at] == record.segment && runs.records[at] == record.record)
+                    {
+                        runs.segments[at] = merged;
+                        runs.records[at] = i;
+                    }
+                }
+                int at = closedSegments.indexOf(segments.get(0));
+                closedSegments.removeAll(segments);
+                closedSegments.add(at, merged);
+                compactions++;
+                for (Segment segment : segments)
+                {
+                    segment.close();
+                }
+            }
+            for (Segment segment : segments)
+            {
+                try
+                {
+                    delete(segment);
+                }
+                catch (IOException e)
+                {
+                    // merge is done, segment covered by merged one is deleted when store is opened
+                }
+            }
+        }
+
+        private static void move(Path from, Path to) throws IOException
+        {
+            try
+            {
+                Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private static void delete(Segment segment) throws IOException
+        {
+            Files.deleteIfExists(segment.data); // data first, index left alone is deleted on opening
+            Files.deleteIfExists(segment.index);
+        }
+    }
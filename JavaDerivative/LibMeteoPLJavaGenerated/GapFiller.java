@@ -0,0 +1,189 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Fills missing samples (NOVALUE or -NOVALUE) of parsed series, the heuristic of ModelUM created
+with useHeuristicForMissingData.
+
+Every series is filled in one pass from left to right: a run of missing samples is filled when
+the valid sample after it is reached, from that sample and the last valid one before the run,
+so each sample is visited at most twice. Runs between valid samples (holes) are filled by given
+hole policy, runs at chart ends (edges) by given edge policy; runs longer than maxGap samples are
+left missing.
+
+Temperature, perceptible temperature and pressure in hPa are filled so; missing samples of their
+minimum and maximum series take the value of main series of the column, and pressure in mm Hg is
+computed again where hPa was filled. DEFAULT gives values of earlier versions of the parser.
+*/
+public final class GapFiller
+    {
+        // policies of holes
+        public static final int HOLES_NONE = 0;
+        public static final int HOLES_LINEAR = 1; // on line between valid samples around
+        public static final int HOLES_NEAREST = 2; // value of nearer valid sample, the left one at half
+
+        // policies of edges
+        public static final int EDGES_NONE = 0;
+        public static final int EDGES_HOLD = 1; // value of valid sample next to edge
+
+        // holes interpolated, edges held, of any length
+        public static final GapFiller DEFAULT = new GapFiller(HOLES_LINEAR, EDGES_HOLD, Integer.MAX_VALUE);
+
+        final int holes;
+        final int edges;
+        final int maxGap;
+
+        public GapFiller(int holes, int edges, int maxGap)
+        {
+            if (holes < HOLES_NONE || holes > HOLES_NEAREST || edges < EDGES_NONE || edges > EDGES_HOLD)
+            {
+                throw new IllegalArgumentException("Unknown gap filling policy");
+            }
+            if (maxGap < 1)
+            {
+                throw new IllegalArgumentException("Maximum gap must be at least one sample");
+            }
+            this.holes = holes;
+            this.edges = edges;
+            this.maxGap = maxGap;
+        }
+
+        /*
+        fill every series of parsed result; returns number of samples filled
+        */
+        public int fill(ModelUMResult result)
+        {
+            result.summary = null;
+            return fillTemperature(result) + fillPressure(result);
+        }
+
+        /*
+        fill missing samples of series in place; returns number of samples filled
+        */
+        public int fill(double[] series)
+        {
+            int filled = 0;
+            int last = -1; // last valid sample
+            for (int x = 0; x < series.length; x++)
+            {
+                if (isMissing(series[x]))
+                {
+                    continue;
+                }
+                if (x - last > 1)
+                {
+                    filled += last < 0 ? fillEdge(series, 0, x, x) : fillHole(series, last, x);
+                }
+                last = x;
+            }
+            if (last >= 0 && last < series.length - 1)
+            {
+                filled += fillEdge(series, last + 1, series.length, last);
+            }
+            return filled;
+        }
+
+        int fillTemperature(ModelUMResult result)
+        {
+            int filled = fill(result.temperature) + fill(result.temperaturePerc);
+            filled += follow(result.temperatureMin, result.temperature);
+            filled += follow(result.temperatureMax, result.temperature);
+            filled += follow(result.temperaturePercMin, result.temperaturePerc);
+            filled += follow(result.temperaturePercMax, result.temperaturePerc);
+            return filled;
+        }
+
+        int fillPressure(ModelUMResult result)
+        {
+            double[] hPa = result.pressurehPa;
+            double[] mmHg = result.pressuremmHg;
+            int filled = fill(hPa);
+            int mmHgFilled = 0;
+            for (int x = 0; filled > 0 && x < mmHg.length; x++)
+            {
+                if (isMissing(mmHg[x]) && !isMissing(hPa[x]))
+                {
+                    mmHg[x] = ModelUM.hPaTommHg(hPa[x]);
+                    mmHgFilled++;
+                }
+            }
+            return filled + mmHgFilled;
+        }
+
+        /*
+        key of settings other than DEFAULT, 0 for DEFAULT; see ResultCache
+        */
+        long key()
+        {
+            if (holes == HOLES_LINEAR && edges == EDGES_HOLD && maxGap == Integer.MAX_VALUE)
+            {
+                return 0;
+            }
+            return 1 + (((long) maxGap << 8) | (holes << 4) | edges);
+        }
+
+        /*
+        samples from ... to - 1 of edge take value of sample at
+        */
+        private int fillEdge(double[] series, int from, int to, int at)
+        {
+            if (edges == EDGES_NONE || to - from > maxGap)
+            {
+                return 0;
+            }
+            for (int fixx = from; fixx < to; fixx++)
+            {
+                series[fixx] = series[at];
+            }
+            return to - from;
+        }
+
+        /*
+        samples between valid left and right
+        */
+        private int fillHole(double[] series, int left, int right)
+        {
+            int leftx = left + 1;
+            if (holes == HOLES_NONE || right - leftx > maxGap)
+            {
+                return 0;
+            }
+            if (holes == HOLES_LINEAR)
+            {
+                double diff = (series[right] - series[left]) / (right - leftx + 1);
+                for (int workx = leftx; workx < right; workx++)
+                {
+                    series[workx] = series[left] + diff * (workx - leftx + 1);
+                }
+            }
+            else
+            {
+                for (int workx = leftx; workx < right; workx++)
+                {
+                    series[workx] = workx - left <= right - workx ? series[left] : series[right];
+                }
+            }
+            return right - leftx;
+        }
+
+        /*
+        missing samples of minimum or maximum series take value of main series
+        */
+        private static int follow(double[] series, double[] main)
+        {
+            int filled = 0;
+            for (int x = 0; x < series.length; x++)
+            {
+                if (isMissing(series[x]) && !isMissing(main[x]))
+                {
+                    series[x] = main[x];
+                    filled++;
+                }
+            }
+            return filled;
+        }
+
+        private static boolean isMissing(double value)
+        {
+            return value == ModelUM.NOVALUE || value == -ModelUM.NOVALUE;
+        }
+    }
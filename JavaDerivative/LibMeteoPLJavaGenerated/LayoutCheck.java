@@ -0,0 +1,199 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Quick check that an image has the layout of UM meteogram, to be done before it is parsed.
+
+Parser takes any image of WIDTH x HEIGHT pixels, and for one that is not a UM meteogram - error
+page rendered to PNG, "no data" placeholder, meteogram of another model of the same size - gives
+NOVALUE or wrong values after a full parse. Such images differ from UM meteograms in pixels that
+are the same in every UM meteogram whatever the place and date, so a few dozen of them, PROBES,
+are compared with their colors: margins of background, corners and borders of chart panels with
+grey gaps between them.
+
+Colors must match exactly, so probes lie only on flat areas drawn without anti-aliasing: margins
+at least 4 pixels away from any text, frame lines and gaps. Text - title, axis titles, captions -
+is not probed, as its pixels change with font rendering while parser reads none of them. All
+probes are read and the first one that differs is reported with the number of differing ones;
+verdict of valid image is not allocated. Probes lie in first PngDecoder.MODELUM_ROWS rows, so
+image decoded that far is enough.
+*/
+public final class LayoutCheck
+    {
+        // verdicts, by group of the first probe that differs
+        public static final int VERDICT_OK = 0;
+        public static final int VERDICT_SIZE = 1; // image is not WIDTH x HEIGHT
+        public static final int VERDICT_BACKGROUND = 2;
+        public static final int VERDICT_FRAME = 3;
+
+        private static final String[] NAMES = new String[] { "ok", "size", "background", "frame" };
+
+        private static final int COLOR_BACKGROUND = 0xfffbf0;
+        private static final int COLOR_GAP = 0xe0e0e0;
+
+        // top and bottom border rows of chart panels, left and right border columns are the same for all
+        private static final int[] PANEL_TOPS = new int[] { 57, 143, 229, 315, 436, 523 };
+        private static final int[] PANEL_BOTTOMS = new int[] { 134, 220, 306, 392, 514, 601 };
+        private static final int PANEL_LEFT = ModelUM.CHART_START_COL - 1;
+        private static final int PANEL_RIGHT = ModelUM.CHART_START_COL + ModelUM.CHART_WIDTH;
+
+        // x, y, color, verdict when it differs; in order of verdicts
+        static final int[] PROBES = probes();
+        static final int PROBE_COUNT = PROBES.length / 4;
+
+        private static final Verdict VALID = new Verdict(VERDICT_OK, 0, -1, -1, 0, 0);
+
+        private static int[] probes()
+        {
+            int[] probes = new int[] {
+                // image corners and margins
+                0, 0, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                ModelUM.WIDTH - 1, 0, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                0, PngDecoder.MODELUM_ROWS - 1, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                ModelUM.WIDTH - 1, PngDecoder.MODELUM_ROWS - 1, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                200, 20, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                400, 20, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                520, 20, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                20, 300, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                40, 560, COLOR_BACKGROUND, VERDICT_BACKGROUND,
+                // borders and gaps of chart panels, corners added below
+                270, PANEL_TOPS[0], ModelUM.COLOR_BLACK, VERDICT_FRAME,
+                PANEL_LEFT, 95, ModelUM.COLOR_BLACK, VERDICT_FRAME,
+                PANEL_RIGHT, 95, ModelUM.COLOR_BLACK, VERDICT_FRAME,
+                PANEL_RIGHT, 138, COLOR_GAP, VERDICT_FRAME,
+                PANEL_RIGHT, 224, COLOR_GAP, VERDICT_FRAME,
+                PANEL_RIGHT, 310, COLOR_GAP, VERDICT_FRAME,
+                PANEL_RIGHT, 518, COLOR_GAP, VERDICT_FRAME,
+                PANEL_RIGHT, 606, COLOR_GAP, VERDICT_FRAME };
+
+            int corners = 4 * 4 * PANEL_TOPS.length;
+            int[] all = new int[probes.length + corners];
+            System.arraycopy(probes, 0, all, 0, probes.length);
+            int at = probes.length;
+            for (int panel = 0; panel < PANEL_TOPS.length; panel++)
+            {
+                for (int corner = 0; corner < 4; corner++)
+                {
+                    all[at++] = (corner & 1) == 0 ? PANEL_LEFT : PANEL_RIGHT;
+                    all[at++] = (corner & 2) == 0 ? PANEL_TOPS[panel] : PANEL_BOTTOMS[panel];
+                    all[at++] = ModelUM.COLOR_BLACK;
+                    all[at++] = VERDICT_FRAME;
+                }
+            }
+            return all;
+        }
+
+        /*
+        outcome of check: VERDICT_* of the first probe that differs, where it is and how many differ
+        */
+        public static final class Verdict
+            {
+                final int code;
+                final int mismatches;
+                final int x;
+                final int y;
+                final int expected;
+                final int actual;
+
+                Verdict(int code, int mismatches, int x, int y, int expected, int actual)
+                {
+                    this.code = code;
+                    this.mismatches = mismatches;
+                    this.x = x;
+                    this.y = y;
+                    this.expected = expected;
+                    this.actual = actual;
+                }
+
+                // image has layout of UM meteogram
+                public boolean isValid()
+                {
+                    return code == VERDICT_OK;
+                }
+
+                public int getCode()
+                {
+                    return code;
+                }
+
+                // probes that differ, of PROBE_COUNT; 0 for wrong size
+                public int getMismatches()
+                {
+                    return mismatches;
+                }
+
+                // pixel of the first probe that differs, -1 when none
+                public int getX()
+                {
+                    return x;
+                }
+
+                public int getY()
+                {
+                    return y;
+                }
+
+                // 0xRRGGBB color of UM meteogram at the pixel, and color found
+                public int getExpected()
+                {
+                    return expected;
+                }
+
+                public int getActual()
+                {
+                    return actual;
+                }
+
+                public String toString()
+                {
+                    if (code == VERDICT_OK || code == VERDICT_SIZE)
+                    {
+                        return NAMES[code];
+                    }
+                    return String.format("%s: pixel (%d, %d) is %06x instead of %06x, %d of %d probes differ",
+                            NAMES[code], x, y, actual, expected, mismatches, PROBE_COUNT);
+                }
+            }
+
+        private LayoutCheck()
+        {
+        }
+
+        public static Verdict check(PixelSource pixels)
+        {
+            if (pixels.getWidth() != ModelUM.WIDTH || pixels.getHeight() != ModelUM.HEIGHT)
+            {
+                return new Verdict(VERDICT_SIZE, 0, -1, -1, 0, 0);
+            }
+            int first = -1;
+            int mismatches = 0;
+            for (int i = 0; i < PROBES.length; i += 4)
+            {
+                if (pixels.getPixel(PROBES[i], PROBES[i + 1]) != PROBES[i + 2])
+                {
+                    if (first < 0)
+                    {
+                        first = i;
+                    }
+                    mismatches++;
+                }
+            }
+            if (first < 0)
+            {
+                return VALID;
+            }
+            return new Verdict(PROBES[first + 3], mismatches, PROBES[first], PROBES[first + 1], PROBES[first + 2],
+                    pixels.getPixel(PROBES[first], PROBES[first + 1]));
+        }
+
+        /*
+        check image given as BufferedImage.getRGB() pixels, as ModelUM takes them
+        */
+        public static Verdict check(int[] pixelsRGB)
+        {
+            if (pixelsRGB.length != ModelUM.WIDTH * ModelUM.HEIGHT)
+            {
+                return new Verdict(VERDICT_SIZE, 0, -1, -1, 0, 0);
+            }
+            return check(PixelSource.ofRGB(pixelsRGB, ModelUM.WIDTH, ModelUM.HEIGHT));
+        }
+    }
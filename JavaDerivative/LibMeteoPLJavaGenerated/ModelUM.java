@@ -2,145 +2,383 @@
 
 package com.pgssoft.meteopllibrary;
 
+import java.time.ZoneId;
+
+/*
+Parser of meteograms of UM model.
+
+Layout constants and glyph tables are static and ModelUM keeps no per-image data: all state of
+a parse lives in ModelUMResult given to it, so one ModelUM can parse in any number of threads at
+once, each with its own holder (Utils given to it must allow that too). Objects created with image
+own their holder; a lazy one parses on first getSamples(), so it should be used by one thread.
+*/
 public class ModelUM
     {
 
-        public final int WIDTH = 540;
-        public final int HEIGHT = 660;
+        public static final int WIDTH = 540;
+        public static final int HEIGHT = 660;
 
-        Utils utils;
+        final Utils utils;
 
         // consts used across parser
-        final int DIGIT_WIDTH = 5;
-        final int DIGIT_HEIGHT = 8;
-        final int DIGIT_SEPARATOR = 1;
-
-        final int TIMESTAMP_DATE_ROW = 619;
-        final int TIMESTAMP_TIME_ROW = 607;
-        final int CHART_START_COL = 64;
-        public final int CHART_WIDTH = 412; // standard source width
-        final int PEAKS_NUMBER = 72; // to be checked
-
-        final int TEMPERATURE_ROW_START = 58;
-        final int TEMPERATURE_ROW_END = 133;
-        final int TEMPERATURE_TEXT_COL = 39;
-        public final int TEMPERATURE_PANEL_HEIGHT = TEMPERATURE_ROW_END- TEMPERATURE_ROW_START+1;
-
-        final int PRESSURE_TEXT_COL = 33;
-        final int PRESSURE_ROW_START = 230;
-        final int PRESSURE_ROW_END = 305;
-        final int PRESSURE_PANEL_HEIGHT = PRESSURE_ROW_END - PRESSURE_ROW_START + 1;
-
-        final int DAYNIGHT_COL_START = 63;
-        final int DAYNIGHT_ROW = 29;
+        static final int DIGIT_WIDTH = 5;
+        static final int DIGIT_HEIGHT = 8;
+        static final int DIGIT_SEPARATOR = 1;
+
+        // glyph lookup, see readDigit(); tables are built once and shared by all instances
+        static final int GLYPH_MAX_HEIGHT = 9;
+        static final long GLYPH_MASK_8 = (1L << 40) - 1; // first 8 rows of glyph cell
+        static final long GLYPH_TAG_9 = 1L << 45; // marks keys of 9 pixel high templates
+        static final long GLYPH_HASH = 0x9E3779B97F4A7C15L;
+        static final int GLYPH_TABLE_BITS = 6;
+        static final int GLYPH_TABLE_SIZE = 1 << GLYPH_TABLE_BITS;
+        static final int GLYPH_RANK_MINUS = 10;
+        static final int GLYPH_RANK_NONE = 1000;
+        // template priority, 8 must come before 3
+        static final int[] GLYPH_ORDER = new int[] { 0, 1, 2, 8, 4, 5, 6, 7, 3, 9, -1 };
+        static final long[] glyphKeys = new long[GLYPH_TABLE_SIZE];
+        static final int[] glyphRanks = new int[GLYPH_TABLE_SIZE];
+        // lines of glyph cell the first ink of some template is in, bit per line; see TextBand
+        static final int GLYPH_START_COLUMNS;
+        static final int GLYPH_START_ROWS;
+        static final long GLYPH_ROWS_8 = (1L << DIGIT_HEIGHT) - 1; // first 8 rows of glyph cell column
+        static final long GLYPH_CELL_COLUMNS = (1L << DIGIT_WIDTH) - 1; // columns of glyph cell row
+
+        static final int TIMESTAMP_DATE_ROW = 619;
+        static final int TIMESTAMP_TIME_ROW = 607;
+        static final int CHART_START_COL = 64;
+        public static final int CHART_WIDTH = 412; // standard source width
+        static final int PEAKS_NUMBER = 72; // to be checked
+
+        static final int TEMPERATURE_ROW_START = 58;
+        static final int TEMPERATURE_ROW_END = 133;
+        static final int TEMPERATURE_TEXT_COL = 39;
+        public static final int TEMPERATURE_PANEL_HEIGHT = TEMPERATURE_ROW_END- TEMPERATURE_ROW_START+1;
+
+        static final int PRESSURE_TEXT_COL = 33;
+        static final int PRESSURE_ROW_START = 230;
+        static final int PRESSURE_ROW_END = 305;
+        static final int PRESSURE_PANEL_HEIGHT = PRESSURE_ROW_END - PRESSURE_ROW_START + 1;
+
+        // bands read by scale OCR: up to 3 (temperature) or 4 (pressure) digits from *_TEXT_COL,
+        // glyphs starting DIGIT_HEIGHT rows above panel down to its last row
+        static final int TEMPERATURE_LABEL_WIDTH = 3 * DIGIT_WIDTH + 2 * DIGIT_SEPARATOR;
+        static final int TEMPERATURE_LABEL_ROW = TEMPERATURE_ROW_START - DIGIT_HEIGHT;
+        static final int TEMPERATURE_LABEL_ROWS = TEMPERATURE_PANEL_HEIGHT + DIGIT_HEIGHT + GLYPH_MAX_HEIGHT - 1;
+        static final int PRESSURE_LABEL_WIDTH = 4 * DIGIT_WIDTH + 3 * DIGIT_SEPARATOR;
+        static final int PRESSURE_LABEL_ROW = PRESSURE_ROW_START - DIGIT_HEIGHT;
+        static final int PRESSURE_LABEL_ROWS = PRESSURE_PANEL_HEIGHT + DIGIT_HEIGHT + GLYPH_MAX_HEIGHT - 1;
+
+        static final int DAYNIGHT_COL_START = 63;
+        static final int DAYNIGHT_ROW = 29;
+
+        // rows of date and time glyphs, columns from first chart column to the last glyph readDate() may try
+        static final int DATE_COL_END = CHART_START_COL + CHART_WIDTH + 24 + DIGIT_WIDTH;
+
+        // chart panels are compared with previous image in blocks of columns, see reparse()
+        static final int REPARSE_BLOCK = 32;
+
+        // bit planes of chart panel indexes, see ChartPlanes
+        static final int PLANE_RED = 0;
+        static final int PLANE_BLUE = 1;
+        static final int PLANE_RED_SHADE1 = 2;
+        static final int PLANE_RED_SHADE2 = 3;
+        static final int PLANE_BLUE_SHADE = 4;
+        static final int TEMPERATURE_PLANES = 5;
+        static final int PLANE_BLACK = 0;
+        static final int PRESSURE_PLANES = 1;
 
         // color definitons
-        public final int COLOR_BLACK = 0x000000;
-        public final int COLOR_WHITE = 0xFFFFFF;
-        public final int COLOR_TEMPERATURE_RED = 0xff0000;
-        public final int COLOR_TEMPERATURE_MINMAX_RED1 = 0xf5d2d2;
-        public final int COLOR_TEMPERATURE_MINMAX_RED2 = 0xfadcdc;
-        public final int COLOR_DAY = 0xffffff;
-        public final int COLOR_NIGHT = 0xe2e2e2;
-        public final int COLOR_TEMPERATURE_NEGATIVE_BG_DAY = 0x87cefa;
-        public final int COLOR_TEMPERATURE_NEGATIVE_BG_NIGHT = 0x82bee6;
+        public static final int COLOR_BLACK = 0x000000;
+        public static final int COLOR_WHITE = 0xFFFFFF;
+        public static final int COLOR_TEMPERATURE_RED = 0xff0000;
+        public static final int COLOR_TEMPERATURE_MINMAX_RED1 = 0xf5d2d2;
+        public static final int COLOR_TEMPERATURE_MINMAX_RED2 = 0xfadcdc;
+        public static final int COLOR_DAY = 0xffffff;
+        public static final int COLOR_NIGHT = 0xe2e2e2;
+        public static final int COLOR_TEMPERATURE_NEGATIVE_BG_DAY = 0x87cefa;
+        public static final int COLOR_TEMPERATURE_NEGATIVE_BG_NIGHT = 0x82bee6;
 
-        public final int COLOR_TEMPERATURE_PERC_BLUE = 0x0000ff;
-        public final int COLOR_TEMPERATURE_PERC_MINMAX_BLUE = 0xb9dcff;
+        public static final int COLOR_TEMPERATURE_PERC_BLUE = 0x0000ff;
+        public static final int COLOR_TEMPERATURE_PERC_MINMAX_BLUE = 0xb9dcff;
 
-        boolean useHeuristicForMissingData = false;
-        public final int ERR = -1000000;
+        final boolean useHeuristicForMissingData;
+        // fills missing samples when useHeuristicForMissingData is set, null otherwise
+        final GapFiller gapFiller;
+        public static final int ERR = -1000000;
 
-        public final int NOVALUE = 1048576; // 2^20 to fit int and double nicely
+        public static final int NOVALUE = 1048576; // 2^20 to fit int and double nicely
 
-        // parsed data
-        long timestamp = 0;
+        // to be increased with every change of values parsed from the same image, see ResultCache
+        public static final int PARSER_VERSION = 1;
 
+        // data parsed from image given to constructor, null for parser created without image
+        final ModelUMResult data;
 
+        // scales already read by this parser, null when every image is read with OCR
+        final ScaleCache scaleCache;
+        // called after every parse with its metrics, null for none; see ParseMetrics
+        final ParseListener listener;
 
         // consider changing to ENUM, if all target languages support it
         // Section 1 - temperatures
-        public final int TYPE_TEMPERATURE = 0;
-        public final int TYPE_TEMPERATURE_MIN = 1;
-        public final int TYPE_TEMPERATURE_MAX = 2;
-        public final int TYPE_TEMPERATURE_PERCEPTIBLE = 3;
-        public final int TYPE_TEMPERATURE_PERCEPTIBLE_MIN = 4;
-        public final int TYPE_TEMPERATURE_PERCEPTIBLE_MAX = 5;
-        public final int TYPE_SURFACE_TEMPERATURE_MIN = 6;
-        public final int TYPE_SURFACE_TEMPERATURE_MAX = 7;
-        public final int TYPE_DEWPOINT_TEMPERATURE = 8;
+        public static final int TYPE_TEMPERATURE = 0;
+        public static final int TYPE_TEMPERATURE_MIN = 1;
+        public static final int TYPE_TEMPERATURE_MAX = 2;
+        public static final int TYPE_TEMPERATURE_PERCEPTIBLE = 3;
+        public static final int TYPE_TEMPERATURE_PERCEPTIBLE_MIN = 4;
+        public static final int TYPE_TEMPERATURE_PERCEPTIBLE_MAX = 5;
+        public static final int TYPE_SURFACE_TEMPERATURE_MIN = 6;
+        public static final int TYPE_SURFACE_TEMPERATURE_MAX = 7;
+        public static final int TYPE_DEWPOINT_TEMPERATURE = 8;
         // Section 2 - precipitation
-        public final int TYPE_HUMIDITY = 9;
-        public final int TYPE_RAIN_AVERAGE = 10;
-        public final int TYPE_RAIN_MAX = 11;
-        public final int TYPE_SNOW_AVERAGE = 12;
-        public final int TYPE_SNOW_MAX = 13;
-        public final int TYPE_PRECIPITIATION_ABOVE_SCALE = 14;
-        public final int TYPE_CONVECTIVE_PRECIPITIATION = 15;
+        public static final int TYPE_HUMIDITY = 9;
+        public static final int TYPE_RAIN_AVERAGE = 10;
+        public static final int TYPE_RAIN_MAX = 11;
+        public static final int TYPE_SNOW_AVERAGE = 12;
+        public static final int TYPE_SNOW_MAX = 13;
+        public static final int TYPE_PRECIPITIATION_ABOVE_SCALE = 14;
+        public static final int TYPE_CONVECTIVE_PRECIPITIATION = 15;
         // Section 3 - atmospheric pressure
-        public final int TYPE_PRESSURE_HPA = 16;
-        public final int TYPE_PRESSURE_MMHG = 17;
+        public static final int TYPE_PRESSURE_HPA = 16;
+        public static final int TYPE_PRESSURE_MMHG = 17;
         // Section X - extra data
-        public final int TYPE_DAYNIGHT = 100;
+        public static final int TYPE_DAYNIGHT = 100;
         // Other sections - TBD
 
+        // reading series at given times, see ModelUMResult.getSampleAt()
+        public static final int RESAMPLE_NEAREST = 0;
+        public static final int RESAMPLE_LINEAR = 1;
 
-        // Section 1 - temperatures
-        double[] temperature = new double[CHART_WIDTH];
-        double[] temperatureMin = new double[CHART_WIDTH];
-        double[] temperatureMax = new double[CHART_WIDTH];
-        double[] temperaturePerc = new double[CHART_WIDTH];
-        double[] temperaturePercMin = new double[CHART_WIDTH];
-        double[] temperaturePercMax = new double[CHART_WIDTH];
-        double[] temperatureSurfaceMin = new double[PEAKS_NUMBER];
-        double[] temperatureSurfaceMax = new double[PEAKS_NUMBER];
-        double[] temperatureDewPoint = new double[PEAKS_NUMBER];
-        double temperature_precision;
-        double temperature_row0;
 
-        // Section 2 - precipitation
-        double[] humidity = new double[CHART_WIDTH];
-        double[] rainAvg = new double[PEAKS_NUMBER];
-        double[] rainMax = new double[PEAKS_NUMBER];
-        double[] snowAvg = new double[PEAKS_NUMBER];
-        double[] snowMax = new double[PEAKS_NUMBER];
-        boolean[] percAboveScale = new boolean[PEAKS_NUMBER];
-        boolean[] convectivePerc = new boolean[PEAKS_NUMBER];
+        /*
+        create parser without image, to be reused for many images with parse()
+        */
+        public ModelUM(Utils utils, boolean useHeuristicForMissingData)
+        {
+            this(utils, useHeuristicForMissingData, null);
+        }
 
-        // Section 3 - atmospheric pressure
-        double[] pressurehPa = new double[CHART_WIDTH];
-        double[] pressuremmHg = new double[CHART_WIDTH];
-        double pressure_row0_hPa;
-        double pressure_precision_hPa;
+        /*
+        create parser without image, skipping OCR of scales found in given cache; cache may be shared
+        by parsers and threads, null for none
+        */
+        public ModelUM(Utils utils, boolean useHeuristicForMissingData, ScaleCache scaleCache)
+        {
+            this.utils = utils;
+            this.useHeuristicForMissingData = useHeuristicForMissingData;
+            this.gapFiller = useHeuristicForMissingData ? GapFiller.DEFAULT : null;
+            this.data = null;
+            this.scaleCache = scaleCache;
+            this.listener = null;
+        }
 
-        // Other sections - TBD
-        double[] daynight = new double[CHART_WIDTH];
+        /*
+        create parser without image filling missing samples with given filler, null for none
+        */
+        public ModelUM(Utils utils, GapFiller gapFiller, ScaleCache scaleCache)
+        {
+            this(utils, gapFiller, scaleCache, null);
+        }
 
+        /*
+        create parser without image reporting stage times and counters of every parse() and reparse() to
+        listener, null for none; parses are measured also while JDK Flight Recorder records them, see ParseEvents
+        */
+        public ModelUM(Utils utils, GapFiller gapFiller, ScaleCache scaleCache, ParseListener listener)
+        {
+            this.utils = utils;
+            this.useHeuristicForMissingData = gapFiller != null;
+            this.gapFiller = gapFiller;
+            this.data = null;
+            this.scaleCache = scaleCache;
+            this.listener = listener;
+        }
 
         // create object and parse img
         public ModelUM(int[] pixelsRGB, Utils utils, boolean useHeuristicForMissingData)
+        {
+            this(pixelsRGB, utils, useHeuristicForMissingData, false);
+        }
+
+        /*
+        create object and parse img given as BufferedImage.getRGB() pixels; with lazy set only input is checked here,
+        each section is parsed on first getSamples() of matching type, date on first getTimestamp();
+        input array is not modified, alpha byte is skipped when pixels are read
+        */
+        public ModelUM(int[] pixelsRGB, Utils utils, boolean useHeuristicForMissingData, boolean lazy)
         {
             this.utils = utils;
             this.useHeuristicForMissingData = useHeuristicForMissingData;
+            this.gapFiller = useHeuristicForMissingData ? GapFiller.DEFAULT : null;
+            this.data = new ModelUMResult();
+            this.scaleCache = null;
+            this.listener = null;
 
             if (pixelsRGB.length!= WIDTH * HEIGHT)
             {
                 utils.throwException("Invalid size of input array");
             }
 
-            // zero highest (alpha) byte
-            for (int i = 0; i < pixelsRGB.length; i++)
+            init(PixelSource.ofRGB(pixelsRGB, WIDTH, HEIGHT), data, lazy);
+        }
+
+        // create object and parse img read in place from raster or buffer, see PixelSource
+        public ModelUM(PixelSource pixels, Utils utils, boolean useHeuristicForMissingData)
+        {
+            this(pixels, utils, useHeuristicForMissingData, false);
+        }
+
+        public ModelUM(PixelSource pixels, Utils utils, boolean useHeuristicForMissingData, boolean lazy)
+        {
+            this.utils = utils;
+            this.useHeuristicForMissingData = useHeuristicForMissingData;
+            this.gapFiller = useHeuristicForMissingData ? GapFiller.DEFAULT : null;
+            this.data = new ModelUMResult();
+            this.scaleCache = null;
+            this.listener = null;
+
+            if (pixels.getWidth() != WIDTH || pixels.getHeight() != HEIGHT)
+            {
+                utils.throwException("Invalid size of input image");
+            }
+
+            init(pixels, data, lazy);
+        }
+
+        /*
+        create object and parse img given as palette indices, one byte per pixel; see PixelSource.ofIndexed()
+        */
+        public ModelUM(byte[] indices, int[] palette, Utils utils, boolean useHeuristicForMissingData)
+        {
+            this(indices, palette, utils, useHeuristicForMissingData, false);
+        }
+
+        public ModelUM(byte[] indices, int[] palette, Utils utils, boolean useHeuristicForMissingData, boolean lazy)
+        {
+            this.utils = utils;
+            this.useHeuristicForMissingData = useHeuristicForMissingData;
+            this.gapFiller = useHeuristicForMissingData ? GapFiller.DEFAULT : null;
+            this.data = new ModelUMResult();
+            this.scaleCache = null;
+            this.listener = null;
+
+            if (indices.length!= WIDTH * HEIGHT)
+            {
+                utils.throwException("Invalid size of input array");
+            }
+
+            init(PixelSource.ofIndexed(indices, 0, WIDTH, WIDTH, HEIGHT, palette), data, lazy);
+        }
+
+        /*
+        parse img into given result holder; nothing is allocated here, so one parser and one holder
+        can be reused for any number of images, and parser can be shared by threads with holder each
+        */
+        public void parse(PixelSource pixels, ModelUMResult result)
+        {
+            if (pixels.getWidth() != WIDTH || pixels.getHeight() != HEIGHT)
+            {
+                utils.throwException("Invalid size of input image");
+            }
+
+            init(pixels, result, false);
+        }
+
+        /*
+        parse img into result as parse() does, for image of a place whose previous image was parsed into previous:
+        parts of img the same as in previous image - scale labels, day/night row, date, blocks of chart columns -
+        are not read again, their values (and chart panel index) are taken from previous; values are exactly those
+        of parse(pixels, result). previous must hold all values of previousPixels, parsed by this parser, and be
+        another holder than result; when it does not hold all of them, img is parsed in full
+        */
+        public void reparse(PixelSource previousPixels, ModelUMResult previous, PixelSource pixels, ModelUMResult result)
+        {
+            if (pixels.getWidth() != WIDTH || pixels.getHeight() != HEIGHT ||
+                previousPixels.getWidth() != WIDTH || previousPixels.getHeight() != HEIGHT)
+            {
+                utils.throwException("Invalid size of input image");
+            }
+            if (previous == result)
+            {
+                throw new IllegalArgumentException("Previous values must be in another holder");
+            }
+
+            init(pixels, result, true);
+            if (previous.temperatureParsed && previous.pressureParsed && previous.otherParsed && previous.dateParsed)
+            {
+                reparsePixels(previousPixels, previous, result);
+            }
+            else
+            {
+                parsePixels(result);
+            }
+        }
+
+        /*
+        holder of data parsed from image given to constructor, null for parser created without image
+        */
+        public ModelUMResult getResult()
+        {
+            return data;
+        }
+
+        private void init(PixelSource pixels, ModelUMResult result, boolean lazy)
+        {
+            result.keyBlack = pixels.keyOf(COLOR_BLACK);
+            result.keyWhite = pixels.keyOf(COLOR_WHITE);
+            result.keyTemperatureRed = pixels.keyOf(COLOR_TEMPERATURE_RED);
+            result.keyTemperatureMinmaxRed1 = pixels.keyOf(COLOR_TEMPERATURE_MINMAX_RED1);
+            result.keyTemperatureMinmaxRed2 = pixels.keyOf(COLOR_TEMPERATURE_MINMAX_RED2);
+            result.keyTemperaturePercBlue = pixels.keyOf(COLOR_TEMPERATURE_PERC_BLUE);
+            result.keyTemperaturePercMinmaxBlue = pixels.keyOf(COLOR_TEMPERATURE_PERC_MINMAX_BLUE);
+
+            int[] temperatureKeys = result.temperaturePlanes.keys;
+            temperatureKeys[PLANE_RED] = result.keyTemperatureRed;
+            temperatureKeys[PLANE_BLUE] = result.keyTemperaturePercBlue;
+            temperatureKeys[PLANE_RED_SHADE1] = result.keyTemperatureMinmaxRed1;
+            temperatureKeys[PLANE_RED_SHADE2] = result.keyTemperatureMinmaxRed2;
+            temperatureKeys[PLANE_BLUE_SHADE] = result.keyTemperaturePercMinmaxBlue;
+            result.pressurePlanes.keys[PLANE_BLACK] = result.keyBlack;
+            result.classifier = RowClassifier.of(pixels, temperatureKeys);
+            if (RowClassifier.of(pixels, result.pressurePlanes.keys) == null)
             {
-                pixelsRGB[i] = pixelsRGB[i] & 0xffffff;
+                result.classifier = null;
             }
 
-            parsePixels(pixelsRGB);
+            result.pixels = pixels;
+            result.temperatureScaleParsed = false;
+            result.temperatureParsed = false;
+            result.temperatureIndexed = false;
+            result.pressureIndexed = false;
+            result.pressureParsed = false;
+            result.otherParsed = false;
+            result.dateParsed = false;
+            result.summary = null;
+            if (!lazy)
+            {
+                parsePixels(result);
+            }
         }
 
         public long getTimestamp(int px)
         {
-            double part = px*1.0d / CHART_WIDTH;
-            return timestamp + (int)(part * (CHART_WIDTH / 168.0) * 24 * 60 * 60 * 1000);
+            checkData();
+            parseDate(data);
+            return data.getTimestamp(px);
+        }
+
+        /*
+        daily and day/night aggregates of chart series, see ModelUMResult.getDailySummary()
+        */
+        public DailySummary getDailySummary(ZoneId zone)
+        {
+            checkData();
+            parseTemperature(data);
+            parsePressure(data);
+            parseOther(data);
+            parseDate(data);
+            return data.getDailySummary(zone);
         }
 
         /*
@@ -171,26 +409,24 @@ public class ModelUM
         */
         public double[] getSamples(int type)
         {
+            checkData();
             switch (type)
             {
                 case TYPE_TEMPERATURE:
-                    return temperature;
                 case TYPE_TEMPERATURE_MAX:
-                    return temperatureMax;
                 case TYPE_TEMPERATURE_MIN:
-                    return temperatureMin;
                 case TYPE_TEMPERATURE_PERCEPTIBLE:
-                    return temperaturePerc;
                 case TYPE_TEMPERATURE_PERCEPTIBLE_MAX:
-                    return temperaturePercMax;
                 case TYPE_TEMPERATURE_PERCEPTIBLE_MIN:
-                    return temperaturePercMin;
+                    parseTemperature(data);
+                    return data.getSamples(type);
                 case TYPE_PRESSURE_HPA:
-                    return pressurehPa;
                 case TYPE_PRESSURE_MMHG:
-                    return pressuremmHg;
+                    parsePressure(data);
+                    return data.getSamples(type);
                 case TYPE_DAYNIGHT:
-                    return daynight;
+                    parseOther(data);
+                    return data.getSamples(type);
             }
 
             utils.throwException("Type not yet implemented");
@@ -198,353 +434,576 @@ public class ModelUM
         }
 
         /*
-        get value resolution for given category, will vary between different pics (due to different scale)
+        get value resolution for given category, will vary between different pics (due to different scale):
+        change of value per pixel row of its chart panel, as read from axis labels - degrees for temperature
+        categories, hPa for both pressure ones (also TYPE_PRESSURE_MMHG)
         */
         public double getPrecision(int type)
         {
-            return getSamples(type).length;
+            getSamples(type); // section of type is parsed with its scale
+            if (type == TYPE_PRESSURE_HPA || type == TYPE_PRESSURE_MMHG)
+            {
+                return data.pressure_precision_hPa;
+            }
+            return data.temperature_precision;
+        }
+
+        private void checkData()
+        {
+            if (data == null)
+            {
+                utils.throwException("No image given to constructor, use parse() results");
+            }
         }
 
         /*
         main parsing method
         */
-        private void parsePixels(int[] pixelsRGB)
+        private void parsePixels(ModelUMResult result)
         {
-            readTemperatureScale(pixelsRGB);
-            readTemperatureValues(pixelsRGB);
-
-            readPressureScale(pixelsRGB);
-            readPressureValues(pixelsRGB);
-
-            readOtherValues(pixelsRGB);
-
+            ParseMetrics metrics = startMetrics(result, false);
+            long time = metrics != null ? System.nanoTime() : 0;
+            readTemperatureScale(result);
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_TEMPERATURE_SCALE, time);
+            }
+            readPressureScale(result);
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_PRESSURE_SCALE, time);
+            }
+            readChartValues(result);
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_CHART, time);
+            }
             if (useHeuristicForMissingData)
             {
-                fixMissingData();
+                fixTemperatureData(result);
+                fixPressureData(result);
+            }
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_FILL, time);
             }
-            readDate(pixelsRGB);
+            readDate(result);
+            if (metrics != null)
+            {
+                metrics.stage(ParseMetrics.STAGE_DATE, time);
+            }
+
+            result.temperatureScaleParsed = true;
+            result.temperatureParsed = true;
+            result.pressureParsed = true;
+            result.otherParsed = true;
+            result.dateParsed = true;
+            result.pixels = null;
+            finishMetrics(result, metrics);
         }
 
         /*
-        parse first image section
+        metrics of holder reset for parse, null when parse is not measured (no listener, no recording)
         */
-        private void readTemperatureValues(int[] pixelsRGB)
+        private ParseMetrics startMetrics(ModelUMResult result, boolean reparse)
         {
-
-            for (int x = 0; x < CHART_WIDTH; x++)
+            if (listener == null && !ParseEvents.isRecording())
             {
-
-                temperature[x] = NOVALUE;
-                temperatureMax[x] = -NOVALUE;
-                temperatureMin[x] = NOVALUE;
-                temperaturePerc[x] = NOVALUE;
-                temperaturePercMax[x] = -NOVALUE;
-                temperaturePercMin[x] = NOVALUE;
-
-                int minT = NOVALUE;
-                int maxT = -NOVALUE;
-                int minP = NOVALUE;
-                int maxP = -NOVALUE;
-                for (int y = 0; y < TEMPERATURE_PANEL_HEIGHT; y++)
-                {
-                    int pixel = getPixel(pixelsRGB, WIDTH, CHART_START_COL + x, TEMPERATURE_ROW_START + y);
-                    if (pixel == COLOR_TEMPERATURE_RED)
-                    {
-                        minT = Math.min(minT, y);
-                        maxT = Math.max(maxT, y);
-                    }
-
-                    if (pixel == COLOR_TEMPERATURE_PERC_BLUE)
-                    {
-                        minP = Math.min(minP, y);
-                        maxP = Math.max(maxP, y);
-                    }
-                    if (pixel == COLOR_TEMPERATURE_MINMAX_RED1 ||
-                        pixel == COLOR_TEMPERATURE_MINMAX_RED2)
-                    {
-                        temperatureMin[x] = Math.min(temperatureMin[x], temperature_row0 - temperature_precision * y);
-                        temperatureMax[x] = Math.max(temperatureMax[x], temperature_row0 - temperature_precision * y);
-                    }
-                    if (pixel == COLOR_TEMPERATURE_PERC_MINMAX_BLUE)
-                    {
-                        temperaturePercMin[x] = Math.min(temperaturePercMin[x], temperature_row0 - temperature_precision * y);
-                        temperaturePercMax[x] = Math.max(temperaturePercMax[x], temperature_row0 - temperature_precision * y);
-                    }
-
-                }
-                if (minT != NOVALUE)
-                {
-                    temperature[x] = temperature_row0 - temperature_precision * (maxT+ maxT + minT) / 3;
-                }
-                if (minP != NOVALUE)
+                if (result.metrics.measuring)
                 {
-                    temperaturePerc[x] = temperature_row0 - temperature_precision * (maxP+ maxP + minP) / 3;
+                    result.metrics.stop(result); // last measured parse of holder failed
                 }
+                return null;
             }
+            ParseMetrics metrics = result.metrics;
+            metrics.reset(result, reparse);
+            ParseEvents.begin(metrics);
+            return metrics;
         }
 
+        private void finishMetrics(ModelUMResult result, ParseMetrics metrics)
+        {
+            if (metrics == null)
+            {
+                return;
+            }
+            metrics.finish(result);
+            ParseEvents.commit(metrics);
+            if (listener != null)
+            {
+                listener.parsed(result, metrics);
+            }
+        }
 
         /*
-        parse third image section
+        parsePixels() taking unchanged parts from previous image, in the same order
         */
-        private void readPressureValues(int[] pixelsRGB)
+        private void reparsePixels(PixelSource previousPixels, ModelUMResult previous, ModelUMResult result)
         {
+            PixelSource pixels = result.pixels;
+            ParseMetrics metrics = startMetrics(result, true);
+            long time = metrics != null ? System.nanoTime() : 0;
 
-            for (int x = 0; x < CHART_WIDTH; x++)
+            boolean sameTemperatureScale = PixelSource.sameArea(previousPixels, pixels,
+                    TEMPERATURE_TEXT_COL, TEMPERATURE_LABEL_ROW, TEMPERATURE_LABEL_WIDTH, TEMPERATURE_LABEL_ROWS);
+            if (sameTemperatureScale)
+            {
+                result.temperature_precision = previous.temperature_precision;
+                result.temperature_row0 = previous.temperature_row0;
+            }
+            else
+            {
+                readTemperatureScale(result);
+            }
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_TEMPERATURE_SCALE, time);
+            }
+            // pressure row0 is computed with temperature precision
+            if (sameTemperatureScale && PixelSource.sameArea(previousPixels, pixels,
+                    PRESSURE_TEXT_COL, PRESSURE_LABEL_ROW, PRESSURE_LABEL_WIDTH, PRESSURE_LABEL_ROWS))
             {
-                pressurehPa[x] = NOVALUE;
-                pressuremmHg[x] = NOVALUE;
+                result.pressure_precision_hPa = previous.pressure_precision_hPa;
+                result.pressure_row0_hPa = previous.pressure_row0_hPa;
+            }
+            else
+            {
+                readPressureScale(result);
+            }
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_PRESSURE_SCALE, time);
+            }
 
+            if (PixelSource.sameArea(previousPixels, pixels, DAYNIGHT_COL_START, DAYNIGHT_ROW, CHART_WIDTH, 1))
+            {
+                System.arraycopy(previous.daynight, 0, result.daynight, 0, CHART_WIDTH);
+            }
+            else
+            {
+                scanDaynightRow(result, pixels);
+            }
+            if (!reuseColumns(previousPixels, previous.temperaturePlanes, previous.temperatureIndexed, result.temperaturePlanes, pixels))
+            {
+                result.temperaturePlanes.build(pixels, result.classifier);
+            }
+            if (!reuseColumns(previousPixels, previous.pressurePlanes, previous.pressureIndexed, result.pressurePlanes, pixels))
+            {
+                result.pressurePlanes.clear();
                 for (int y = 0; y < PRESSURE_PANEL_HEIGHT; y++)
                 {
-                    if (getPixel(pixelsRGB, WIDTH, CHART_START_COL + x, PRESSURE_ROW_START + y) == COLOR_BLACK)
-                    {
-                        if (y == 0)
-                        {
-                            break; // vertical dotted line, may be impossible to read values here
-                        }
-
-                        pressurehPa[x] = pressure_row0_hPa - pressure_precision_hPa * y;
-                        pressuremmHg[x] = hPaTommHg(pressurehPa[x]);
-                        break;
-                    }
+                    addPressureRow(result, pixels, y);
                 }
             }
-        }
-
-        private double hPaTommHg(double hPa)
-        {
-            return hPa * 0.75006156130;
-        }
-
+            result.temperatureIndexed = true;
+            result.pressureIndexed = true;
+            readTemperaturePlanes(result);
+            readPressurePlanes(result);
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_CHART, time);
+            }
+            if (useHeuristicForMissingData)
+            {
+                fixTemperatureData(result);
+                fixPressureData(result);
+            }
+            if (metrics != null)
+            {
+                time = metrics.stage(ParseMetrics.STAGE_FILL, time);
+            }
 
-        /*
-        parse first image section
-        */
-        private void readOtherValues(int[] pixelsRGB)
-        {
-            for (int x = 0; x < CHART_WIDTH; x++)
+            if (PixelSource.sameArea(previousPixels, pixels, CHART_START_COL, TIMESTAMP_TIME_ROW, DATE_COL_END - CHART_START_COL, GLYPH_MAX_HEIGHT) &&
+                PixelSource.sameArea(previousPixels, pixels, CHART_START_COL, TIMESTAMP_DATE_ROW, DATE_COL_END - CHART_START_COL, GLYPH_MAX_HEIGHT))
             {
-                daynight[x] = getPixel(pixelsRGB, WIDTH, DAYNIGHT_COL_START + x, DAYNIGHT_ROW) == COLOR_WHITE ? 0f : 1f;
+                setDate(result, previous.dateFound, previous.dateMonth, previous.dateDay, previous.dateHour);
+            }
+            else
+            {
+                readDate(result);
+            }
+            if (metrics != null)
+            {
+                metrics.stage(ParseMetrics.STAGE_DATE, time);
             }
-        }
 
+            result.temperatureScaleParsed = true;
+            result.temperatureParsed = true;
+            result.pressureParsed = true;
+            result.otherParsed = true;
+            result.dateParsed = true;
+            result.pixels = null;
+            finishMetrics(result, metrics);
+        }
 
         /*
-        fill data holes by averaging valid neighbour values
+        index panel of planes taking blocks of columns equal in both images from index of previous image;
+        false, with planes untouched, when there is no index of previous image or no block is the same
         */
-        private void fixMissingData()
+        private boolean reuseColumns(PixelSource previousPixels, ChartPlanes previous, boolean previousIndexed, ChartPlanes planes, PixelSource pixels)
         {
-            for (int x = 0; x < CHART_WIDTH; x++)
+            if (!previousIndexed)
             {
-                // fix left edge of temperature array
-                if (temperature[x] != NOVALUE)
-                {
-                    if (x > 0)
-                    {
-                        for (int fixx = 0; fixx < x; fixx++)
-                        {
-                            temperature[fixx] = temperature[x];
-                        }
-                    }
-                    break;
-                }
+                return false;
             }
-
-            for (int x = 0; x < CHART_WIDTH; x++)
+            long same = 0; // bit per block
+            for (int block = 0; block * REPARSE_BLOCK < planes.width; block++)
             {
-                // fix left edge of temperature perc array
-                if (temperaturePerc[x] != NOVALUE)
+                int x = block * REPARSE_BLOCK;
+                if (PixelSource.sameArea(previousPixels, pixels, planes.colStart + x, planes.rowStart,
+                        Math.min(REPARSE_BLOCK, planes.width - x), planes.height))
                 {
-                    if (x > 0)
-                    {
-                        for (int fixx = 0; fixx < x; fixx++)
-                        {
-                            temperaturePerc[fixx] = temperaturePerc[x];
-                        }
-                    }
-                    break;
+                    same |= 1L << block;
                 }
             }
+            if (same == 0)
+            {
+                return false; // rows of whole panel are read faster
+            }
 
-            for (int x = 0; x < CHART_WIDTH; x++)
+            planes.clear();
+            for (int block = 0; block * REPARSE_BLOCK < planes.width; block++)
             {
-                // fix left edge of temperature perceptible
-                if (temperaturePerc[x] != NOVALUE)
+                int x = block * REPARSE_BLOCK;
+                int count = Math.min(REPARSE_BLOCK, planes.width - x);
+                if ((same & (1L << block)) != 0)
                 {
-                    if (x > 0)
-                    {
-                        for (int fixx = 0; fixx < x; fixx++)
-                        {
-                            temperaturePerc[fixx] = temperaturePerc[x];
-                        }
-                    }
-                    break;
+                    planes.copyColumns(previous, x, count);
+                }
+                else
+                {
+                    planes.addColumns(pixels, x, count);
                 }
+            }
+            return true;
+        }
 
+        private void parseTemperatureScale(ModelUMResult result)
+        {
+            if (!result.temperatureScaleParsed)
+            {
+                readTemperatureScale(result);
+                result.temperatureScaleParsed = true;
             }
+        }
 
-            // fix right edge of temperature array
-            for (int x = CHART_WIDTH - 1; x >= 0; x--)
+        private void parseTemperature(ModelUMResult result)
+        {
+            if (!result.temperatureParsed)
             {
-                if (temperature[x] != NOVALUE)
+                parseTemperatureScale(result);
+                readTemperatureValues(result);
+                if (useHeuristicForMissingData)
                 {
-                    if (x < CHART_WIDTH - 1)
-                    {
-                        for (int fixx = CHART_WIDTH - 1; fixx > x; fixx--)
-                        {
-                            temperature[fixx] = temperature[x];
-                        }
-                    }
-                    break;
+                    fixTemperatureData(result);
                 }
+                result.temperatureParsed = true;
+                releasePixels(result);
             }
+        }
 
-            // fix right edge of temperature perc array
-            for (int x = CHART_WIDTH - 1; x >= 0; x--)
+        private void parsePressure(ModelUMResult result)
+        {
+            if (!result.pressureParsed)
             {
-                if (temperaturePerc[x] != NOVALUE)
+                parseTemperatureScale(result); // pressure row0 is computed with temperature precision
+                readPressureScale(result);
+                readPressureValues(result);
+                if (useHeuristicForMissingData)
                 {
-                    if (x < CHART_WIDTH - 1)
-                    {
-                        for (int fixx = CHART_WIDTH - 1; fixx > x; fixx--)
-                        {
-                            temperaturePerc[fixx] = temperaturePerc[x];
-                        }
-                    }
-                    break;
+                    fixPressureData(result);
                 }
+                result.pressureParsed = true;
+                releasePixels(result);
             }
+        }
 
-            // fix right edge of temperature perceptible
-            for (int x = CHART_WIDTH - 1; x >= 0; x--)
+        private void parseOther(ModelUMResult result)
+        {
+            if (!result.otherParsed)
             {
-                if (temperaturePerc[x] != NOVALUE)
-                {
-                    if (x < CHART_WIDTH - 1)
-                    {
-                        for (int fixx = CHART_WIDTH - 1; fixx > x; fixx--)
-                        {
-                            temperaturePerc[fixx] = temperaturePerc[x];
-                        }
-                    }
-                    break;
-                }
+                readOtherValues(result);
+                result.otherParsed = true;
+                releasePixels(result);
+            }
+        }
+
+        private void parseDate(ModelUMResult result)
+        {
+            if (!result.dateParsed)
+            {
+                readDate(result);
+                result.dateParsed = true;
+                releasePixels(result);
+            }
+        }
+
+        private void releasePixels(ModelUMResult result)
+        {
+            if (result.temperatureParsed && result.pressureParsed && result.otherParsed && result.dateParsed)
+            {
+                result.pixels = null;
+            }
+        }
+
+        /*
+        parse first image section
+        */
+        void readTemperatureValues(ModelUMResult result)
+        {
+            result.temperaturePlanes.build(result.pixels, result.classifier);
+            result.temperatureIndexed = true;
+            readTemperaturePlanes(result);
+        }
+
+
+        /*
+        parse third image section
+        */
+        void readPressureValues(ModelUMResult result)
+        {
+            result.pressurePlanes.clear();
+            for (int y = 0; y < PRESSURE_PANEL_HEIGHT; y++)
+            {
+                addPressureRow(result, result.pixels, y);
             }
+            result.pressureIndexed = true;
+            readPressurePlanes(result);
+        }
+
+        static double hPaTommHg(double hPa)
+        {
+            return hPa * 0.75006156130;
+        }
+
+
+        /*
+        parse first image section
+        */
+        void readOtherValues(ModelUMResult result)
+        {
+            scanDaynightRow(result, result.pixels);
+        }
 
-            // fix holes of...
-            for (int leftx = 0; leftx < CHART_WIDTH; leftx++)
+        /*
+        parse all chart sections (day/night row, temperature and pressure panels) in one pass over image rows,
+        top to bottom; scales must be read already; gives the same values as readOtherValues(),
+        readTemperatureValues() and readPressureValues()
+        */
+        void readChartValues(ModelUMResult result)
+        {
+            PixelSource pixels = result.pixels;
+            RowClassifier classifier = result.classifier;
+            result.temperaturePlanes.clear();
+            result.pressurePlanes.clear();
+            for (int row = DAYNIGHT_ROW; row <= PRESSURE_ROW_END; row++)
             {
-                //  ... temperature array
-                if (temperature[leftx] == NOVALUE)
+                if (row == DAYNIGHT_ROW)
                 {
-                    int rightx = leftx + 1;
-                    while (temperature[rightx] == NOVALUE)
-                    {
-                        rightx++;
-                    }
-                    double diff = (temperature[rightx] - temperature[leftx - 1]) / (rightx - leftx + 1);
-                    for (int workx = leftx; workx < rightx; workx++)
-                    {
-                        temperature[workx] = temperature[leftx - 1] + diff * (workx - leftx + 1);
-                    }
+                    scanDaynightRow(result, pixels);
                 }
-
-                //  ... temperature oerc array
-                if (temperaturePerc[leftx] == NOVALUE)
+                else if (row >= TEMPERATURE_ROW_START && row <= TEMPERATURE_ROW_END)
                 {
-                    int rightx = leftx + 1;
-                    while (temperaturePerc[rightx] == NOVALUE)
-                    {
-                        rightx++;
-                    }
-                    double diff = (temperaturePerc[rightx] - temperaturePerc[leftx - 1]) / (rightx - leftx + 1);
-                    for (int workx = leftx; workx < rightx; workx++)
-                    {
-                        temperaturePerc[workx] = temperaturePerc[leftx - 1] + diff * (workx - leftx + 1);
-                    }
+                    result.temperaturePlanes.addRow(pixels, classifier, row - TEMPERATURE_ROW_START);
                 }
-
-                //  ... pressure array
-                if (pressurehPa[leftx] == NOVALUE)
+                else if (row >= PRESSURE_ROW_START)
                 {
-                    int rightx = leftx + 1;
-                    while (pressurehPa[rightx] == NOVALUE)
-                    {
-                        rightx++;
-                    }
-                    double diff = (pressurehPa[rightx] - pressurehPa[leftx - 1]) / (rightx - leftx + 1);
-                    for (int workx = leftx; workx < rightx; workx++)
-                    {
-                        pressurehPa[workx] = pressurehPa[leftx - 1] + diff * (workx - leftx + 1);
-                        pressuremmHg[workx] = hPaTommHg(pressurehPa[workx]);
-                    }
+                    addPressureRow(result, pixels, row - PRESSURE_ROW_START);
                 }
-
             }
+            result.temperatureIndexed = true;
+            result.pressureIndexed = true;
+            readTemperaturePlanes(result);
+            readPressurePlanes(result);
+        }
 
-            // fix minmax temperatures by sticking to main
-            for (int x = 0; x< CHART_WIDTH; x++)
+        /*
+        line value is taken 2/3 down its thickness; shade spans from its first to last row,
+        and as value falls with row, min and max of the whole shade are those of its end rows
+        */
+        private void readTemperaturePlanes(ModelUMResult result)
+        {
+            ChartPlanes planes = result.temperaturePlanes;
+            double row0 = result.temperature_row0;
+            double precision = result.temperature_precision;
+            for (int x = 0; x < CHART_WIDTH; x++)
             {
-                if (temperaturePercMax[x] == -NOVALUE || temperaturePercMax[x] == NOVALUE)
+                result.temperature[x] = NOVALUE;
+                result.temperatureMax[x] = -NOVALUE;
+                result.temperatureMin[x] = NOVALUE;
+                result.temperaturePerc[x] = NOVALUE;
+                result.temperaturePercMax[x] = -NOVALUE;
+                result.temperaturePercMin[x] = NOVALUE;
+
+                int minT = planes.first(PLANE_RED, x);
+                if (minT != NOVALUE)
+                {
+                    int maxT = planes.last(PLANE_RED, x);
+                    result.temperature[x] = row0 - precision * (maxT+ maxT + minT) / 3;
+                }
+                int minP = planes.first(PLANE_BLUE, x);
+                if (minP != NOVALUE)
                 {
-                    temperaturePercMax[x] = temperaturePerc[x];
+                    int maxP = planes.last(PLANE_BLUE, x);
+                    result.temperaturePerc[x] = row0 - precision * (maxP+ maxP + minP) / 3;
                 }
-                if (temperaturePercMin[x] == -NOVALUE || temperaturePercMin[x] == NOVALUE)
+                int shadeFirst = planes.first(PLANE_RED_SHADE1, PLANE_RED_SHADE2, x);
+                if (shadeFirst != NOVALUE)
                 {
-                    temperaturePercMin[x] = temperaturePerc[x];
+                    double first = row0 - precision * shadeFirst;
+                    double last = row0 - precision * planes.last(PLANE_RED_SHADE1, PLANE_RED_SHADE2, x);
+                    result.temperatureMin[x] = Math.min(Math.min(result.temperatureMin[x], first), last);
+                    result.temperatureMax[x] = Math.max(Math.max(result.temperatureMax[x], first), last);
                 }
-                if (temperatureMax[x] == -NOVALUE || temperatureMax[x] == NOVALUE)
+                shadeFirst = planes.first(PLANE_BLUE_SHADE, x);
+                if (shadeFirst != NOVALUE)
                 {
-                    temperatureMax[x] = temperature[x];
+                    double first = row0 - precision * shadeFirst;
+                    double last = row0 - precision * planes.last(PLANE_BLUE_SHADE, x);
+                    result.temperaturePercMin[x] = Math.min(Math.min(result.temperaturePercMin[x], first), last);
+                    result.temperaturePercMax[x] = Math.max(Math.max(result.temperaturePercMax[x], first), last);
                 }
-                if (temperatureMin[x] == -NOVALUE || temperatureMin[x] == NOVALUE)
+            }
+        }
+
+        /*
+        only first black pixel of column counts: pressure panel has first-hit index, and it ends
+        with the row where last column got one
+        */
+        private void addPressureRow(ModelUMResult result, PixelSource pixels, int y)
+        {
+            if (result.pressurePlanes.emptyColumns(PLANE_BLACK) > 0)
+            {
+                result.pressurePlanes.addRow(pixels, result.classifier, y);
+            }
+        }
+
+        /*
+        value is read at the top of black line
+        */
+        private void readPressurePlanes(ModelUMResult result)
+        {
+            ChartPlanes planes = result.pressurePlanes;
+            for (int x = 0; x < CHART_WIDTH; x++)
+            {
+                result.pressurehPa[x] = NOVALUE;
+                result.pressuremmHg[x] = NOVALUE;
+
+                int y = planes.first(PLANE_BLACK, x);
+                if (y == NOVALUE || y == 0)
                 {
-                    temperatureMin[x] = temperature[x];
+                    continue; // no line, or vertical dotted line - may be impossible to read values here
                 }
+
+                result.pressurehPa[x] = result.pressure_row0_hPa - result.pressure_precision_hPa * y;
+                result.pressuremmHg[x] = hPaTommHg(result.pressurehPa[x]);
+            }
+        }
+
+        private void scanDaynightRow(ModelUMResult result, PixelSource pixels)
+        {
+            for (int x = 0; x < CHART_WIDTH; x++)
+            {
+                result.daynight[x] = pixels.getKey(DAYNIGHT_COL_START + x, DAYNIGHT_ROW) == result.keyWhite ? 0f : 1f;
             }
+        }
+
+
+        /*
+        fill data holes of every series, see GapFiller
+        */
+        void fixMissingData(ModelUMResult result)
+        {
+            fixTemperatureData(result);
+            fixPressureData(result);
+        }
 
-            // TODO fix other data arrays here
+        private void fixTemperatureData(ModelUMResult result)
+        {
+            int filled = gapFiller.fillTemperature(result);
+            if (result.metrics.measuring)
+            {
+                result.metrics.filledSamples += filled;
+            }
+        }
 
+        private void fixPressureData(ModelUMResult result)
+        {
+            int filled = gapFiller.fillPressure(result);
+            if (result.metrics.measuring)
+            {
+                result.metrics.filledSamples += filled;
+            }
         }
 
 
         /*
         read scale of first image section
         */
-        private void readTemperatureScale(int[] pixelsRGB)
+        void readTemperatureScale(ModelUMResult result)
         {
+            PixelSource pixels = result.pixels;
             int start = 0;
             int temp_start = 0;
             int end = 0;
             int temp_end = 0;
+            int[] labels = result.scaleLabels;
 
-            for (int i = TEMPERATURE_ROW_START - DIGIT_HEIGHT; i < TEMPERATURE_ROW_END; i++)
+            TextBand band = result.temperatureLabelBand;
+            band.build(pixels, result.keyBlack);
+            if (scaleCache != null && scaleCache.find(TEMPERATURE_TEXT_COL, TEMPERATURE_LABEL_ROW, band.lines, labels))
+            {
+                start = labels[ScaleCache.LABEL_START];
+                temp_start = labels[ScaleCache.LABEL_START_VALUE];
+                end = labels[ScaleCache.LABEL_END];
+                temp_end = labels[ScaleCache.LABEL_END_VALUE];
+            }
+            else
             {
-                int x1 = readUpTo3digit(TEMPERATURE_TEXT_COL, i, pixelsRGB, COLOR_BLACK);
-                if (x1 != ERR)
+                for (int i = band.nextStart(TEMPERATURE_ROW_START - DIGIT_HEIGHT); i < TEMPERATURE_ROW_END; i = band.nextStart(i + 1))
                 {
-                    start = i + 4;
-                    temp_start = x1;
-                    break;
+                    int x1 = readUpTo3digit(TEMPERATURE_TEXT_COL, i, band);
+                    if (x1 != ERR)
+                    {
+                        start = i + 4;
+                        temp_start = x1;
+                        break;
+                    }
                 }
-            }
 
-            for (int i = TEMPERATURE_ROW_END; i > TEMPERATURE_ROW_START - DIGIT_HEIGHT; i--)
-            {
-                int x2 = readUpTo3digit(TEMPERATURE_TEXT_COL, i, pixelsRGB, COLOR_BLACK);
-                if (x2 != ERR)
+                for (int i = TEMPERATURE_ROW_END; i > TEMPERATURE_ROW_START - DIGIT_HEIGHT; i--)
+                {
+                    if (!band.startsGlyph(i))
+                    {
+                        continue;
+                    }
+                    int x2 = readUpTo3digit(TEMPERATURE_TEXT_COL, i, band);
+                    if (x2 != ERR)
+                    {
+                        end = i + 4;
+                        temp_end = x2;
+                        break;
+                    }
+                }
+
+                if (scaleCache != null)
                 {
-                    end = i + 4;
-                    temp_end = x2;
-                    break;
+                    labels[ScaleCache.LABEL_START] = start;
+                    labels[ScaleCache.LABEL_START_VALUE] = temp_start;
+                    labels[ScaleCache.LABEL_END] = end;
+                    labels[ScaleCache.LABEL_END_VALUE] = temp_end;
+                    scaleCache.add(TEMPERATURE_TEXT_COL, TEMPERATURE_LABEL_ROW, band.lines, labels);
                 }
             }
 
             double tempSpan = temp_start * temp_end < 0 ? Math.abs(temp_start + temp_end): Math.abs(temp_start - temp_end);
 
-            temperature_precision = tempSpan / Math.abs(start - end);
-            temperature_row0 = temp_start + temperature_precision * (start - TEMPERATURE_ROW_START);
+            if (start == end && result.metrics.measuring)
+            {
+                result.metrics.scaleFailures++; // no labels, or one
+            }
+            result.temperature_precision = tempSpan / Math.abs(start - end);
+            result.temperature_row0 = temp_start + result.temperature_precision * (start - TEMPERATURE_ROW_START);
 
             int x = 0;
         }
@@ -553,60 +1012,91 @@ public class ModelUM
         /*
         read scale of first image section
         */
-        private void readPressureScale(int[] pixelsRGB)
+        void readPressureScale(ModelUMResult result)
         {
+            PixelSource pixels = result.pixels;
             int start = 0;
             int pres_start = 0;
             int end = 0;
             int pres_end = 0;
+            int[] labels = result.scaleLabels;
 
-            for (int i = PRESSURE_ROW_START - DIGIT_HEIGHT; i < PRESSURE_ROW_END; i++)
+            TextBand band = result.pressureLabelBand;
+            band.build(pixels, result.keyBlack);
+            if (scaleCache != null && scaleCache.find(PRESSURE_TEXT_COL, PRESSURE_LABEL_ROW, band.lines, labels))
+            {
+                start = labels[ScaleCache.LABEL_START];
+                pres_start = labels[ScaleCache.LABEL_START_VALUE];
+                end = labels[ScaleCache.LABEL_END];
+                pres_end = labels[ScaleCache.LABEL_END_VALUE];
+            }
+            else
             {
-                int x1 = read3or4digit(PRESSURE_TEXT_COL, i, pixelsRGB, COLOR_BLACK);
-                if (x1 != ERR)
+                for (int i = band.nextStart(PRESSURE_ROW_START - DIGIT_HEIGHT); i < PRESSURE_ROW_END; i = band.nextStart(i + 1))
                 {
-                    start = i + 4;
-                    pres_start = x1;
-                    break;
+                    int x1 = read3or4digit(PRESSURE_TEXT_COL, i, band);
+                    if (x1 != ERR)
+                    {
+                        start = i + 4;
+                        pres_start = x1;
+                        break;
+                    }
                 }
-            }
 
-            for (int i = PRESSURE_ROW_END; i > PRESSURE_ROW_START - DIGIT_HEIGHT; i--)
-            {
-                int x2 = read3or4digit(PRESSURE_TEXT_COL, i, pixelsRGB, COLOR_BLACK);
-                if (x2 != ERR)
+                for (int i = PRESSURE_ROW_END; i > PRESSURE_ROW_START - DIGIT_HEIGHT; i--)
+                {
+                    if (!band.startsGlyph(i))
+                    {
+                        continue;
+                    }
+                    int x2 = read3or4digit(PRESSURE_TEXT_COL, i, band);
+                    if (x2 != ERR)
+                    {
+                        end = i + 4;
+                        pres_end = x2;
+                        break;
+                    }
+                }
+
+                if (scaleCache != null)
                 {
-                    end = i + 4;
-                    pres_end = x2;
-                    break;
+                    labels[ScaleCache.LABEL_START] = start;
+                    labels[ScaleCache.LABEL_START_VALUE] = pres_start;
+                    labels[ScaleCache.LABEL_END] = end;
+                    labels[ScaleCache.LABEL_END_VALUE] = pres_end;
+                    scaleCache.add(PRESSURE_TEXT_COL, PRESSURE_LABEL_ROW, band.lines, labels);
                 }
             }
 
             double presSpan = pres_start * pres_end < 0 ? Math.abs(pres_start + pres_end): Math.abs(pres_start - pres_end);
 
-            pressure_precision_hPa = presSpan / Math.abs(start - end);
-            pressure_row0_hPa = pres_start + temperature_precision * (start - PRESSURE_ROW_START);
+            if (start == end && result.metrics.measuring)
+            {
+                result.metrics.scaleFailures++;
+            }
+            result.pressure_precision_hPa = presSpan / Math.abs(start - end);
+            result.pressure_row0_hPa = pres_start + result.temperature_precision * (start - PRESSURE_ROW_START);
 
             int x = 0;
         }
 
-        private int readUpTo3digit(int x, int y, int[] pixelsRGB, int pixelColor)
+        private int readUpTo3digit(int x, int y, TextBand band)
         {
-            int i = readXdigit(x, y, 3, pixelsRGB, pixelColor);
+            int i = readXdigit(x, y, 3, band);
             if (i != ERR)
             {
                 return i;
             }
             x += DIGIT_WIDTH + DIGIT_SEPARATOR;
 
-            i = readXdigit(x, y, 2, pixelsRGB, pixelColor);
+            i = readXdigit(x, y, 2, band);
             if (i != ERR)
             {
                 return i;
             }
             x += DIGIT_WIDTH + DIGIT_SEPARATOR;
 
-            i = readXdigit(x, y, 1, pixelsRGB, pixelColor);
+            i = readXdigit(x, y, 1, band);
             if (i != ERR)
             {
                 return i;
@@ -615,16 +1105,16 @@ public class ModelUM
             return ERR;
         }
 
-        private int read3or4digit(int x, int y, int[] pixelsRGB, int pixelColor)
+        private int read3or4digit(int x, int y, TextBand band)
         {
-            int i = readXdigit(x, y, 4, pixelsRGB, pixelColor);
+            int i = readXdigit(x, y, 4, band);
             if (i != ERR)
             {
                 return i;
             }
             x += DIGIT_WIDTH + DIGIT_SEPARATOR;
 
-            i = readXdigit(x, y, 3, pixelsRGB, pixelColor);
+            i = readXdigit(x, y, 3, band);
             if (i != ERR)
             {
                 return i;
@@ -633,14 +1123,19 @@ public class ModelUM
             return ERR;
         }
 
-        private int readXdigit(int x, int y, int digits, int[] pixelsRGB, int pixelColor)
+        private int readXdigit(int x, int y, int digits, TextBand band)
         {
-            boolean negative = isMinus(pixelsRGB, x, y, pixelColor);
+            long glyph = band.glyph(x, y);
+            boolean negative = isMinus(glyph);
             int ret = 0;
 
             for (int i=0; i<digits; i++)
             {
-                int d = readDigit(pixelsRGB, x+(i*(DIGIT_WIDTH+DIGIT_SEPARATOR)), y, pixelColor);
+                if (i > 0)
+                {
+                    glyph = band.glyph(x+(i*(DIGIT_WIDTH+DIGIT_SEPARATOR)), y);
+                }
+                int d = readDigit(glyph);
 
                 if (ERR == d)
                 {
@@ -661,171 +1156,198 @@ public class ModelUM
             return ret;
         }
 
-        private void readDate(int[] pixelsRGB)
+        void readDate(ModelUMResult result)
         {
+            PixelSource pixels = result.pixels;
+            TextBand date = result.dateBand;
+            TextBand time = result.timeBand;
+            date.start(pixels, result.keyBlack);
+            time.start(pixels, result.keyBlack);
 
             int day = 0;
             int month = 0;
             double hour = 0;
+            setDate(result, false, 0, 0, 0);
 
-            for (int x = CHART_START_COL; x < CHART_START_COL + CHART_WIDTH; x++)
+            for (int x = date.nextStart(CHART_START_COL); x < CHART_START_COL + CHART_WIDTH; x = date.nextStart(x + 1))
             {
-                if (
-                    isDigit(pixelsRGB, x, TIMESTAMP_DATE_ROW, COLOR_BLACK) &&
-                    isDigit(pixelsRGB, x + 7, TIMESTAMP_DATE_ROW, COLOR_BLACK) &&
-                    isDigit(pixelsRGB, x + 17, TIMESTAMP_DATE_ROW, COLOR_BLACK) &&
-                    isDigit(pixelsRGB, x + 24, TIMESTAMP_DATE_ROW, COLOR_BLACK)
-                    )
+                if (!date.startsGlyph(x + 7) || !date.startsGlyph(x + 17) || !date.startsGlyph(x + 24))
                 {
-                    day = readDigit(pixelsRGB, x + 0, TIMESTAMP_DATE_ROW, COLOR_BLACK) * 10 +
-                        readDigit(pixelsRGB, x + 7, TIMESTAMP_DATE_ROW, COLOR_BLACK);
-                    month = readDigit(pixelsRGB, x + 17, TIMESTAMP_DATE_ROW, COLOR_BLACK) * 10 +
-                        readDigit(pixelsRGB, x + 24, TIMESTAMP_DATE_ROW, COLOR_BLACK);
-
-                    break;
-
+                    continue;
+                }
+                int d1 = readDigit(date.glyph(x, TIMESTAMP_DATE_ROW));
+                if (d1 < 0)
+                {
+                    continue;
                 }
+                int d2 = readDigit(date.glyph(x + 7, TIMESTAMP_DATE_ROW));
+                if (d2 < 0)
+                {
+                    continue;
+                }
+                int m1 = readDigit(date.glyph(x + 17, TIMESTAMP_DATE_ROW));
+                if (m1 < 0)
+                {
+                    continue;
+                }
+                int m2 = readDigit(date.glyph(x + 24, TIMESTAMP_DATE_ROW));
+                if (m2 < 0)
+                {
+                    continue;
+                }
+
+                day = d1 * 10 + d2;
+                month = m1 * 10 + m2;
+                break;
             }
 
-            for (int x = CHART_START_COL; x < CHART_START_COL + CHART_WIDTH; x++)
+            for (int x = time.nextStart(CHART_START_COL); x < CHART_START_COL + CHART_WIDTH; x = time.nextStart(x + 1))
             {
-                if (
-                    isDigit(pixelsRGB, x, TIMESTAMP_TIME_ROW, COLOR_BLACK) &&
-                    isDigit(pixelsRGB, x + 7, TIMESTAMP_TIME_ROW, COLOR_BLACK) 
-                    )
+                if (!time.startsGlyph(x + 7))
                 {
-                    hour = readDigit(pixelsRGB, x , TIMESTAMP_TIME_ROW, COLOR_BLACK) * 10 +
-                        readDigit(pixelsRGB, x +7, TIMESTAMP_TIME_ROW, COLOR_BLACK);
+                    continue;
+                }
+                int h1 = readDigit(time.glyph(x, TIMESTAMP_TIME_ROW));
+                if (h1 < 0)
+                {
+                    continue;
+                }
+                int h2 = readDigit(time.glyph(x + 7, TIMESTAMP_TIME_ROW));
+                if (h2 < 0)
+                {
+                    continue;
+                }
 
-                    int secPerPixel = 60 * 60 * 24 * 3 / CHART_WIDTH;
+                hour = h1 * 10 + h2;
 
-                    int pxs = (x - CHART_START_COL + 7);
+                int secPerPixel = 60 * 60 * 24 * 3 / CHART_WIDTH;
 
-                    hour = hour - ( secPerPixel * pxs / 3600 );
+                int pxs = (x - CHART_START_COL + 7);
 
-                    timestamp = utils.getTimestamp(month, day, hour);
+                hour = hour - ( secPerPixel * pxs / 3600 );
 
-                    break;
+                setDate(result, true, month, day, hour);
 
-                }
+                break;
             }
 
-
+            date.finish();
+            time.finish();
         }
 
-        private boolean isDigit(int[] pixels, int x, int y, int pixelColor)
+        /*
+        date read from image, and timestamp Utils of this parser makes of it; 0 when date was not found
+        */
+        void setDate(ModelUMResult result, boolean found, int month, int day, double hour)
         {
-            return
-                 (digitMatch(pixels, x, y, pixelColor, 0)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 1)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 2)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 8)) || // 8 must come before 3
-                 (digitMatch(pixels, x, y, pixelColor, 4)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 5)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 6)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 7)) ||
-                 (digitMatch(pixels, x, y, pixelColor, 3)) || // 8 must come before 3
-                 (digitMatch(pixels, x, y, pixelColor, 9));
+            result.dateFound = found;
+            result.dateMonth = month;
+            result.dateDay = day;
+            result.dateHour = hour;
+            result.timestamp = found ? utils.getTimestamp(month, day, hour) : 0;
         }
 
-        private boolean isMinus(int[] pixels, int x, int y, int pixelColor)
+        static boolean isMinus(long glyph)
         {
-            return digitMatch(pixels, x, y, pixelColor, -1);
+            return findGlyph(glyph & GLYPH_MASK_8) == GLYPH_RANK_MINUS;
         }
 
-
-
-        private int readDigit(int[] pixels, int x, int y, int pixelColor)
+        /*
+        digit matching glyph cell, -1 for minus sign or ERR;
+        when both 8 and 9 pixel high templates match, the one earlier in GLYPH_ORDER wins
+        */
+        static int readDigit(long glyph)
         {
-            if (digitMatch(pixels, x, y, pixelColor, 0))
+            int rank = Math.min(findGlyph(glyph & GLYPH_MASK_8), findGlyph(glyph | GLYPH_TAG_9));
+            if (rank == GLYPH_RANK_NONE)
             {
-                return 0;
+                return ERR;
             }
-            if (digitMatch(pixels, x, y, pixelColor, 1))
-            {
-                return 1;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 2))
-            {
-                return 2;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 8)) // 8 must be before 3
-            {
-                return 8;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 4))
-            {
-                return 4;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 5))
-            {
-                return 5;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 6))
-            {
-                return 6;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 7))
-            {
-                return 7;
-            }
-            if (digitMatch(pixels, x, y, pixelColor, 3)) // 8 must be before 3
+            return GLYPH_ORDER[rank];
+        }
+
+        /*
+        rank of template with exactly given key, GLYPH_RANK_NONE if there is no such template
+        */
+        private static int findGlyph(long key)
+        {
+            int slot = (int)((key * GLYPH_HASH) >>> (64 - GLYPH_TABLE_BITS));
+            while (true)
             {
-                return 3;
+                long k = glyphKeys[slot];
+                if (k == key || k == 0)
+                {
+                    return glyphRanks[slot];
+                }
+                slot = (slot + 1) & (GLYPH_TABLE_SIZE - 1);
             }
-            if (digitMatch(pixels, x, y, pixelColor, 9))
+        }
+
+        /*
+        pack all digit templates into open addressing table, keyed by template bits
+        (9 pixel high ones additionally tagged with GLYPH_TAG_9)
+        */
+        private static void buildGlyphTable()
+        {
+            for (int i = 0; i < GLYPH_TABLE_SIZE; i++)
             {
-                return 9;
+                glyphRanks[i] = GLYPH_RANK_NONE;
             }
-            if (digitMatch(pixels, x, y, pixelColor, -1))
+
+            for (int rank = 0; rank < GLYPH_ORDER.length; rank++)
             {
-                return -1;
+                int digit = GLYPH_ORDER[rank];
+                addGlyph(glyphTemplate(digit, 8), 8, rank);
+                if (digit >= 0)
+                {
+                    addGlyph(glyphTemplate(digit, 9), 9, rank);
+                }
             }
-            return ERR;
         }
 
-        private boolean digitMatch(int[] pixels, int x, int y, int pixelColor, int digit)
+        private static void addGlyph(int[] digitMatrix, int digitheight, int rank)
         {
-            switch(digit){
-                case -1: return digitMatch(pixels, x, y, pixelColor, digitsMINUS_8, 8) ;
-                case 0: return digitMatch(pixels, x, y, pixelColor, digits0_8, 8) || digitMatch(pixels, x, y, pixelColor, digits0_9, 9);
-                case 1: return digitMatch(pixels, x, y, pixelColor, digits1_8, 8) || digitMatch(pixels, x, y, pixelColor, digits1_9, 9);
-                case 2: return digitMatch(pixels, x, y, pixelColor, digits2_8, 8) || digitMatch(pixels, x, y, pixelColor, digits2_9, 9);
-                case 3: return digitMatch(pixels, x, y, pixelColor, digits3_8, 8) || digitMatch(pixels, x, y, pixelColor, digits3_9, 9);
-                case 4: return digitMatch(pixels, x, y, pixelColor, digits4_8, 8) || digitMatch(pixels, x, y, pixelColor, digits4_9, 9);
-                case 5: return digitMatch(pixels, x, y, pixelColor, digits5_8, 8) || digitMatch(pixels, x, y, pixelColor, digits5_9, 9);
-                case 6: return digitMatch(pixels, x, y, pixelColor, digits6_8, 8) || digitMatch(pixels, x, y, pixelColor, digits6_9, 9);
-                case 7: return digitMatch(pixels, x, y, pixelColor, digits7_8, 8) || digitMatch(pixels, x, y, pixelColor, digits7_9, 9);
-                case 8: return digitMatch(pixels, x, y, pixelColor, digits8_8, 8) || digitMatch(pixels, x, y, pixelColor, digits8_9, 9);
-                case 9: return digitMatch(pixels, x, y, pixelColor, digits9_8, 8) || digitMatch(pixels, x, y, pixelColor, digits9_9, 9);
-            }
-            return false;
-        }
+            long key = digitheight == 9 ? GLYPH_TAG_9 : 0;
+            for (int i = 0; i < DIGIT_WIDTH * digitheight; i++)
+            {
+                if (digitMatrix[i] == 1)
+                {
+                    key |= 1L << i;
+                }
+            }
 
-        private boolean digitMatch(int[] pixels, int x, int y, int pixelColor, int[] digitMatrix, int digitheight)
-        {
-            for (int xiter = 0; xiter < DIGIT_WIDTH; xiter++)
+            int slot = (int)((key * GLYPH_HASH) >>> (64 - GLYPH_TABLE_BITS));
+            while (glyphKeys[slot] != 0)
             {
-                for (int yiter = 0; yiter < digitheight; yiter++)
+                if (glyphKeys[slot] == key)
                 {
-                    int px = getPixel(pixels, WIDTH, x + xiter, y + yiter);
-                    if ( (1 == getPixel(digitMatrix, DIGIT_WIDTH, xiter, yiter) && px != pixelColor) ||
-                         (0 == getPixel(digitMatrix, DIGIT_WIDTH, xiter, yiter) && px == pixelColor) 
-                    )
-                    {
-                        return false;
-                    }
+                    return; // same pattern already there with better rank
                 }
+                slot = (slot + 1) & (GLYPH_TABLE_SIZE - 1);
             }
-            return true;
+            glyphKeys[slot] = key;
+            glyphRanks[slot] = rank;
         }
 
-        private int getPixel(int[] pixels, int width, int x, int y)
+        private static int[] glyphTemplate(int digit, int digitheight)
         {
-            return pixels[x + y * width];
+            switch(digit){
+                case -1: return digitsMINUS_8;
+                case 0: return digitheight == 8 ? digits0_8 : digits0_9;
+                case 1: return digitheight == 8 ? digits1_8 : digits1_9;
+                case 2: return digitheight == 8 ? digits2_8 : digits2_9;
+                case 3: return digitheight == 8 ? digits3_8 : digits3_9;
+                case 4: return digitheight == 8 ? digits4_8 : digits4_9;
+                case 5: return digitheight == 8 ? digits5_8 : digits5_9;
+                case 6: return digitheight == 8 ? digits6_8 : digits6_9;
+                case 7: return digitheight == 8 ? digits7_8 : digits7_9;
+                case 8: return digitheight == 8 ? digits8_8 : digits8_9;
+                case 9: return digitheight == 8 ? digits9_8 : digits9_9;
+            }
+            return null;
         }
 
-        int[] digits0_8 = new int[]{
+        static final int[] digits0_8 = new int[]{
             0,1,1,1,0,
             1,0,0,0,1,
             1,0,0,0,1,
@@ -835,7 +1357,7 @@ public class ModelUM
             1,0,0,0,1,
             0,1,1,1,0,
             };
-        int[] digits0_9 = new int[]{
+        static final int[] digits0_9 = new int[]{
             0,1,1,1,0,
             1,0,0,0,1,
             1,0,0,0,1,
@@ -848,7 +1370,7 @@ public class ModelUM
             };
 
 
-        int[] digits1_8 = new int[]
+        static final int[] digits1_8 = new int[]
             { // 1
             0,0,1,0,0,
             0,1,1,0,0,
@@ -859,7 +1381,7 @@ public class ModelUM
             0,0,1,0,0,
             0,0,1,0,0,
             };
-        int[] digits1_9 = new int[]
+        static final int[] digits1_9 = new int[]
             { // 1
             0,0,1,0,0,
             1,1,1,0,0,
@@ -872,7 +1394,7 @@ public class ModelUM
             0,0,1,0,0,
             };
 
-        int[] digits2_8 = new int[]
+        static final int[] digits2_8 = new int[]
             { // 2
             0,1,1,1,0,
             1,0,0,0,1,
@@ -883,7 +1405,7 @@ public class ModelUM
             1,0,0,0,0,
             1,1,1,1,1,
             };
-        int[] digits2_9 = new int[]
+        static final int[] digits2_9 = new int[]
             { // 2
             0,1,1,1,0,
             1,0,0,0,1,
@@ -896,7 +1418,7 @@ public class ModelUM
             1,1,1,1,1,
             };
 
-        int[] digits8_8 = new int[]
+        static final int[] digits8_8 = new int[]
             { // 8
             0,1,1,1,0,
             1,0,0,0,1,
@@ -907,7 +1429,7 @@ public class ModelUM
             1,0,0,0,1,
             0,1,1,1,0,
             };
-        int[] digits8_9 = new int[]
+        static final int[] digits8_9 = new int[]
             { // 8
             0,1,1,1,0,
             1,0,0,0,1,
@@ -920,7 +1442,7 @@ public class ModelUM
             0,1,1,1,0,
             };
 
-        int[] digits4_8 = new int[]
+        static final int[] digits4_8 = new int[]
             { // 4
             0,0,0,1,0,
             0,0,1,1,0,
@@ -931,7 +1453,7 @@ public class ModelUM
             0,0,0,1,0,
             0,0,0,1,0,
             };
-        int[] digits4_9 = new int[]
+        static final int[] digits4_9 = new int[]
             { // 4
             0,0,0,1,0,
             0,0,1,1,0,
@@ -944,7 +1466,7 @@ public class ModelUM
             0,0,0,1,0
             };
 
-        int[] digits5_8 = new int[]
+        static final int[] digits5_8 = new int[]
             { // 5
             0,1,1,1,1,
             0,1,0,0,0,
@@ -955,7 +1477,7 @@ public class ModelUM
             1,0,0,0,1,
             0,1,1,1,0,
             };
-        int[] digits5_9 = new int[]
+        static final int[] digits5_9 = new int[]
             { // 5
             1,1,1,1,1,
             1,0,0,0,0,
@@ -968,7 +1490,7 @@ public class ModelUM
             0,1,1,1,0,
             };
 
-        int[] digits6_8 = new int[]
+        static final int[] digits6_8 = new int[]
             { // 6
             0,1,1,1,0,
             1,0,0,0,1,
@@ -979,7 +1501,7 @@ public class ModelUM
             1,0,0,0,1,
             0,1,1,1,0,
             };
-        int[] digits6_9 = new int[]
+        static final int[] digits6_9 = new int[]
             { // 6
             0,1,1,1,0,
             1,0,0,0,1,
@@ -992,7 +1514,7 @@ public class ModelUM
             0,1,1,1,0,
             };
 
-        int[] digits7_8 = new int[]
+        static final int[] digits7_8 = new int[]
             { // 7
             1,1,1,1,1,
             0,0,0,0,1,
@@ -1003,7 +1525,7 @@ public class ModelUM
             0,1,0,0,0,
             0,1,0,0,0,
             };
-        int[] digits7_9 = new int[]
+        static final int[] digits7_9 = new int[]
             { // 7
             1,1,1,1,1,
             0,0,0,0,1,
@@ -1016,7 +1538,7 @@ public class ModelUM
             0,1,0,0,0,
             };
 
-        int[] digits3_8 = new int[]
+        static final int[] digits3_8 = new int[]
             { // 3
             0,1,1,1,0,
             1,0,0,0,1,
@@ -1027,7 +1549,7 @@ public class ModelUM
             1,0,0,0,1,
             0,1,1,1,0,
             };
-        int[] digits3_9 = new int[]
+        static final int[] digits3_9 = new int[]
             { // 3
             0,1,1,1,0,
             1,0,0,0,1,
@@ -1040,7 +1562,7 @@ public class ModelUM
             0,1,1,1,0,
             };
 
-        int[] digits9_8 = new int[]
+        static final int[] digits9_8 = new int[]
             { // 9
             0,1,1,1,0,
             1,0,0,0,1,
@@ -1051,7 +1573,7 @@ public class ModelUM
             1,0,0,0,1,
             0,1,1,1,0,
             };
-        int[] digits9_9 = new int[]
+        static final int[] digits9_9 = new int[]
             { // 9
             0,1,1,1,0, //  ***
             1,0,0,0,1, // *   *
@@ -1064,7 +1586,7 @@ public class ModelUM
             0,1,1,1,0, //  ***
             };
 
-        int[] digitsMINUS_8 = new int[]
+        static final int[] digitsMINUS_8 = new int[]
             { 
             0,0,0,0,0,
             0,0,0,0,0,
@@ -1076,4 +1598,34 @@ public class ModelUM
             0,0,0,0,0,
             };
 
+        /*
+        bit set for every column (or row) of glyph cell where first 8 rows of some template have their first ink
+        */
+        private static int glyphStarts(boolean columns)
+        {
+            int starts = 0;
+            for (int slot = 0; slot < GLYPH_TABLE_SIZE; slot++)
+            {
+                long key = glyphKeys[slot] & GLYPH_MASK_8;
+                if (glyphRanks[slot] == GLYPH_RANK_NONE)
+                {
+                    continue;
+                }
+                int first = DIGIT_HEIGHT;
+                for (long rest = key; rest != 0; rest &= rest - 1)
+                {
+                    int bit = Long.numberOfTrailingZeros(rest);
+                    first = Math.min(first, columns ? bit % DIGIT_WIDTH : bit / DIGIT_WIDTH);
+                }
+                starts |= 1 << first;
+            }
+            return starts;
+        }
+
+        static
+        {
+            buildGlyphTable();
+            GLYPH_START_COLUMNS = glyphStarts(true);
+            GLYPH_START_ROWS = glyphStarts(false);
+        }
     }
@@ -0,0 +1,364 @@
+package com.pgssoft.meteopllibrary;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Parses many meteogram files at once with one shared ModelUM.
+
+Every file is read, decoded (PngDecoder, ImageIO for images it does not handle) and parsed
+as one task on given executor, so reading of some files overlaps decoding and parsing of
+others; number of files in flight is limited, so big batches do not keep all images in memory.
+Decoded images are checked by LayoutCheck, so images that are not UM meteograms are not parsed;
+the check can be turned off for inputs known to be UM meteograms, or drawn by a renderer whose
+frame differs from the probes. Failure of one file - unreadable file, broken image, failed
+layout check or error reported by Utils.throwException() - is recorded in its Item and the
+batch goes on.
+
+With a ResultCache, files whose content was parsed before are neither decoded nor parsed.
+Files share one ScaleCache, so OCR of axis labels runs once for every distinct scale of the
+batch; its counters show how often it helped. A batch may also be given its ModelUM, for a
+GapFiller, ScaleCache or ParseListener of caller's choice.
+
+Utils given to batch is called from executor threads and must be thread-safe. Any Executor can
+be used: ForkJoinPool (the common pool by default), fixed thread pool, or on Java 21+
+Executors.newVirtualThreadPerTaskExecutor() for one virtual thread per file. When the calling
+thread is interrupted, files not started yet are skipped and those being parsed are waited for,
+so listener is never called after parse() returns or throws.
+
+Batch keeps a pool of PngDecoders, one per file in flight; close() releases their native memory.
+*/
+public class ModelUMBatch implements AutoCloseable
+    {
+        /*
+        outcome for one file, either result or error is set
+        */
+        public static final class Item
+            {
+                final int index;
+                final Path file;
+                final ModelUMResult result;
+                final Exception error;
+
+                Item(int index, Path file, ModelUMResult result, Exception error)
+                {
+                    this.index = index;
+                    this.file = file;
+                    this.result = result;
+                    this.error = error;
+                }
+
+                // position of file in batch input
+                public int getIndex()
+                {
+                    return index;
+                }
+
+                public Path getFile()
+                {
+                    return file;
+                }
+
+                // parsed data, null when parsing failed
+                public ModelUMResult getResult()
+                {
+                    return result;
+                }
+
+                // reason of failure, null when file was parsed
+                public Exception getError()
+                {
+                    return error;
+                }
+            }
+
+        /*
+        receives items as files are done, in order of completion; called from executor threads
+        */
+        public interface Listener
+            {
+                void parsed(Item item);
+            }
+
+        // distinct scales remembered by batch, a model run has few of them
+        static final int SCALE_CACHE_CAPACITY = 64;
+
+        final ModelUM parser;
+        final ScaleCache scaleCache;
+        final ResultCache resultCache;
+        final Executor executor;
+        final Semaphore inFlight;
+        final boolean checkLayout;
+        final ConcurrentLinkedQueue<PngDecoder> decoders = new ConcurrentLinkedQueue<PngDecoder>();
+        private volatile boolean closed;
+
+        // batch on common ForkJoinPool, with up to 4 files per core in flight
+        public ModelUMBatch(Utils utils, boolean useHeuristicForMissingData)
+        {
+            this(utils, useHeuristicForMissingData, ForkJoinPool.commonPool(), 4 * Runtime.getRuntime().availableProcessors());
+        }
+
+        public ModelUMBatch(Utils utils, boolean useHeuristicForMissingData, Executor executor, int maxFilesInFlight)
+        {
+            this(utils, useHeuristicForMissingData, executor, maxFilesInFlight, null);
+        }
+
+        /*
+        batch looking files up in given cache before decoding them, and storing results parsed; cache may be null
+        */
+        public ModelUMBatch(Utils utils, boolean useHeuristicForMissingData, Executor executor, int maxFilesInFlight,
+                ResultCache resultCache)
+        {
+            this(utils, useHeuristicForMissingData, executor, maxFilesInFlight, resultCache, true);
+        }
+
+        /*
+        batch parsing images without LayoutCheck when checkLayout is false
+        */
+        public ModelUMBatch(Utils utils, boolean useHeuristicForMissingData, Executor executor, int maxFilesInFlight,
+                ResultCache resultCache, boolean checkLayout)
+        {
+            this(new ModelUM(utils, useHeuristicForMissingData, new ScaleCache(SCALE_CACHE_CAPACITY)), executor, maxFilesInFlight,
+                    resultCache, checkLayout);
+        }
+
+        /*
+        batch parsing every file with given parser created without image, so with its GapFiller, ScaleCache
+        (none when it has none) and ParseListener; its Utils and listener are called from executor threads
+        */
+        public ModelUMBatch(ModelUM parser, Executor executor, int maxFilesInFlight, ResultCache resultCache, boolean checkLayout)
+        {
+            if (parser.data != null)
+            {
+                throw new IllegalArgumentException("Parser must be created without image");
+            }
+            if (maxFilesInFlight < 1)
+            {
+                throw new IllegalArgumentException("At least one file must be allowed in flight");
+            }
+            this.scaleCache = parser.scaleCache;
+            this.parser = parser;
+            this.executor = executor;
+            this.inFlight = new Semaphore(maxFilesInFlight);
+            this.resultCache = resultCache;
+            this.checkLayout = checkLayout;
+        }
+
+        // null when parser of batch has none
+        public ScaleCache getScaleCache()
+        {
+            return scaleCache;
+        }
+
+        // null when batch has none
+        public ResultCache getResultCache()
+        {
+            return resultCache;
+        }
+
+        /*
+        parse all files and return items in input order
+        */
+        public List<Item> parse(List<Path> files) throws InterruptedException
+        {
+            final Item[] items = new Item[files.size()];
+            parse(files, new Listener()
+                {
+                    public void parsed(Item item)
+                    {
+                        items[item.index] = item;
+                    }
+                });
+            return Collections.unmodifiableList(Arrays.asList(items));
+        }
+
+        /*
+        parse all files, giving each item to listener as soon as it is done; returns when all files are done
+        */
+        public void parse(List<Path> files, final Listener listener) throws InterruptedException
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("Batch is closed");
+            }
+            final CountDownLatch done = new CountDownLatch(files.size());
+            final AtomicBoolean cancelled = new AtomicBoolean();
+            int submitted = 0;
+            try
+            {
+                for (; submitted < files.size(); submitted++)
+                {
+                    final int index = submitted;
+                    final Path file = files.get(submitted);
+                    inFlight.acquire();
+                    Runnable task = new Runnable()
+                        {
+                            public void run()
+                            {
+                                try
+                                {
+                                    if (!cancelled.get())
+                                    {
+                                        listener.parsed(parseFile(index, file));
+                                    }
+                                }
+                                finally
+                                {
+                                    inFlight.release();
+                                    done.countDown();
+                                }
+                            }
+                        };
+                    try
+                    {
+                        executor.execute(task);
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        inFlight.release();
+                        done.countDown();
+                        listener.parsed(new Item(index, file, null, e));
+                    }
+                }
+                done.await();
+            }
+            catch (InterruptedException e)
+            {
+                // tasks not started yet skip their file, the running ones are waited for
+                cancelled.set(true);
+                for (int i = submitted; i < files.size(); i++)
+                {
+                    done.countDown();
+                }
+                boolean interrupted = true;
+                while (interrupted)
+                {
+                    try
+                    {
+                        done.await();
+                        interrupted = false;
+                    }
+                    catch (InterruptedException again)
+                    {
+                    }
+                }
+                throw e;
+            }
+        }
+
+        /*
+        parse all *.png files of directory, in order of their names
+        */
+        public List<Item> parseDirectory(Path directory) throws IOException, InterruptedException
+        {
+            List<Path> files = new ArrayList<Path>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.png"))
+            {
+                for (Path file : stream)
+                {
+                    files.add(file);
+                }
+            }
+            Collections.sort(files);
+            return parse(files);
+        }
+
+        private Item parseFile(int index, Path file)
+        {
+            try
+            {
+                byte[] png = Files.readAllBytes(file);
+                ModelUMResult result = new ModelUMResult();
+                if (resultCache != null && resultCache.load(parser, png, 0, png.length, result))
+                {
+                    return new Item(index, file, result, null);
+                }
+                PngDecoder decoder = decoders.poll();
+                if (decoder == null)
+                {
+                    decoder = new PngDecoder();
+                }
+                try
+                {
+                    parse(decoder.decode(png, 0, png.length, PngDecoder.MODELUM_ROWS), result);
+                }
+                catch (PngDecoder.UnsupportedFormatException e)
+                {
+                    // not a format PngDecoder handles, ImageIO may still read it; broken PNGs fail as they are
+                    BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+                    if (image == null)
+                    {
+                        throw e;
+                    }
+                    parse(PixelSource.of(image), result);
+                }
+                finally
+                {
+                    decoders.add(decoder);
+                    if (closed)
+                    {
+                        endDecoders(); // batch was closed while this file was decoded
+                    }
+                }
+                if (resultCache != null)
+                {
+                    resultCache.store(parser, png, 0, png.length, result);
+                }
+                return new Item(index, file, result, null);
+            }
+            catch (Exception e)
+            {
+                return new Item(index, file, null, e);
+            }
+        }
+
+        /*
+        release decoders of batch; files being parsed at the moment release theirs when done
+        */
+        public void close()
+        {
+            closed = true;
+            endDecoders();
+        }
+
+        private void endDecoders()
+        {
+            PngDecoder decoder;
+            while ((decoder = decoders.poll()) != null)
+            {
+                decoder.end();
+            }
+        }
+
+        /*
+        parse image that passes LayoutCheck, when batch checks layout
+        */
+        private void parse(PixelSource pixels, ModelUMResult result)
+        {
+            if (checkLayout)
+            {
+                LayoutCheck.Verdict verdict = LayoutCheck.check(pixels);
+                if (!verdict.isValid())
+                {
+                    throw new IllegalArgumentException("Not a UM meteogram, " + verdict);
+                }
+            }
+            parser.parse(pixels, result);
+        }
+    }
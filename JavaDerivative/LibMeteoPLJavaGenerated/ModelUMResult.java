@@ -0,0 +1,205 @@
+package com.pgssoft.meteopllibrary;
+
+import java.time.ZoneId;
+
+/*
+Data parsed from one meteogram by ModelUM.
+
+Holder is owned by caller and can be passed to ModelUM.parse() again and again, every parse
+overwrites all its values, so steady-state parsing allocates nothing. Arrays returned by
+getSamples() are the holder's own and change with next parse into it.
+
+Holder also keeps state of the parse, ModelUM itself has none; one holder must not be
+used by two parses at the same time.
+*/
+public class ModelUMResult
+    {
+        // Section 1 - temperatures
+        final double[] temperature = new double[ModelUM.CHART_WIDTH];
+        final double[] temperatureMin = new double[ModelUM.CHART_WIDTH];
+        final double[] temperatureMax = new double[ModelUM.CHART_WIDTH];
+        final double[] temperaturePerc = new double[ModelUM.CHART_WIDTH];
+        final double[] temperaturePercMin = new double[ModelUM.CHART_WIDTH];
+        final double[] temperaturePercMax = new double[ModelUM.CHART_WIDTH];
+        final double[] temperatureSurfaceMin = new double[ModelUM.PEAKS_NUMBER];
+        final double[] temperatureSurfaceMax = new double[ModelUM.PEAKS_NUMBER];
+        final double[] temperatureDewPoint = new double[ModelUM.PEAKS_NUMBER];
+
+        // Section 2 - precipitation
+        final double[] humidity = new double[ModelUM.CHART_WIDTH];
+        final double[] rainAvg = new double[ModelUM.PEAKS_NUMBER];
+        final double[] rainMax = new double[ModelUM.PEAKS_NUMBER];
+        final double[] snowAvg = new double[ModelUM.PEAKS_NUMBER];
+        final double[] snowMax = new double[ModelUM.PEAKS_NUMBER];
+        final boolean[] percAboveScale = new boolean[ModelUM.PEAKS_NUMBER];
+        final boolean[] convectivePerc = new boolean[ModelUM.PEAKS_NUMBER];
+
+        // Section 3 - atmospheric pressure
+        final double[] pressurehPa = new double[ModelUM.CHART_WIDTH];
+        final double[] pressuremmHg = new double[ModelUM.CHART_WIDTH];
+
+        // Other sections - TBD
+        final double[] daynight = new double[ModelUM.CHART_WIDTH];
+
+        // time of first chart column, 0 if date was not found
+        long timestamp = 0;
+        // date and hour of first chart column as read from image, Utils makes timestamp of them; see ResultCache
+        boolean dateFound;
+        int dateMonth;
+        int dateDay;
+        double dateHour;
+
+        // scales read from image
+        double temperature_precision;
+        double temperature_row0;
+        double pressure_row0_hPa;
+        double pressure_precision_hPa;
+
+        // state of parse in progress: colors as compared with pixels of parsed image (see PixelSource.getKey())
+        // and image itself, kept until every section is parsed
+        int keyBlack;
+        int keyWhite;
+        int keyTemperatureRed;
+        int keyTemperatureMinmaxRed1;
+        int keyTemperatureMinmaxRed2;
+        int keyTemperaturePercBlue;
+        int keyTemperaturePercMinmaxBlue;
+        PixelSource pixels;
+        // colors of chart panels, indexed by ModelUM.readChartValues() or read*Values(); rows are classified
+        // with Vector API kernel when pixels allow, null when they are compared one by one
+        final ChartPlanes temperaturePlanes = new ChartPlanes(ModelUM.CHART_START_COL, ModelUM.TEMPERATURE_ROW_START,
+                ModelUM.CHART_WIDTH, ModelUM.TEMPERATURE_PANEL_HEIGHT, ModelUM.TEMPERATURE_PLANES, false);
+        final ChartPlanes pressurePlanes = new ChartPlanes(ModelUM.CHART_START_COL, ModelUM.PRESSURE_ROW_START,
+                ModelUM.CHART_WIDTH, ModelUM.PRESSURE_PANEL_HEIGHT, ModelUM.PRESSURE_PLANES, true);
+        RowClassifier classifier;
+        // planes hold index of this holder's image, so that ModelUM.reparse() of next image may take columns from them
+        boolean temperatureIndexed;
+        boolean pressureIndexed;
+        // ink of scale label bands, segmented at rows of their last digit, and labels read from them, see ScaleCache
+        final TextBand temperatureLabelBand = new TextBand(ModelUM.TEMPERATURE_TEXT_COL, ModelUM.TEMPERATURE_LABEL_ROW,
+                ModelUM.TEMPERATURE_LABEL_WIDTH, ModelUM.TEMPERATURE_LABEL_ROWS, true,
+                ModelUM.GLYPH_CELL_COLUMNS << (ModelUM.TEMPERATURE_LABEL_WIDTH - ModelUM.DIGIT_WIDTH), ModelUM.GLYPH_START_ROWS);
+        final TextBand pressureLabelBand = new TextBand(ModelUM.PRESSURE_TEXT_COL, ModelUM.PRESSURE_LABEL_ROW,
+                ModelUM.PRESSURE_LABEL_WIDTH, ModelUM.PRESSURE_LABEL_ROWS, true,
+                ModelUM.GLYPH_CELL_COLUMNS << (ModelUM.PRESSURE_LABEL_WIDTH - ModelUM.DIGIT_WIDTH), ModelUM.GLYPH_START_ROWS);
+        // ink of rows of date and time glyphs, see ModelUM.readDate()
+        final TextBand dateBand = new TextBand(ModelUM.CHART_START_COL, ModelUM.TIMESTAMP_DATE_ROW,
+                ModelUM.DATE_COL_END - ModelUM.CHART_START_COL, ModelUM.GLYPH_MAX_HEIGHT, false,
+                ModelUM.GLYPH_ROWS_8, ModelUM.GLYPH_START_COLUMNS);
+        final TextBand timeBand = new TextBand(ModelUM.CHART_START_COL, ModelUM.TIMESTAMP_TIME_ROW,
+                ModelUM.DATE_COL_END - ModelUM.CHART_START_COL, ModelUM.GLYPH_MAX_HEIGHT, false,
+                ModelUM.GLYPH_ROWS_8, ModelUM.GLYPH_START_COLUMNS);
+        final int[] scaleLabels = new int[ScaleCache.LABELS];
+        // metrics of last measured parse, see ModelUM.parsePixels()
+        final ParseMetrics metrics = new ParseMetrics();
+        boolean temperatureScaleParsed = false;
+        boolean temperatureParsed = false;
+        boolean pressureParsed = false;
+        boolean otherParsed = false;
+        boolean dateParsed = false;
+        // summary of values, made on first getDailySummary() after parse
+        DailySummary summary;
+
+        public long getTimestamp(int px)
+        {
+            return timestamp + TimeIndex.offset(px);
+        }
+
+        /*
+        daily and day/night aggregates of chart series, calendar days taken in given zone; computed
+        on first call after parse, later calls with the same zone return the same summary
+        */
+        public DailySummary getDailySummary(ZoneId zone)
+        {
+            if (!temperatureParsed || !pressureParsed || !otherParsed || !dateParsed)
+            {
+                throw new IllegalStateException("Result is not fully parsed");
+            }
+            DailySummary daily = summary;
+            if (daily == null || !daily.zone.equals(zone))
+            {
+                daily = new DailySummary(this, zone);
+                summary = daily;
+            }
+            return daily;
+        }
+
+        /*
+        sample of given category at given time, ModelUM.RESAMPLE_NEAREST column or RESAMPLE_LINEAR
+        between columns; NOVALUE (-NOVALUE for maximum series) outside of chart or where samples are
+        missing
+        */
+        public double getSampleAt(int type, long time, int mode)
+        {
+            return TimeIndex.sample(series(type, mode), TimeIndex.missingValue(type), time - timestamp, mode);
+        }
+
+        /*
+        samples of given category at count times from start, step ms apart, written to into; returns into
+        */
+        public double[] resample(int type, long start, long step, int count, int mode, double[] into)
+        {
+            TimeIndex.resample(series(type, mode), TimeIndex.missingValue(type), start - timestamp, step, count, mode, into);
+            return into;
+        }
+
+        /*
+        samples of given category at given times, in any order, written to into; returns into
+        */
+        public double[] resample(int type, long[] times, int mode, double[] into)
+        {
+            double[] samples = series(type, mode);
+            double missing = TimeIndex.missingValue(type);
+            for (int i = 0; i < times.length; i++)
+            {
+                into[i] = TimeIndex.sample(samples, missing, times[i] - timestamp, mode);
+            }
+            return into;
+        }
+
+        private double[] series(int type, int mode)
+        {
+            if (mode != ModelUM.RESAMPLE_NEAREST && mode != ModelUM.RESAMPLE_LINEAR)
+            {
+                throw new IllegalArgumentException("Unknown resampling mode " + mode);
+            }
+            double[] samples = getSamples(type);
+            if (samples == null)
+            {
+                throw new IllegalArgumentException("No samples of type " + type);
+            }
+            return samples;
+        }
+
+        /*
+        get samples (data points) for given category, ModelUM.TYPE_*: the holder's own array of CHART_WIDTH
+        values, never null for types the parser reads; null for other types (surface and dew point
+        temperatures, precipitation). Arrays are allocated with the holder, so a section not parsed yet
+        (lazy ModelUM) holds values of the previous parse into the holder, or zeros for a new one
+        */
+        public double[] getSamples(int type)
+        {
+            switch (type)
+            {
+                case ModelUM.TYPE_TEMPERATURE:
+                    return temperature;
+                case ModelUM.TYPE_TEMPERATURE_MAX:
+                    return temperatureMax;
+                case ModelUM.TYPE_TEMPERATURE_MIN:
+                    return temperatureMin;
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE:
+                    return temperaturePerc;
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX:
+                    return temperaturePercMax;
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN:
+                    return temperaturePercMin;
+                case ModelUM.TYPE_PRESSURE_HPA:
+                    return pressurehPa;
+                case ModelUM.TYPE_PRESSURE_MMHG:
+                    return pressuremmHg;
+                case ModelUM.TYPE_DAYNIGHT:
+                    return daynight;
+            }
+            return null;
+        }
+    }
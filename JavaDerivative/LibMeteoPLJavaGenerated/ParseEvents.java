@@ -0,0 +1,66 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Parse metrics as JDK Flight Recorder events, "com.pgssoft.meteopllibrary.Parse" (one per parse()
+or reparse(), with time of every stage and all counters of ParseMetrics).
+
+Implementation is ParseEventsJfr, built on jdk.jfr; it is used only when that module is in boot
+layer, so the library runs on images without it. Whether the event is recorded is asked at start
+of every parse without allocating; metrics are collected only for parses that are recorded.
+*/
+abstract class ParseEvents
+    {
+        private static final ParseEvents JFR = loadJfr();
+
+        /*
+        true when a recording takes parse events now
+        */
+        static boolean isRecording()
+        {
+            return JFR != null && JFR.isEnabled();
+        }
+
+        /*
+        start event of parse measured into metrics, when it is recorded
+        */
+        static void begin(ParseMetrics metrics)
+        {
+            metrics.event = JFR != null && JFR.isEnabled() ? JFR.start() : null;
+        }
+
+        /*
+        commit event started by begin() with values of metrics
+        */
+        static void commit(ParseMetrics metrics)
+        {
+            if (metrics.event != null)
+            {
+                JFR.commit(metrics.event, metrics);
+                metrics.event = null;
+            }
+        }
+
+        abstract boolean isEnabled();
+
+        abstract Object start();
+
+        abstract void commit(Object event, ParseMetrics metrics);
+
+        private static ParseEvents loadJfr()
+        {
+            if (!ModuleLayer.boot().findModule("jdk.jfr").isPresent())
+            {
+                return null;
+            }
+            try
+            {
+                // loaded by name, so that parser never links against jdk.jfr when it is missing
+                return (ParseEvents) Class.forName("com.pgssoft.meteopllibrary.ParseEventsJfr")
+                    .getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | LinkageError e)
+            {
+                return null;
+            }
+        }
+    }
@@ -0,0 +1,123 @@
+package com.pgssoft.meteopllibrary;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+ParseEvents on jdk.jfr, see there.
+*/
+final class ParseEventsJfr extends ParseEvents
+    {
+        // asked before every parse, without creating an event
+        private static final EventType TYPE = EventType.getEventType(ParseEvent.class);
+
+        @Name("com.pgssoft.meteopllibrary.Parse")
+        @Label("Meteogram Parse")
+        @Description("Parse of UM meteogram by ModelUM, with time of each stage")
+        @Category("LibMeteoPL")
+        @StackTrace(false)
+        static final class ParseEvent extends Event
+            {
+                @Label("Reparse")
+                boolean reparse;
+
+                @Label("Temperature Scale")
+                @Timespan(Timespan.NANOSECONDS)
+                long temperatureScale;
+
+                @Label("Pressure Scale")
+                @Timespan(Timespan.NANOSECONDS)
+                long pressureScale;
+
+                @Label("Chart")
+                @Timespan(Timespan.NANOSECONDS)
+                long chart;
+
+                @Label("Fill")
+                @Timespan(Timespan.NANOSECONDS)
+                long fill;
+
+                @Label("Date")
+                @Timespan(Timespan.NANOSECONDS)
+                long date;
+
+                @Label("Glyph Probes")
+                int glyphProbes;
+
+                @Label("Filled Samples")
+                int filledSamples;
+
+                @Label("Scale Failures")
+                int scaleFailures;
+
+                @Label("Missing Temperature")
+                int missingTemperature;
+
+                @Label("Missing Temperature Minimum")
+                int missingTemperatureMin;
+
+                @Label("Missing Temperature Maximum")
+                int missingTemperatureMax;
+
+                @Label("Missing Perceptible Temperature")
+                int missingTemperaturePerceptible;
+
+                @Label("Missing Perceptible Temperature Minimum")
+                int missingTemperaturePerceptibleMin;
+
+                @Label("Missing Perceptible Temperature Maximum")
+                int missingTemperaturePerceptibleMax;
+
+                @Label("Missing Pressure hPa")
+                int missingPressureHpa;
+
+                @Label("Missing Pressure mm Hg")
+                int missingPressureMmHg;
+            }
+
+        boolean isEnabled()
+        {
+            return TYPE.isEnabled();
+        }
+
+        Object start()
+        {
+            ParseEvent event = new ParseEvent();
+            event.begin();
+            return event;
+        }
+
+        void commit(Object started, ParseMetrics metrics)
+        {
+            ParseEvent event = (ParseEvent) started;
+            event.end();
+            if (!event.shouldCommit())
+            {
+                return;
+            }
+            event.reparse = metrics.reparse;
+            event.temperatureScale = metrics.stageNanos[ParseMetrics.STAGE_TEMPERATURE_SCALE];
+            event.pressureScale = metrics.stageNanos[ParseMetrics.STAGE_PRESSURE_SCALE];
+            event.chart = metrics.stageNanos[ParseMetrics.STAGE_CHART];
+            event.fill = metrics.stageNanos[ParseMetrics.STAGE_FILL];
+            event.date = metrics.stageNanos[ParseMetrics.STAGE_DATE];
+            event.glyphProbes = metrics.glyphProbes;
+            event.filledSamples = metrics.filledSamples;
+            event.scaleFailures = metrics.scaleFailures;
+            event.missingTemperature = metrics.getMissingColumns(ModelUM.TYPE_TEMPERATURE);
+            event.missingTemperatureMin = metrics.getMissingColumns(ModelUM.TYPE_TEMPERATURE_MIN);
+            event.missingTemperatureMax = metrics.getMissingColumns(ModelUM.TYPE_TEMPERATURE_MAX);
+            event.missingTemperaturePerceptible = metrics.getMissingColumns(ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE);
+            event.missingTemperaturePerceptibleMin = metrics.getMissingColumns(ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN);
+            event.missingTemperaturePerceptibleMax = metrics.getMissingColumns(ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX);
+            event.missingPressureHpa = metrics.getMissingColumns(ModelUM.TYPE_PRESSURE_HPA);
+            event.missingPressureMmHg = metrics.getMissingColumns(ModelUM.TYPE_PRESSURE_MMHG);
+            event.commit();
+        }
+    }
@@ -0,0 +1,13 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Receives metrics of every parse() and reparse() of a ModelUM it was given to, see ParseMetrics.
+
+Called in the parsing thread at the end of each parse, after all values are in result holder; a
+parser shared by threads calls it from all of them at once. Metrics are reused by the holder's
+next parse.
+*/
+public interface ParseListener
+    {
+        void parsed(ModelUMResult result, ParseMetrics metrics);
+    }
@@ -0,0 +1,165 @@
+package com.pgssoft.meteopllibrary;
+
+import java.util.Arrays;
+
+/*
+What one parse of a meteogram cost and how well it went, given to ParseListener.
+
+Stages are the steps of parse() and reparse(): STAGE_TEMPERATURE_SCALE and STAGE_PRESSURE_SCALE
+read axis scales (skipped when ScaleCache has the scale, or when reparse() takes it from previous
+image), STAGE_CHART reads chart panels and day/night row, STAGE_FILL fills missing samples with
+GapFiller and STAGE_DATE reads date and time. Counters tell how parse degraded: glyph cells
+looked up in digit templates by OCR, samples filled, scales whose labels were not found (their
+precision is then infinite or NaN) and columns of every chart series left at NOVALUE.
+
+Metrics are collected only while a listener is installed or the parse event is recorded by JDK
+Flight Recorder, see ModelUM(utils, gapFiller, scaleCache, listener); every holder has its own
+instance, filled again by each such parse, so listener must copy what it keeps. Parses not
+measured, and lazy parse of single sections, leave counters as the last measured parse left them.
+*/
+public final class ParseMetrics
+    {
+        public static final int STAGE_TEMPERATURE_SCALE = 0;
+        public static final int STAGE_PRESSURE_SCALE = 1;
+        public static final int STAGE_CHART = 2;
+        public static final int STAGE_FILL = 3;
+        public static final int STAGE_DATE = 4;
+        public static final int STAGES = 5;
+
+        // series whose missing columns are counted, see getMissingColumns()
+        static final int[] TYPES = new int[] {
+            ModelUM.TYPE_TEMPERATURE, ModelUM.TYPE_TEMPERATURE_MIN, ModelUM.TYPE_TEMPERATURE_MAX,
+            ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX,
+            ModelUM.TYPE_PRESSURE_HPA, ModelUM.TYPE_PRESSURE_MMHG };
+
+        final long[] stageNanos = new long[STAGES];
+        final int[] missingColumns = new int[TYPES.length];
+        boolean reparse;
+        int glyphProbes;
+        int filledSamples;
+        int scaleFailures;
+        // between reset() and finish() of a measured parse; counters are not touched otherwise
+        boolean measuring;
+        // JDK Flight Recorder event of parse being measured, see ParseEvents
+        Object event;
+
+        ParseMetrics()
+        {
+        }
+
+        // parse was ModelUM.reparse()
+        public boolean isReparse()
+        {
+            return reparse;
+        }
+
+        public long getStageNanos(int stage)
+        {
+            return stageNanos[stage];
+        }
+
+        // all stages
+        public long getTotalNanos()
+        {
+            long total = 0;
+            for (long nanos : stageNanos)
+            {
+                total += nanos;
+            }
+            return total;
+        }
+
+        // glyph cells compared with digit templates by scale and date OCR
+        public int getGlyphProbes()
+        {
+            return glyphProbes;
+        }
+
+        // samples filled by GapFiller, 0 without heuristic
+        public int getFilledSamples()
+        {
+            return filledSamples;
+        }
+
+        // temperature and pressure scales whose labels were not found, 0 ... 2
+        public int getScaleFailures()
+        {
+            return scaleFailures;
+        }
+
+        /*
+        columns of series of given type with no value after parse (and filling)
+        */
+        public int getMissingColumns(int type)
+        {
+            for (int s = 0; s < TYPES.length; s++)
+            {
+                if (TYPES[s] == type)
+                {
+                    return missingColumns[s];
+                }
+            }
+            throw new IllegalArgumentException("No metrics of type " + type);
+        }
+
+        void reset(ModelUMResult result, boolean reparse)
+        {
+            this.reparse = reparse;
+            Arrays.fill(stageNanos, 0);
+            glyphProbes = 0;
+            filledSamples = 0;
+            scaleFailures = 0;
+            result.temperatureLabelBand.probes = 0;
+            result.pressureLabelBand.probes = 0;
+            result.dateBand.probes = 0;
+            result.timeBand.probes = 0;
+            count(result, true);
+        }
+
+        /*
+        stop counting without finishing metrics, for parse that did not finish
+        */
+        void stop(ModelUMResult result)
+        {
+            count(result, false);
+        }
+
+        private void count(ModelUMResult result, boolean measuring)
+        {
+            this.measuring = measuring;
+            result.temperatureLabelBand.counting = measuring;
+            result.pressureLabelBand.counting = measuring;
+            result.dateBand.counting = measuring;
+            result.timeBand.counting = measuring;
+        }
+
+        /*
+        time of stage ended now, started at given time; returns now
+        */
+        long stage(int stage, long started)
+        {
+            long now = System.nanoTime();
+            stageNanos[stage] += now - started;
+            return now;
+        }
+
+        void finish(ModelUMResult result)
+        {
+            count(result, false);
+            glyphProbes = result.temperatureLabelBand.probes + result.pressureLabelBand.probes +
+                    result.dateBand.probes + result.timeBand.probes;
+            for (int s = 0; s < TYPES.length; s++)
+            {
+                double[] samples = result.getSamples(TYPES[s]);
+                int missing = 0;
+                for (int x = 0; x < samples.length; x++)
+                {
+                    if (samples[x] == ModelUM.NOVALUE || samples[x] == -ModelUM.NOVALUE)
+                    {
+                        missing++;
+                    }
+                }
+                missingColumns[s] = missing;
+            }
+        }
+    }
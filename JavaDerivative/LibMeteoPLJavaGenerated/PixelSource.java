@@ -0,0 +1,618 @@
+package com.pgssoft.meteopllibrary;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/*
+Read-only view of image pixels given to ModelUM parser.
+
+Pixels are read in place from caller's array, buffer or raster - nothing is copied
+and caller's data is never changed; color channels are picked on the fly, so
+getPixel() always returns 0xRRGGBB without alpha.
+
+Parser compares pixels by key: each color it looks for is turned into key once with
+keyOf(), then getKey() of pixels is compared with it. For RGB sources key is 0xRRGGBB,
+for palette images it is palette index, so no color lookup is done per pixel.
+*/
+public abstract class PixelSource
+    {
+        // pixel formats of raw arrays and buffers
+        public static final int FORMAT_INT_RGB = 0; // int 0xAARRGGBB or 0x00RRGGBB (BufferedImage.getRGB), highest byte ignored
+        public static final int FORMAT_INT_BGR = 1; // int 0x00BBGGRR
+        public static final int FORMAT_INT_RGBA = 2; // int 0xRRGGBBAA
+        public static final int FORMAT_BYTE_RGB = 3; // 3 bytes R, G, B
+        public static final int FORMAT_BYTE_BGR = 4; // 3 bytes B, G, R
+        public static final int FORMAT_BYTE_RGBA = 5; // 4 bytes R, G, B, A
+        public static final int FORMAT_BYTE_ARGB = 6; // 4 bytes A, R, G, B
+        public static final int FORMAT_BYTE_ABGR = 7; // 4 bytes A, B, G, R
+        public static final int FORMAT_BYTE_BGRA = 8; // 4 bytes B, G, R, A
+
+        final int width;
+        final int height;
+
+        PixelSource(int width, int height)
+        {
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth()
+        {
+            return width;
+        }
+
+        public int getHeight()
+        {
+            return height;
+        }
+
+        /*
+        color of pixel as 0xRRGGBB
+        */
+        public abstract int getPixel(int x, int y);
+
+        /*
+        value of pixel to compare with keyOf() result; equal keys mean equal colors
+        */
+        public int getKey(int x, int y)
+        {
+            return getPixel(x, y);
+        }
+
+        /*
+        key of given 0xRRGGBB color, -1 if the color cannot appear in this source
+        */
+        public int keyOf(int rgb)
+        {
+            return rgb;
+        }
+
+        /*
+        what the parser can tell about pixel: its color, or for palette indices not valid in image
+        a value outside of 0xRRGGBB range; pixels of equal identity match the same keyOf() keys
+        */
+        int getIdentity(int x, int y)
+        {
+            return getPixel(x, y);
+        }
+
+        /*
+        true when area of width x height pixels at (x, y) looks the same to the parser in both images;
+        raw data are compared directly for two int RGB arrays or two palette images with one palette
+        */
+        static boolean sameArea(PixelSource a, PixelSource b, int x, int y, int width, int height)
+        {
+            if (a instanceof IntRGB && b instanceof IntRGB)
+            {
+                IntRGB ia = (IntRGB) a;
+                IntRGB ib = (IntRGB) b;
+                for (int row = y; row < y + height; row++)
+                {
+                    int from = ia.offset + row * ia.scanline + x;
+                    int to = from + width;
+                    int shift = ib.offset + row * ib.scanline + x - from;
+                    while (from < to)
+                    {
+                        // ints differing in alpha byte only are the same pixel, check and go on
+                        int i = Arrays.mismatch(ia.data, from, to, ib.data, from + shift, to + shift);
+                        if (i < 0)
+                        {
+                            break;
+                        }
+                        if (((ia.data[from + i] ^ ib.data[from + i + shift]) & 0xffffff) != 0)
+                        {
+                            return false;
+                        }
+                        from += i + 1;
+                    }
+                }
+                return true;
+            }
+            if (a instanceof Indexed && b instanceof Indexed &&
+                ((Indexed) a).size == ((Indexed) b).size && Arrays.equals(((Indexed) a).colors, ((Indexed) b).colors))
+            {
+                // no color is listed twice in Indexed, so equal pixels have equal indices
+                Indexed ia = (Indexed) a;
+                Indexed ib = (Indexed) b;
+                for (int row = y; row < y + height; row++)
+                {
+                    int from = ia.offset + row * ia.scanline + x;
+                    int fromB = ib.offset + row * ib.scanline + x;
+                    if (!Arrays.equals(ia.data, from, from + width, ib.data, fromB, fromB + width))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (int row = y; row < y + height; row++)
+            {
+                for (int i = x; i < x + width; i++)
+                {
+                    if (a.getIdentity(i, row) != b.getIdentity(i, row))
+                    {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /*
+        pixels as returned by BufferedImage.getRGB(), one int per pixel, row by row
+        */
+        public static PixelSource ofRGB(int[] pixels, int width, int height)
+        {
+            return of(pixels, 0, width, width, height, FORMAT_INT_RGB);
+        }
+
+        /*
+        int per pixel array, pixel (x, y) is at offset + y * scanline + x
+        */
+        public static PixelSource of(int[] pixels, int offset, int scanline, int width, int height, int format)
+        {
+            checkBounds(pixels.length, offset, scanline, 1, width, height);
+            if (format == FORMAT_INT_RGB)
+            {
+                return new IntRGB(pixels, offset, scanline, width, height);
+            }
+            int[] shifts = intShifts(format);
+            return new IntPacked(pixels, offset, scanline, width, height, shifts[0], shifts[1], shifts[2]);
+        }
+
+        /*
+        int per pixel buffer (heap or direct), pixels start at buffer position, row by row
+        */
+        public static PixelSource of(IntBuffer buffer, int width, int height, int format)
+        {
+            checkBounds(buffer.limit(), buffer.position(), width, 1, width, height);
+            int[] shifts = intShifts(format);
+            return new IntBufferPacked(buffer, buffer.position(), width, width, height, shifts[0], shifts[1], shifts[2]);
+        }
+
+        /*
+        byte buffer (heap, direct or memory-mapped), pixels start at buffer position, row by row;
+        FORMAT_INT_* formats are read as ints in buffer byte order
+        */
+        public static PixelSource of(ByteBuffer buffer, int width, int height, int format)
+        {
+            if (format == FORMAT_INT_RGB || format == FORMAT_INT_BGR || format == FORMAT_INT_RGBA)
+            {
+                return of(buffer.asIntBuffer(), width, height, format);
+            }
+            int[] offsets = byteOffsets(format);
+            int pixelStride = offsets[3];
+            checkBounds(buffer.limit(), buffer.position(), width * pixelStride, pixelStride, width, height);
+            return new ByteBufferInterleaved(buffer, buffer.position(), width * pixelStride, pixelStride, width, height,
+                offsets[0], offsets[1], offsets[2]);
+        }
+
+        /*
+        raster with red, green and blue bands (in that order) of int packed or byte interleaved layout,
+        as used by TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_INT_BGR, TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR images
+        */
+        public static PixelSource of(Raster raster)
+        {
+            SampleModel sm = raster.getSampleModel();
+            DataBuffer db = raster.getDataBuffer();
+            int x0 = raster.getMinX() - raster.getSampleModelTranslateX();
+            int y0 = raster.getMinY() - raster.getSampleModelTranslateY();
+            int width = raster.getWidth();
+            int height = raster.getHeight();
+
+            if (sm.getNumBands() < 3)
+            {
+                throw new IllegalArgumentException("Raster has no RGB bands");
+            }
+
+            if (sm instanceof SinglePixelPackedSampleModel && db instanceof DataBufferInt && db.getNumBanks() == 1)
+            {
+                SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel) sm;
+                int[] masks = packed.getBitMasks();
+                int[] shifts = packed.getBitOffsets();
+                for (int i = 0; i < 3; i++)
+                {
+                    if (masks[i] >>> shifts[i] != 0xff)
+                    {
+                        throw new IllegalArgumentException("Raster has no 8 bit color channels");
+                    }
+                }
+                int offset = db.getOffset() + packed.getOffset(x0, y0);
+                int[] data = ((DataBufferInt) db).getData();
+                int scanline = packed.getScanlineStride();
+                if (shifts[0] == 16 && shifts[1] == 8 && shifts[2] == 0)
+                {
+                    return new IntRGB(data, offset, scanline, width, height);
+                }
+                return new IntPacked(data, offset, scanline, width, height, shifts[0], shifts[1], shifts[2]);
+            }
+
+            if (sm instanceof ComponentSampleModel && db instanceof DataBufferByte)
+            {
+                ComponentSampleModel component = (ComponentSampleModel) sm;
+                int[] banks = component.getBankIndices();
+                int[] bandOffsets = component.getBandOffsets();
+                if (banks[0] == banks[1] && banks[1] == banks[2])
+                {
+                    int offset = db.getOffset() + y0 * component.getScanlineStride() + x0 * component.getPixelStride();
+                    return new ByteInterleaved(((DataBufferByte) db).getData(banks[0]), offset,
+                        component.getScanlineStride(), component.getPixelStride(), width, height,
+                        bandOffsets[0], bandOffsets[1], bandOffsets[2]);
+                }
+            }
+
+            throw new IllegalArgumentException("Unsupported raster layout " + sm.getClass().getSimpleName());
+        }
+
+        /*
+        palette indices, one byte per pixel, pixel (x, y) is at offset + y * scanline + x;
+        palette holds 0xRRGGBB colors (highest byte ignored); indices past its end are not valid
+        in image, they read as black but have keys of their own, never returned by keyOf()
+        */
+        public static PixelSource ofIndexed(byte[] indices, int offset, int scanline, int width, int height, int[] palette)
+        {
+            checkBounds(indices.length, offset, scanline, 1, width, height);
+            if (palette.length > 256)
+            {
+                throw new IllegalArgumentException("Palette has more than 256 colors");
+            }
+
+            int[] colors = new int[256];
+            int[] keys = new int[256];
+            for (int i = 0; i < 256; i++)
+            {
+                colors[i] = i < palette.length ? palette[i] & 0xffffff : 0;
+                keys[i] = i;
+            }
+
+            // the same color may be listed twice, its pixels must get one key then
+            boolean duplicates = false;
+            for (int i = 1; i < palette.length; i++)
+            {
+                for (int j = 0; j < i; j++)
+                {
+                    if (colors[j] == colors[i])
+                    {
+                        keys[i] = j;
+                        duplicates = true;
+                        break;
+                    }
+                }
+            }
+
+            if (duplicates)
+            {
+                return new IndexedRemapped(indices, offset, scanline, width, height, colors, palette.length, keys);
+            }
+            return new Indexed(indices, offset, scanline, width, height, colors, palette.length);
+        }
+
+        /*
+        image pixels read in place when layout allows it (see of(Raster)), 8 bit palette images
+        as palette indices (see ofIndexed()), other image types are converted with BufferedImage.getRGB()
+        */
+        public static PixelSource of(BufferedImage image)
+        {
+            if (image.getColorModel() instanceof IndexColorModel &&
+                image.getRaster().getSampleModel() instanceof ComponentSampleModel &&
+                image.getRaster().getDataBuffer() instanceof DataBufferByte &&
+                image.getRaster().getNumBands() == 1)
+            {
+                IndexColorModel icm = (IndexColorModel) image.getColorModel();
+                Raster raster = image.getRaster();
+                ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                DataBuffer db = raster.getDataBuffer();
+                int x0 = raster.getMinX() - raster.getSampleModelTranslateX();
+                int y0 = raster.getMinY() - raster.getSampleModelTranslateY();
+                if (sm.getPixelStride() == 1 && icm.getMapSize() <= 256)
+                {
+                    int[] palette = new int[icm.getMapSize()];
+                    icm.getRGBs(palette);
+                    int offset = db.getOffset() + sm.getOffset(x0, y0) + sm.getBandOffsets()[0];
+                    return ofIndexed(((DataBufferByte) db).getData(sm.getBankIndices()[0]), offset,
+                        sm.getScanlineStride(), raster.getWidth(), raster.getHeight(), palette);
+                }
+            }
+
+            switch (image.getType())
+            {
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_INT_BGR:
+                case BufferedImage.TYPE_3BYTE_BGR:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                    return of(image.getRaster());
+            }
+
+            int width = image.getWidth();
+            int height = image.getHeight();
+            return ofRGB(image.getRGB(0, 0, width, height, null, 0, width), width, height);
+        }
+
+        private static int[] intShifts(int format)
+        {
+            switch (format)
+            {
+                case FORMAT_INT_RGB:
+                    return new int[] { 16, 8, 0 };
+                case FORMAT_INT_BGR:
+                    return new int[] { 0, 8, 16 };
+                case FORMAT_INT_RGBA:
+                    return new int[] { 24, 16, 8 };
+            }
+            throw new IllegalArgumentException("Not an int pixel format: " + format);
+        }
+
+        // red, green and blue offsets followed by pixel stride
+        private static int[] byteOffsets(int format)
+        {
+            switch (format)
+            {
+                case FORMAT_BYTE_RGB:
+                    return new int[] { 0, 1, 2, 3 };
+                case FORMAT_BYTE_BGR:
+                    return new int[] { 2, 1, 0, 3 };
+                case FORMAT_BYTE_RGBA:
+                    return new int[] { 0, 1, 2, 4 };
+                case FORMAT_BYTE_ARGB:
+                    return new int[] { 1, 2, 3, 4 };
+                case FORMAT_BYTE_ABGR:
+                    return new int[] { 3, 2, 1, 4 };
+                case FORMAT_BYTE_BGRA:
+                    return new int[] { 2, 1, 0, 4 };
+            }
+            throw new IllegalArgumentException("Not a byte pixel format: " + format);
+        }
+
+        private static void checkBounds(int length, int offset, int scanline, int pixelStride, int width, int height)
+        {
+            if (width <= 0 || height <= 0 || offset < 0 ||
+                (long) offset + (long) (height - 1) * scanline + (long) width * pixelStride > length)
+            {
+                throw new IllegalArgumentException("Pixel data too small for " + width + "x" + height + " image");
+            }
+        }
+
+        static final class IntRGB extends PixelSource
+        {
+            final int[] data;
+            final int offset;
+            final int scanline;
+
+            IntRGB(int[] data, int offset, int scanline, int width, int height)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                return data[offset + y * scanline + x] & 0xffffff;
+            }
+        }
+
+        static final class IntPacked extends PixelSource
+        {
+            final int[] data;
+            final int offset;
+            final int scanline;
+            final int redShift, greenShift, blueShift;
+
+            IntPacked(int[] data, int offset, int scanline, int width, int height, int redShift, int greenShift, int blueShift)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+                this.redShift = redShift;
+                this.greenShift = greenShift;
+                this.blueShift = blueShift;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                int v = data[offset + y * scanline + x];
+                return ((v >>> redShift) & 0xff) << 16 | ((v >>> greenShift) & 0xff) << 8 | ((v >>> blueShift) & 0xff);
+            }
+        }
+
+        static final class IntBufferPacked extends PixelSource
+        {
+            final IntBuffer data;
+            final int offset;
+            final int scanline;
+            final int redShift, greenShift, blueShift;
+
+            IntBufferPacked(IntBuffer data, int offset, int scanline, int width, int height, int redShift, int greenShift, int blueShift)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+                this.redShift = redShift;
+                this.greenShift = greenShift;
+                this.blueShift = blueShift;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                int v = data.get(offset + y * scanline + x);
+                return ((v >>> redShift) & 0xff) << 16 | ((v >>> greenShift) & 0xff) << 8 | ((v >>> blueShift) & 0xff);
+            }
+        }
+
+        static final class ByteInterleaved extends PixelSource
+        {
+            final byte[] data;
+            final int offset;
+            final int scanline;
+            final int pixelStride;
+            final int red, green, blue;
+
+            ByteInterleaved(byte[] data, int offset, int scanline, int pixelStride, int width, int height, int red, int green, int blue)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+                this.pixelStride = pixelStride;
+                this.red = red;
+                this.green = green;
+                this.blue = blue;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                int i = offset + y * scanline + x * pixelStride;
+                return (data[i + red] & 0xff) << 16 | (data[i + green] & 0xff) << 8 | (data[i + blue] & 0xff);
+            }
+        }
+
+        static final class ByteBufferInterleaved extends PixelSource
+        {
+            final ByteBuffer data;
+            final int offset;
+            final int scanline;
+            final int pixelStride;
+            final int red, green, blue;
+
+            ByteBufferInterleaved(ByteBuffer data, int offset, int scanline, int pixelStride, int width, int height, int red, int green, int blue)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+                this.pixelStride = pixelStride;
+                this.red = red;
+                this.green = green;
+                this.blue = blue;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                int i = offset + y * scanline + x * pixelStride;
+                return (data.get(i + red) & 0xff) << 16 | (data.get(i + green) & 0xff) << 8 | (data.get(i + blue) & 0xff);
+            }
+        }
+
+        static final class Indexed extends PixelSource
+        {
+            final byte[] data;
+            final int offset;
+            final int scanline;
+            final int[] colors;
+            final int size;
+
+            Indexed(byte[] data, int offset, int scanline, int width, int height, int[] colors, int size)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+                this.colors = colors;
+                this.size = size;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                return colors[getKey(x, y)];
+            }
+
+            @Override
+            public int getKey(int x, int y)
+            {
+                return data[offset + y * scanline + x] & 0xff;
+            }
+
+            @Override
+            int getIdentity(int x, int y)
+            {
+                int index = getKey(x, y);
+                return index < size ? colors[index] : 0x1000000 | index;
+            }
+
+            @Override
+            public int keyOf(int rgb)
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    if (colors[i] == rgb)
+                    {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+        }
+
+        static final class IndexedRemapped extends PixelSource
+        {
+            final byte[] data;
+            final int offset;
+            final int scanline;
+            final int[] colors;
+            final int size;
+            final int[] keys;
+
+            IndexedRemapped(byte[] data, int offset, int scanline, int width, int height, int[] colors, int size, int[] keys)
+            {
+                super(width, height);
+                this.data = data;
+                this.offset = offset;
+                this.scanline = scanline;
+                this.colors = colors;
+                this.size = size;
+                this.keys = keys;
+            }
+
+            @Override
+            public int getPixel(int x, int y)
+            {
+                return colors[data[offset + y * scanline + x] & 0xff];
+            }
+
+            @Override
+            public int getKey(int x, int y)
+            {
+                return keys[data[offset + y * scanline + x] & 0xff];
+            }
+
+            @Override
+            int getIdentity(int x, int y)
+            {
+                int index = data[offset + y * scanline + x] & 0xff;
+                return index < size ? colors[index] : 0x1000000 | index;
+            }
+
+            @Override
+            public int keyOf(int rgb)
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    if (colors[i] == rgb)
+                    {
+                        return i; // first index with the color is always its key
+                    }
+                }
+                return -1;
+            }
+        }
+    }
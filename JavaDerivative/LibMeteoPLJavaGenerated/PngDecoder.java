@@ -0,0 +1,359 @@
+package com.pgssoft.meteopllibrary;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+Minimal PNG decoder for meteograms as served by meteo.pl: 8 bit palette, not interlaced, of
+ModelUM.WIDTH x ModelUM.HEIGHT pixels; images of any other size are rejected.
+
+Image data is inflated straight from IDAT chunks and unfiltered row by row into palette
+indices, decoding stops after requested number of rows and the rest of the stream is not read.
+Result is PixelSource of palette indices (see PixelSource.ofIndexed()), rows below the limit
+read as palette entry 0. Chunk CRCs are not checked and ancillary chunks are skipped.
+
+Input that is not a PNG, or a PNG of other color type, bit depth or interlace, fails with
+UnsupportedFormatException before any image data is read, so callers can give it to a general
+decoder; other IOExceptions are broken or truncated images.
+
+Decoder keeps its buffers and Inflater between images, so one instance should be reused
+by a single thread; returned PixelSource is valid until next decode(). Call end() to release
+native memory of Inflater when decoder is no longer needed.
+*/
+public final class PngDecoder
+    {
+        // rows read by ModelUM: up to TIMESTAMP_DATE_ROW and full height of date glyphs below it
+        public static final int MODELUM_ROWS = 628;
+
+        private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+        private static final int CHUNK_IHDR = 0x49484452;
+        private static final int CHUNK_PLTE = 0x504C5445;
+        private static final int CHUNK_IDAT = 0x49444154;
+        private static final int CHUNK_IEND = 0x49454E44;
+
+        private static final int FILTER_NONE = 0;
+        private static final int FILTER_SUB = 1;
+        private static final int FILTER_UP = 2;
+        private static final int FILTER_AVERAGE = 3;
+        private static final int FILTER_PAETH = 4;
+
+        // rows are inflated in blocks of about this size, one Inflater call per row costs more than inflating itself
+        private static final int BLOCK_SIZE = 32768;
+
+        private final Inflater inflater = new Inflater();
+        private final byte[] header = new byte[13];
+        private final byte[] word = new byte[4];
+        private byte[] input = new byte[8192];
+        private byte[] lines = new byte[0]; // block of filter byte + row pairs
+        private byte[] indices = new byte[0];
+        private final int[] palette = new int[256];
+
+        private InputStream in;
+        private int idatRemaining; // bytes of current IDAT chunk not yet given to inflater
+
+        /*
+        image in a format PngDecoder does not decode by design, other decoders may still read it
+        */
+        public static final class UnsupportedFormatException extends IOException
+            {
+                UnsupportedFormatException(String message)
+                {
+                    super(message);
+                }
+            }
+
+        /*
+        decode whole image
+        */
+        public PixelSource decode(InputStream in) throws IOException
+        {
+            return decode(in, Integer.MAX_VALUE);
+        }
+
+        /*
+        decode top rows of image only, e.g. MODELUM_ROWS when image is used for ModelUM
+        */
+        public PixelSource decode(InputStream in, int rows) throws IOException
+        {
+            this.in = in;
+            try
+            {
+                return decodeImage(rows);
+            }
+            finally
+            {
+                this.in = null;
+            }
+        }
+
+        public PixelSource decode(byte[] png, int offset, int length, int rows) throws IOException
+        {
+            return decode(new ByteArrayInputStream(png, offset, length), rows);
+        }
+
+        public void end()
+        {
+            inflater.end();
+        }
+
+        private PixelSource decodeImage(int rows) throws IOException
+        {
+            if (readLong() != SIGNATURE)
+            {
+                throw new UnsupportedFormatException("Not a PNG image");
+            }
+            if (readInt() != 13 || readInt() != CHUNK_IHDR)
+            {
+                throw new IOException("PNG image has no IHDR chunk");
+            }
+            readFully(header, 0, 13);
+            readInt(); // CRC
+
+            int width = readInt(header, 0);
+            int height = readInt(header, 4);
+            int bitDepth = header[8];
+            int colorType = header[9];
+            // size is checked before buffers are sized by it, so a corrupt header cannot make decoder allocate more
+            if (width != ModelUM.WIDTH || height != ModelUM.HEIGHT)
+            {
+                throw new IOException("Unsupported PNG image size " + width + "x" + height + ", only meteograms of " +
+                        ModelUM.WIDTH + "x" + ModelUM.HEIGHT + " are decoded");
+            }
+            if (bitDepth != 8 || colorType != 3 || header[10] != 0 || header[11] != 0 || header[12] != 0)
+            {
+                throw new UnsupportedFormatException("Unsupported PNG format, only 8 bit palette images without interlace are decoded");
+            }
+
+            int colors = -1;
+            int length;
+            int type;
+            while (true)
+            {
+                length = readInt();
+                type = readInt();
+                if (length < 0)
+                {
+                    throw new IOException("Invalid PNG chunk length");
+                }
+                if (type == CHUNK_IDAT)
+                {
+                    break;
+                }
+                if (type == CHUNK_IEND)
+                {
+                    throw new IOException("PNG image has no IDAT chunk");
+                }
+                if (type == CHUNK_PLTE)
+                {
+                    colors = readPalette(length);
+                }
+                else
+                {
+                    skip(length);
+                }
+                readInt(); // CRC
+            }
+            if (colors < 0)
+            {
+                throw new IOException("PNG image has no PLTE chunk");
+            }
+
+            int stride = width + 1;
+            int block = Math.max(1, BLOCK_SIZE / stride);
+            if (lines.length < block * stride)
+            {
+                lines = new byte[block * stride];
+            }
+            if (indices.length != width * height)
+            {
+                indices = new byte[width * height];
+            }
+
+            idatRemaining = length;
+            inflater.reset();
+            int decoded = Math.min(rows, height);
+            for (int y = 0; y < decoded; y += block)
+            {
+                int count = Math.min(block, decoded - y);
+                inflateLines(count * stride);
+                for (int i = 0; i < count; i++)
+                {
+                    unfilter(y + i, width, i * stride);
+                }
+            }
+            Arrays.fill(indices, decoded * width, height * width, (byte) 0);
+
+            return PixelSource.ofIndexed(indices, 0, width, width, height, Arrays.copyOf(palette, colors));
+        }
+
+        private int readPalette(int length) throws IOException
+        {
+            if (length % 3 != 0 || length > 3 * 256)
+            {
+                throw new IOException("Invalid PNG palette");
+            }
+            byte[] rgb = input;
+            readFully(rgb, 0, length);
+            int colors = length / 3;
+            for (int i = 0; i < colors; i++)
+            {
+                palette[i] = (rgb[3 * i] & 0xff) << 16 | (rgb[3 * i + 1] & 0xff) << 8 | (rgb[3 * i + 2] & 0xff);
+            }
+            return colors;
+        }
+
+        // fill lines with next rows, reading further IDAT chunks as inflater asks for them
+        private void inflateLines(int length) throws IOException
+        {
+            int done = 0;
+            try
+            {
+                while (done < length)
+                {
+                    int n = inflater.inflate(lines, done, length - done);
+                    done += n;
+                    if (n == 0)
+                    {
+                        if (inflater.finished() || inflater.needsDictionary())
+                        {
+                            throw new IOException("PNG image data too short");
+                        }
+                        if (inflater.needsInput())
+                        {
+                            feedInflater();
+                        }
+                    }
+                }
+            }
+            catch (DataFormatException e)
+            {
+                throw new IOException("Corrupted PNG image data", e);
+            }
+        }
+
+        private void feedInflater() throws IOException
+        {
+            while (idatRemaining == 0)
+            {
+                readInt(); // CRC of previous IDAT
+                int length = readInt();
+                if (readInt() != CHUNK_IDAT || length < 0)
+                {
+                    throw new IOException("PNG image data too short");
+                }
+                idatRemaining = length;
+            }
+            int n = Math.min(idatRemaining, input.length);
+            readFully(input, 0, n);
+            idatRemaining -= n;
+            inflater.setInput(input, 0, n);
+        }
+
+        // undo PNG filter of line at given offset of lines (1 byte per pixel) into row y of indices, row y - 1 is already there
+        private void unfilter(int y, int width, int line) throws IOException
+        {
+            byte[] cur = lines;
+            byte[] out = indices;
+            int row = y * width;
+            int prev = row - width;
+            switch (cur[line])
+            {
+                case FILTER_NONE:
+                    System.arraycopy(cur, line + 1, out, row, width);
+                    break;
+                case FILTER_SUB:
+                    out[row] = cur[line + 1];
+                    for (int x = 1; x < width; x++)
+                    {
+                        out[row + x] = (byte) (cur[line + x + 1] + out[row + x - 1]);
+                    }
+                    break;
+                case FILTER_UP:
+                    if (y == 0)
+                    {
+                        System.arraycopy(cur, line + 1, out, row, width);
+                        break;
+                    }
+                    for (int x = 0; x < width; x++)
+                    {
+                        out[row + x] = (byte) (cur[line + x + 1] + out[prev + x]);
+                    }
+                    break;
+                case FILTER_AVERAGE:
+                    for (int x = 0; x < width; x++)
+                    {
+                        int left = x > 0 ? out[row + x - 1] & 0xff : 0;
+                        int up = y > 0 ? out[prev + x] & 0xff : 0;
+                        out[row + x] = (byte) (cur[line + x + 1] + ((left + up) >>> 1));
+                    }
+                    break;
+                case FILTER_PAETH:
+                    for (int x = 0; x < width; x++)
+                    {
+                        int a = x > 0 ? out[row + x - 1] & 0xff : 0;
+                        int b = y > 0 ? out[prev + x] & 0xff : 0;
+                        int c = x > 0 && y > 0 ? out[prev + x - 1] & 0xff : 0;
+                        int p = a + b - c;
+                        int pa = Math.abs(p - a);
+                        int pb = Math.abs(p - b);
+                        int pc = Math.abs(p - c);
+                        int predictor = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                        out[row + x] = (byte) (cur[line + x + 1] + predictor);
+                    }
+                    break;
+                default:
+                    throw new IOException("Invalid PNG filter type " + cur[line]);
+            }
+        }
+
+        private void readFully(byte[] buffer, int offset, int length) throws IOException
+        {
+            while (length > 0)
+            {
+                int n = in.read(buffer, offset, length);
+                if (n < 0)
+                {
+                    throw new EOFException("Unexpected end of PNG image");
+                }
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private void skip(int length) throws IOException
+        {
+            while (length > 0)
+            {
+                int n = (int) in.skip(length);
+                if (n <= 0)
+                {
+                    readFully(input, 0, Math.min(length, input.length));
+                    n = Math.min(length, input.length);
+                }
+                length -= n;
+            }
+        }
+
+        private int readInt() throws IOException
+        {
+            readFully(word, 0, 4);
+            return readInt(word, 0);
+        }
+
+        private long readLong() throws IOException
+        {
+            long high = readInt() & 0xffffffffL;
+            return high << 32 | (readInt() & 0xffffffffL);
+        }
+
+        private static int readInt(byte[] buffer, int offset)
+        {
+            return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16 |
+                (buffer[offset + 2] & 0xff) << 8 | (buffer[offset + 3] & 0xff);
+        }
+    }
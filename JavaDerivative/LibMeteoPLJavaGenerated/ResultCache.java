@@ -0,0 +1,572 @@
+package com.pgssoft.meteopllibrary;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Cache of parse results in front of ModelUM, for images fetched again and again unchanged.
+
+Key is a 128 bit hash of the encoded image bytes (as downloaded, before decoding), length,
+ModelUM.PARSER_VERSION and the parser's heuristic settings, so an identical file is neither decoded
+nor parsed: load() copies cached values into caller's ModelUMResult. Hashing the decoded pixels
+instead would cost more than parsing them.
+
+Results are kept serialized: in memory in an LRU map bounded by total size, and optionally as
+one file per result in a directory, also LRU (by file time) and bounded; a cache opened on an
+existing directory starts with the results stored there, and deletes temporary files left
+half written by a process that stopped before renaming them, so a directory must not be used
+by two caches at once. Results are read from disk only on a memory miss and then kept in memory
+too. Disk errors are not reported, the result is then just not cached.
+
+Date is cached as read from the image, and load() makes timestamp of it with Utils of the
+parser given, as parse() would; timestamps computed by other Utils are never given back. All methods may be called from
+many threads at once; files are written and read outside of the lock.
+*/
+public final class ResultCache
+    {
+        private static final String SUFFIX = ".umr";
+        // files being written, see putDisk()
+        private static final String TEMP_PREFIX = "result";
+        private static final String TEMP_SUFFIX = ".tmp";
+        private static final int MAGIC = 0x554d5202; // "UMR" and format version
+        private static final int SERIALIZED_SIZE = serializedSize();
+        private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+
+        /*
+        cache key, 128 bits of hash with length of image
+        */
+        private static final class Key
+            {
+                final long hash1;
+                final long hash2;
+                final int length;
+
+                Key(long hash1, long hash2, int length)
+                {
+                    this.hash1 = hash1;
+                    this.hash2 = hash2;
+                    this.length = length;
+                }
+
+                @Override
+                public boolean equals(Object o)
+                {
+                    if (!(o instanceof Key))
+                    {
+                        return false;
+                    }
+                    Key key = (Key) o;
+                    return hash1 == key.hash1 && hash2 == key.hash2 && length == key.length;
+                }
+
+                @Override
+                public int hashCode()
+                {
+                    return (int) hash1;
+                }
+
+                String fileName()
+                {
+                    return String.format("%016x%016x-%d%s", hash1, hash2, length, SUFFIX);
+                }
+
+                // key of file written by fileName(), null for other files
+                static Key parse(String name)
+                {
+                    int dash = name.indexOf('-');
+                    if (dash != 32 || !name.endsWith(SUFFIX))
+                    {
+                        return null;
+                    }
+                    try
+                    {
+                        return new Key(Long.parseUnsignedLong(name.substring(0, 16), 16),
+                                Long.parseUnsignedLong(name.substring(16, 32), 16),
+                                Integer.parseInt(name.substring(33, name.length() - SUFFIX.length())));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return null;
+                    }
+                }
+            }
+
+        private final long maxMemoryBytes;
+        private final Path directory;
+        private final long maxDiskBytes;
+
+        // guarded by this, both in access order, eldest first
+        private final LinkedHashMap<Key, byte[]> memory = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+        private final LinkedHashMap<Key, Long> disk = new LinkedHashMap<Key, Long>(16, 0.75f, true); // file sizes
+        private long memoryBytes;
+        private long diskBytes;
+
+        private final LongAdder memoryHits = new LongAdder();
+        private final LongAdder diskHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder memoryEvictions = new LongAdder();
+        private final LongAdder diskEvictions = new LongAdder();
+
+        /*
+        memory only cache holding up to maxMemoryBytes of serialized results
+        */
+        public ResultCache(long maxMemoryBytes)
+        {
+            if (maxMemoryBytes < 0)
+            {
+                throw new IllegalArgumentException("Memory limit must not be negative");
+            }
+            this.maxMemoryBytes = maxMemoryBytes;
+            this.directory = null;
+            this.maxDiskBytes = 0;
+        }
+
+        /*
+        cache with disk tier of up to maxDiskBytes in directory, created when missing;
+        results already stored there are used, oldest ones deleted when over the limit
+        */
+        public ResultCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException
+        {
+            if (maxMemoryBytes < 0 || maxDiskBytes < 0)
+            {
+                throw new IllegalArgumentException("Size limits must not be negative");
+            }
+            this.maxMemoryBytes = maxMemoryBytes;
+            this.directory = directory;
+            this.maxDiskBytes = maxDiskBytes;
+
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, TEMP_PREFIX + "*" + TEMP_SUFFIX))
+            {
+                for (Path file : stream)
+                {
+                    Files.deleteIfExists(file);
+                }
+            }
+            final Map<Path, FileTime> times = new LinkedHashMap<Path, FileTime>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX))
+            {
+                for (Path file : stream)
+                {
+                    times.put(file, Files.getLastModifiedTime(file));
+                }
+            }
+            List<Path> files = new ArrayList<Path>(times.keySet());
+            Collections.sort(files, new Comparator<Path>()
+                {
+                    public int compare(Path a, Path b)
+                    {
+                        return times.get(a).compareTo(times.get(b));
+                    }
+                });
+            List<Key> evicted;
+            synchronized (this)
+            {
+                for (Path file : files)
+                {
+                    Key key = Key.parse(file.getFileName().toString());
+                    if (key != null)
+                    {
+                        long size = Files.size(file);
+                        disk.put(key, size);
+                        diskBytes += size;
+                    }
+                }
+                evicted = evictDisk();
+            }
+            delete(evicted);
+        }
+
+        /*
+        if result of given encoded image is cached, copy it into result and return true;
+        result is then as after ModelUM.parse() of that image
+        */
+        public boolean load(ModelUM parser, byte[] image, int offset, int length, ModelUMResult result)
+        {
+            Key key = key(parser, image, offset, length);
+            byte[] data;
+            boolean onDisk;
+            synchronized (this)
+            {
+                data = memory.get(key);
+                onDisk = data == null && disk.get(key) != null;
+            }
+            if (data != null)
+            {
+                read(parser, data, result);
+                memoryHits.increment();
+                return true;
+            }
+            if (onDisk)
+            {
+                data = readFile(key);
+                if (data != null)
+                {
+                    read(parser, data, result);
+                    putMemory(key, data);
+                    diskHits.increment();
+                    return true;
+                }
+            }
+            misses.increment();
+            return false;
+        }
+
+        /*
+        cache result parsed from given encoded image; result must be fully parsed (not lazy)
+        */
+        public void store(ModelUM parser, byte[] image, int offset, int length, ModelUMResult result)
+        {
+            if (!result.temperatureParsed || !result.pressureParsed || !result.otherParsed || !result.dateParsed)
+            {
+                throw new IllegalArgumentException("Result is not fully parsed");
+            }
+            Key key = key(parser, image, offset, length);
+            byte[] data = write(result);
+            putMemory(key, data);
+            if (directory != null)
+            {
+                putDisk(key, data);
+            }
+        }
+
+        public long getMemoryHits()
+        {
+            return memoryHits.sum();
+        }
+
+        public long getDiskHits()
+        {
+            return diskHits.sum();
+        }
+
+        public long getMisses()
+        {
+            return misses.sum();
+        }
+
+        // share of load() calls answered from memory or disk, 0 before first call
+        public double getHitRatio()
+        {
+            long hits = memoryHits.sum() + diskHits.sum();
+            long all = hits + misses.sum();
+            return all == 0 ? 0 : (double) hits / all;
+        }
+
+        public long getMemoryEvictions()
+        {
+            return memoryEvictions.sum();
+        }
+
+        public long getDiskEvictions()
+        {
+            return diskEvictions.sum();
+        }
+
+        // serialized size of results held in memory
+        public synchronized long getMemoryBytes()
+        {
+            return memoryBytes;
+        }
+
+        public synchronized long getDiskBytes()
+        {
+            return diskBytes;
+        }
+
+        public synchronized int getMemoryEntries()
+        {
+            return memory.size();
+        }
+
+        public synchronized int getDiskEntries()
+        {
+            return disk.size();
+        }
+
+        private void putMemory(Key key, byte[] data)
+        {
+            if (data.length > maxMemoryBytes)
+            {
+                return;
+            }
+            synchronized (this)
+            {
+                byte[] old = memory.put(key, data);
+                memoryBytes += data.length - (old == null ? 0 : old.length);
+                Iterator<byte[]> eldest = memory.values().iterator();
+                while (memoryBytes > maxMemoryBytes)
+                {
+                    memoryBytes -= eldest.next().length;
+                    eldest.remove();
+                    memoryEvictions.increment();
+                }
+            }
+        }
+
+        private void putDisk(Key key, byte[] data)
+        {
+            if (data.length > maxDiskBytes)
+            {
+                return;
+            }
+            synchronized (this)
+            {
+                if (disk.containsKey(key))
+                {
+                    return;
+                }
+            }
+            Path file = directory.resolve(key.fileName());
+            try
+            {
+                // written aside and moved in, so no reader sees half a file
+                Path temp = Files.createTempFile(directory, TEMP_PREFIX, TEMP_SUFFIX);
+                try
+                {
+                    Files.write(temp, data);
+                    try
+                    {
+                        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    catch (AtomicMoveNotSupportedException e)
+                    {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                finally
+                {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            catch (IOException e)
+            {
+                return;
+            }
+            List<Key> evicted;
+            synchronized (this)
+            {
+                if (disk.put(key, (long) data.length) == null)
+                {
+                    diskBytes += data.length;
+                }
+                evicted = evictDisk();
+            }
+            delete(evicted);
+        }
+
+        /*
+        drop eldest disk entries over the limit from index, files are deleted by caller outside of lock
+        */
+        private List<Key> evictDisk()
+        {
+            List<Key> evicted = new ArrayList<Key>();
+            Iterator<Map.Entry<Key, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes)
+            {
+                Map.Entry<Key, Long> entry = eldest.next();
+                diskBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+                diskEvictions.increment();
+            }
+            return evicted;
+        }
+
+        private void delete(List<Key> keys)
+        {
+            for (Key key : keys)
+            {
+                try
+                {
+                    Files.deleteIfExists(directory.resolve(key.fileName()));
+                }
+                catch (IOException e)
+                {
+                    // left behind, a later cache on this directory evicts it again
+                }
+            }
+        }
+
+        /*
+        content of cached file, null when it is gone or broken (it is then dropped from index)
+        */
+        private byte[] readFile(Key key)
+        {
+            Path file = directory.resolve(key.fileName());
+            try
+            {
+                byte[] data = Files.readAllBytes(file);
+                if (data.length == SERIALIZED_SIZE && ByteBuffer.wrap(data).getInt(0) == MAGIC)
+                {
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())); // LRU order after restart
+                    return data;
+                }
+            }
+            catch (IOException e)
+            {
+                // same as broken file
+            }
+            synchronized (this)
+            {
+                Long size = disk.remove(key);
+                if (size != null)
+                {
+                    diskBytes -= size;
+                }
+            }
+            return null;
+        }
+
+        /*
+        128 bit hash of image, seeded with parser version and settings; 8 bytes per step in two independent lanes
+        */
+        private static Key key(ModelUM parser, byte[] image, int offset, int length)
+        {
+            long seed = ModelUM.PARSER_VERSION * 2L + (parser.useHeuristicForMissingData ? 1 : 0);
+            if (parser.gapFiller != null)
+            {
+                seed += parser.gapFiller.key() * PRIME3; // 0 for default filling, keys of earlier versions stay
+            }
+            long h1 = seed * PRIME1 + length;
+            long h2 = seed * PRIME2 - length;
+            int end = offset + length;
+            int i = offset;
+            for (; i + 8 <= end; i += 8)
+            {
+                long v = (long) LONGS.get(image, i);
+                h1 = Long.rotateLeft(h1 + v * PRIME2, 31) * PRIME1;
+                h2 = Long.rotateLeft(h2 ^ v * PRIME3, 29) * PRIME2 + PRIME1;
+            }
+            for (; i < end; i++)
+            {
+                long v = image[i] & 0xff;
+                h1 = Long.rotateLeft(h1 ^ v * PRIME3, 11) * PRIME1;
+                h2 = Long.rotateLeft(h2 + v * PRIME1, 13) * PRIME3;
+            }
+            return new Key(mix(h1 ^ (h2 >>> 17)), mix(h2 ^ (h1 >>> 23)), length);
+        }
+
+        private static long mix(long h)
+        {
+            h = (h ^ (h >>> 33)) * PRIME2;
+            h = (h ^ (h >>> 29)) * PRIME3;
+            return h ^ (h >>> 32);
+        }
+
+        /*
+        serialized form: MAGIC, date as read (found, month, day, hour), scales, then all series of result in fixed order
+        */
+        private static int serializedSize()
+        {
+            int size = 4 + 1 + 4 + 4 + 8 + 4 * 8;
+            for (double[] series : doubles(new ModelUMResult()))
+            {
+                size += series.length * 8;
+            }
+            for (boolean[] series : booleans(new ModelUMResult()))
+            {
+                size += series.length;
+            }
+            return size;
+        }
+
+        private static double[][] doubles(ModelUMResult result)
+        {
+            return new double[][] {
+                result.temperature, result.temperatureMin, result.temperatureMax,
+                result.temperaturePerc, result.temperaturePercMin, result.temperaturePercMax,
+                result.temperatureSurfaceMin, result.temperatureSurfaceMax, result.temperatureDewPoint,
+                result.humidity, result.rainAvg, result.rainMax, result.snowAvg, result.snowMax,
+                result.pressurehPa, result.pressuremmHg, result.daynight };
+        }
+
+        private static boolean[][] booleans(ModelUMResult result)
+        {
+            return new boolean[][] { result.percAboveScale, result.convectivePerc };
+        }
+
+        private static byte[] write(ModelUMResult result)
+        {
+            byte[] data = new byte[SERIALIZED_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.putInt(MAGIC);
+            buffer.put(result.dateFound ? (byte) 1 : (byte) 0);
+            buffer.putInt(result.dateMonth);
+            buffer.putInt(result.dateDay);
+            buffer.putDouble(result.dateHour);
+            buffer.putDouble(result.temperature_precision);
+            buffer.putDouble(result.temperature_row0);
+            buffer.putDouble(result.pressure_row0_hPa);
+            buffer.putDouble(result.pressure_precision_hPa);
+            for (double[] series : doubles(result))
+            {
+                buffer.asDoubleBuffer().put(series);
+                buffer.position(buffer.position() + series.length * 8);
+            }
+            for (boolean[] series : booleans(result))
+            {
+                for (boolean value : series)
+                {
+                    buffer.put(value ? (byte) 1 : (byte) 0);
+                }
+            }
+            return data;
+        }
+
+        private static void read(ModelUM parser, byte[] data, ModelUMResult result)
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.position(4);
+            boolean found = buffer.get() != 0;
+            int month = buffer.getInt();
+            int day = buffer.getInt();
+            parser.setDate(result, found, month, day, buffer.getDouble());
+            result.temperature_precision = buffer.getDouble();
+            result.temperature_row0 = buffer.getDouble();
+            result.pressure_row0_hPa = buffer.getDouble();
+            result.pressure_precision_hPa = buffer.getDouble();
+            for (double[] series : doubles(result))
+            {
+                buffer.asDoubleBuffer().get(series);
+                buffer.position(buffer.position() + series.length * 8);
+            }
+            for (boolean[] series : booleans(result))
+            {
+                for (int i = 0; i < series.length; i++)
+                {
+                    series[i] = buffer.get() != 0;
+                }
+            }
+
+            result.pixels = null;
+            result.summary = null;
+            result.temperatureIndexed = false; // values only, chart planes are not cached
+            result.pressureIndexed = false;
+            result.temperatureScaleParsed = true;
+            result.temperatureParsed = true;
+            result.pressureParsed = true;
+            result.otherParsed = true;
+            result.dateParsed = true;
+        }
+    }
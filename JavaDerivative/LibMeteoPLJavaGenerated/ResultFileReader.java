@@ -0,0 +1,248 @@
+package com.pgssoft.meteopllibrary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+Reads files written by ResultFileWriter through memory mapping: a sample, series or scale of one
+record is read straight from the mapped file, nothing else of the file is touched.
+
+File is mapped once when opened, in chunks of whole records below 2 GB each, so files of any
+size can be read. Records are counted from file size: a record cut short (writer killed while
+appending) is not seen. Layout is taken from file header, so files with other chart width or
+set of series of this version are read as well. Reader may be used by many threads at once.
+*/
+public final class ResultFileReader implements Closeable
+    {
+        private final FileChannel channel;
+        private final int width;
+        private final int[] types;
+        private final int recordSize;
+        private final int columnSize;
+        private final int words;
+        private final long records;
+        private final int recordsPerChunk;
+        private final ByteBuffer[] chunks;
+
+        public ResultFileReader(Path file) throws IOException
+        {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try
+            {
+                ByteBuffer head = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(head, 0);
+                if (head.getInt(0) != ResultFileWriter.MAGIC)
+                {
+                    throw new IOException("Not a meteogram result file: " + file);
+                }
+                if (head.getInt(4) != ResultFileWriter.VERSION)
+                {
+                    throw new IOException("Unsupported result file version " + head.getInt(4) + ": " + file);
+                }
+                width = head.getInt(8);
+                int series = head.getInt(12);
+                if (width <= 0 || series <= 0 || series > 1024)
+                {
+                    throw new IOException("Broken result file header: " + file);
+                }
+                int headerSize = ResultFileWriter.headerSize(series);
+                ByteBuffer typeTable = ByteBuffer.allocate(4 * series).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(typeTable, 16);
+                types = new int[series];
+                for (int i = 0; i < series; i++)
+                {
+                    types[i] = typeTable.getInt(4 * i);
+                }
+
+                recordSize = ResultFileWriter.recordSize(width, series);
+                columnSize = ResultFileWriter.columnSize(width);
+                words = RowClassifier.words(width);
+                records = Math.max(0, channel.size() - headerSize) / recordSize;
+                recordsPerChunk = (Integer.MAX_VALUE - 8) / recordSize;
+                chunks = new ByteBuffer[(int)((records + recordsPerChunk - 1) / recordsPerChunk)];
+                for (int i = 0; i < chunks.length; i++)
+                {
+                    long first = (long) i * recordsPerChunk;
+                    long count = Math.min(recordsPerChunk, records - first);
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + first * recordSize, count * recordSize);
+                    chunks[i] = chunk.order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public long getRecordCount()
+        {
+            return records;
+        }
+
+        // samples in each series
+        public int getWidth()
+        {
+            return width;
+        }
+
+        // TYPE_* of series held, in file order
+        public int[] getTypes()
+        {
+            return types.clone();
+        }
+
+        public boolean hasSeries(int type)
+        {
+            return column(type) >= 0;
+        }
+
+        /*
+        time of first chart column of record
+        */
+        public long getTimestamp(long record)
+        {
+            return chunk(record).getLong(base(record));
+        }
+
+        /*
+        ModelUM.getPrecision() of given category in record
+        */
+        public double getPrecision(long record, int type)
+        {
+            boolean pressure = type == ModelUM.TYPE_PRESSURE_HPA || type == ModelUM.TYPE_PRESSURE_MMHG;
+            return chunk(record).getDouble(base(record) + (pressure ? 24 : 8));
+        }
+
+        /*
+        value of row 0 of temperature or pressure (hPa) scale of record
+        */
+        public double getRow0(long record, int type)
+        {
+            boolean pressure = type == ModelUM.TYPE_PRESSURE_HPA || type == ModelUM.TYPE_PRESSURE_MMHG;
+            return chunk(record).getDouble(base(record) + (pressure ? 32 : 16));
+        }
+
+        /*
+        sample x of series of given type in record
+        */
+        public double getSample(long record, int type, int x)
+        {
+            if (x < 0 || x >= width)
+            {
+                throw new IndexOutOfBoundsException("Sample " + x + " of " + width);
+            }
+            return chunk(record).getFloat(columnBase(record, type) + 8 * words + 4 * x);
+        }
+
+        /*
+        series of given type in record written to into, which must hold getWidth() values; returns into
+        */
+        public double[] getSamples(long record, int type, double[] into)
+        {
+            ByteBuffer chunk = chunk(record);
+            int samples = columnBase(record, type) + 8 * words;
+            for (int x = 0; x < width; x++)
+            {
+                into[x] = chunk.getFloat(samples + 4 * x);
+            }
+            return into;
+        }
+
+        /*
+        true when sample x of series of given type in record is NOVALUE (or -NOVALUE)
+        */
+        public boolean isMissing(long record, int type, int x)
+        {
+            if (x < 0 || x >= width)
+            {
+                throw new IndexOutOfBoundsException("Sample " + x + " of " + width);
+            }
+            return (chunk(record).getLong(columnBase(record, type) + 8 * (x >>> 6)) & (1L << x)) != 0;
+        }
+
+        /*
+        NOVALUE bitmap of series of given type in record written to into, (getWidth() + 63) / 64 words; returns into
+        */
+        public long[] getMissing(long record, int type, long[] into)
+        {
+            ByteBuffer chunk = chunk(record);
+            int bitmap = columnBase(record, type);
+            for (int w = 0; w < words; w++)
+            {
+                into[w] = chunk.getLong(bitmap + 8 * w);
+            }
+            return into;
+        }
+
+        /*
+        closes file; mapped records stay readable until reader is garbage collected
+        */
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+
+        /*
+        raw bytes of record, for ResultFileWriter.write(ResultFileReader, long)
+        */
+        void copyRecord(long record, byte[] into)
+        {
+            ByteBuffer chunk = chunk(record).duplicate();
+            chunk.position(base(record));
+            chunk.get(into, 0, recordSize);
+        }
+
+        private ByteBuffer chunk(long record)
+        {
+            if (record < 0 || record >= records)
+            {
+                throw new IndexOutOfBoundsException("Record " + record + " of " + records);
+            }
+            return chunks[(int)(record / recordsPerChunk)];
+        }
+
+        private int base(long record)
+        {
+            return (int)(record % recordsPerChunk) * recordSize;
+        }
+
+        private int columnBase(long record, int type)
+        {
+            int column = column(type);
+            if (column < 0)
+            {
+                throw new IllegalArgumentException("No series of type " + type);
+            }
+            return base(record) + ResultFileWriter.RECORD_HEADER + column * columnSize;
+        }
+
+        private int column(int type)
+        {
+            for (int i = 0; i < types.length; i++)
+            {
+                if (types[i] == type)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException
+        {
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                {
+                    throw new IOException("Result file too short");
+                }
+            }
+        }
+    }
@@ -0,0 +1,149 @@
+package com.pgssoft.meteopllibrary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+Writes parsed meteograms to a columnar binary file, read back with ResultFileReader.
+
+File is a header followed by records of fixed size, one per meteogram, so record n of a file
+is found without reading others. Little endian, layout (version 1):
+
+  header   int magic "UMCF", int version, int samples per series, int number of series,
+           int TYPE_* of each series, zero padding to a multiple of 8 bytes
+  record   long timestamp (of first chart column), double temperature precision,
+           double temperature row0, double pressure precision (hPa), double pressure row0 (hPa),
+           then one column per series: NOVALUE bitmap (long words, bit x set where sample x
+           is NOVALUE or -NOVALUE), samples as floats, zero padding to a multiple of 8 bytes
+
+Floats keep 7 significant digits, far more than precision of chart. Writer streams records as
+they come, appending to a stream that already holds a file is left to caller (see
+ResultFileReader for a file cut short by a crash).
+*/
+public final class ResultFileWriter implements Closeable
+    {
+        static final int MAGIC = 0x46434d55; // "UMCF" in little endian
+        static final int VERSION = 1;
+        static final int RECORD_HEADER = 8 + 4 * 8;
+        // series written, in order
+        static final int[] TYPES = new int[] {
+            ModelUM.TYPE_TEMPERATURE, ModelUM.TYPE_TEMPERATURE_MIN, ModelUM.TYPE_TEMPERATURE_MAX,
+            ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX,
+            ModelUM.TYPE_PRESSURE_HPA, ModelUM.TYPE_PRESSURE_MMHG, ModelUM.TYPE_DAYNIGHT };
+
+        private final OutputStream out;
+        private final byte[] record = new byte[recordSize(ModelUM.CHART_WIDTH, TYPES.length)];
+        private final ByteBuffer buffer = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        private long records;
+
+        /*
+        start file on given stream, header is written here; stream is closed by close()
+        */
+        public ResultFileWriter(OutputStream out) throws IOException
+        {
+            this.out = out;
+            ByteBuffer header = ByteBuffer.allocate(headerSize(TYPES.length)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(ModelUM.CHART_WIDTH);
+            header.putInt(TYPES.length);
+            for (int type : TYPES)
+            {
+                header.putInt(type);
+            }
+            out.write(header.array());
+        }
+
+        /*
+        append record of fully parsed result; nothing is allocated
+        */
+        public void write(ModelUMResult result) throws IOException
+        {
+            if (!result.temperatureParsed || !result.pressureParsed || !result.otherParsed || !result.dateParsed)
+            {
+                throw new IllegalArgumentException("Result is not fully parsed");
+            }
+            buffer.clear();
+            buffer.putLong(result.timestamp);
+            buffer.putDouble(result.temperature_precision);
+            buffer.putDouble(result.temperature_row0);
+            buffer.putDouble(result.pressure_precision_hPa);
+            buffer.putDouble(result.pressure_row0_hPa);
+            int words = RowClassifier.words(ModelUM.CHART_WIDTH);
+            for (int type : TYPES)
+            {
+                double[] samples = result.getSamples(type);
+                for (int w = 0; w < words; w++)
+                {
+                    long bits = 0;
+                    for (int x = w << 6; x < Math.min((w + 1) << 6, samples.length); x++)
+                    {
+                        if (samples[x] == ModelUM.NOVALUE || samples[x] == -ModelUM.NOVALUE)
+                        {
+                            bits |= 1L << x;
+                        }
+                    }
+                    buffer.putLong(bits);
+                }
+                for (double sample : samples)
+                {
+                    buffer.putFloat((float) sample);
+                }
+                while ((buffer.position() & 7) != 0)
+                {
+                    buffer.put((byte) 0);
+                }
+            }
+            out.write(record);
+            records++;
+        }
+
+        /*
+        append record of another file of this layout as it is, without decoding it
+        */
+        void write(ResultFileReader file, long record) throws IOException
+        {
+            if (file.getWidth() != ModelUM.CHART_WIDTH || !Arrays.equals(file.getTypes(), TYPES))
+            {
+                throw new IOException("Result file of other layout");
+            }
+            file.copyRecord(record, this.record);
+            out.write(this.record);
+            records++;
+        }
+
+        // records written so far
+        public long getRecordCount()
+        {
+            return records;
+        }
+
+        public void flush() throws IOException
+        {
+            out.flush();
+        }
+
+        public void close() throws IOException
+        {
+            out.close();
+        }
+
+        static int headerSize(int series)
+        {
+            return (16 + 4 * series + 7) & ~7;
+        }
+
+        static int columnSize(int width)
+        {
+            return 8 * RowClassifier.words(width) + ((4 * width + 7) & ~7);
+        }
+
+        static int recordSize(int width, int series)
+        {
+            return RECORD_HEADER + series * columnSize(width);
+        }
+    }
@@ -0,0 +1,355 @@
+package com.pgssoft.meteopllibrary;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+Writes parsed meteograms as CSV or JSON text, straight to a stream or channel.
+
+Numbers are formatted by hand into one reused byte buffer, with fixed number of decimals and '.'
+as separator whatever the locale, so nothing is allocated per value or per meteogram; buffer is
+written out when nearly full, by flush() and by close(). Samples NOVALUE or -NOVALUE (and NaN,
+infinite or too large values) are written as empty CSV field or JSON null. Text is ASCII.
+
+  CSV   header line, then a line per chart column of each meteogram:
+        point,timestamp,<series>...,temperature_precision,pressure_precision
+  JSON  an object per line (JSON Lines) per meteogram:
+        {"point":..,"timestamp":..,"temperature_precision":..,"pressure_precision":..,
+         "timestamps":[..],"<series>":[..],...}
+
+Series are those of ResultFileWriter (temperatures with minimum and maximum, pressure in hPa and
+mm Hg, day/night); point is any id given by caller, e.g. ForecastStore.point(row, col).
+Scale precision is written with PRECISION_DECIMALS decimals.
+*/
+public final class ResultTextWriter implements Closeable, Flushable
+    {
+        public static final int FORMAT_CSV = 0;
+        public static final int FORMAT_JSON = 1;
+
+        static final int MAX_DECIMALS = 6;
+        static final int PRECISION_DECIMALS = 6;
+        static final int BUFFER_SIZE = 64 * 1024;
+        // longest line part written between checks of free space: JSON value or CSV line
+        private static final int RESERVE = 1024;
+        // largest magnitude written, so that value scaled by decimals fits long
+        private static final double MAX_VALUE = 1e12;
+        private static final long[] POWERS = new long[] { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+
+        private static final String[] NAMES = new String[] {
+            "temperature", "temperature_min", "temperature_max",
+            "temperature_perceptible", "temperature_perceptible_min", "temperature_perceptible_max",
+            "pressure_hpa", "pressure_mmhg", "daynight" };
+
+        private static final byte[] CSV_HEADER = csvHeader();
+        private static final byte[][] JSON_KEYS = jsonKeys();
+        private static final byte[] JSON_POINT = ascii("{\"point\":");
+        private static final byte[] JSON_TIMESTAMP = ascii(",\"timestamp\":");
+        private static final byte[] JSON_TEMPERATURE_PRECISION = ascii(",\"temperature_precision\":");
+        private static final byte[] JSON_PRESSURE_PRECISION = ascii(",\"pressure_precision\":");
+        private static final byte[] JSON_TIMESTAMPS = ascii(",\"timestamps\":[");
+        private static final byte[] NULL = ascii("null");
+
+        private final OutputStream out;
+        private final WritableByteChannel channel;
+        private final int format;
+        private final int decimals;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        private int position;
+
+        /*
+        writer of given FORMAT_* to stream, values with given number of decimals (0 ... MAX_DECIMALS);
+        stream is closed by close()
+        */
+        public ResultTextWriter(OutputStream out, int format, int decimals)
+        {
+            this(out, null, format, decimals);
+        }
+
+        public ResultTextWriter(WritableByteChannel channel, int format, int decimals)
+        {
+            this(null, channel, format, decimals);
+        }
+
+        private ResultTextWriter(OutputStream out, WritableByteChannel channel, int format, int decimals)
+        {
+            if (format != FORMAT_CSV && format != FORMAT_JSON)
+            {
+                throw new IllegalArgumentException("Unknown format " + format);
+            }
+            if (decimals < 0 || decimals > MAX_DECIMALS)
+            {
+                throw new IllegalArgumentException("Decimals must be 0 ... " + MAX_DECIMALS);
+            }
+            this.out = out;
+            this.channel = channel;
+            this.format = format;
+            this.decimals = decimals;
+            if (format == FORMAT_CSV)
+            {
+                put(CSV_HEADER);
+            }
+        }
+
+        /*
+        write fully parsed result of given point
+        */
+        public void write(long point, ModelUMResult result) throws IOException
+        {
+            if (!result.temperatureParsed || !result.pressureParsed || !result.otherParsed || !result.dateParsed)
+            {
+                throw new IllegalArgumentException("Result is not fully parsed");
+            }
+            if (format == FORMAT_CSV)
+            {
+                writeCsv(point, result);
+            }
+            else
+            {
+                writeJson(point, result);
+            }
+        }
+
+        private void writeCsv(long point, ModelUMResult result) throws IOException
+        {
+            int[] types = ResultFileWriter.TYPES;
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++)
+            {
+                reserve();
+                putLong(point);
+                put((byte) ',');
+                putLong(result.getTimestamp(x));
+                for (int type : types)
+                {
+                    put((byte) ',');
+                    putCsv(result.getSamples(type)[x], decimals);
+                }
+                put((byte) ',');
+                putCsv(result.temperature_precision, PRECISION_DECIMALS);
+                put((byte) ',');
+                putCsv(result.pressure_precision_hPa, PRECISION_DECIMALS);
+                put((byte) '\n');
+            }
+        }
+
+        private void writeJson(long point, ModelUMResult result) throws IOException
+        {
+            reserve();
+            put(JSON_POINT);
+            putLong(point);
+            put(JSON_TIMESTAMP);
+            putLong(result.timestamp);
+            put(JSON_TEMPERATURE_PRECISION);
+            putJson(result.temperature_precision, PRECISION_DECIMALS);
+            put(JSON_PRESSURE_PRECISION);
+            putJson(result.pressure_precision_hPa, PRECISION_DECIMALS);
+            put(JSON_TIMESTAMPS);
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++)
+            {
+                reserve();
+                if (x > 0)
+                {
+                    put((byte) ',');
+                }
+                putLong(result.getTimestamp(x));
+            }
+            put((byte) ']');
+            int[] types = ResultFileWriter.TYPES;
+            for (int i = 0; i < types.length; i++)
+            {
+                reserve();
+                put(JSON_KEYS[i]);
+                double[] samples = result.getSamples(types[i]);
+                for (int x = 0; x < samples.length; x++)
+                {
+                    reserve();
+                    if (x > 0)
+                    {
+                        put((byte) ',');
+                    }
+                    putJson(samples[x], decimals);
+                }
+                put((byte) ']');
+            }
+            put((byte) '}');
+            put((byte) '\n');
+        }
+
+        /*
+        write out text buffered so far and flush target stream
+        */
+        public void flush() throws IOException
+        {
+            drain();
+            if (out != null)
+            {
+                out.flush();
+            }
+        }
+
+        public void close() throws IOException
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                if (out != null)
+                {
+                    out.close();
+                }
+                else
+                {
+                    channel.close();
+                }
+            }
+        }
+
+        private void reserve() throws IOException
+        {
+            if (position > buffer.length - RESERVE)
+            {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException
+        {
+            if (out != null)
+            {
+                out.write(buffer, 0, position);
+            }
+            else
+            {
+                wrapped.clear();
+                wrapped.limit(position);
+                while (wrapped.hasRemaining())
+                {
+                    channel.write(wrapped);
+                }
+            }
+            position = 0;
+        }
+
+        private void put(byte b)
+        {
+            buffer[position++] = b;
+        }
+
+        private void put(byte[] bytes)
+        {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void putCsv(double value, int decimals)
+        {
+            if (!isMissing(value))
+            {
+                putFixed(value, decimals);
+            }
+        }
+
+        private void putJson(double value, int decimals)
+        {
+            if (isMissing(value))
+            {
+                put(NULL);
+            }
+            else
+            {
+                putFixed(value, decimals);
+            }
+        }
+
+        /*
+        value rounded half up to given decimals, no minus sign for values rounded to 0
+        */
+        private void putFixed(double value, int decimals)
+        {
+            long scaled = Math.round(Math.abs(value) * POWERS[decimals]);
+            if (value < 0 && scaled != 0)
+            {
+                put((byte) '-');
+            }
+            putDigits(scaled / POWERS[decimals], 1);
+            if (decimals > 0)
+            {
+                put((byte) '.');
+                putDigits(scaled % POWERS[decimals], decimals);
+            }
+        }
+
+        private void putLong(long value)
+        {
+            if (value < 0)
+            {
+                put((byte) '-');
+                if (value == Long.MIN_VALUE)
+                {
+                    put((byte) '9'); // -9223372036854775808
+                    value = -(value + 9000000000000000000L);
+                    putDigits(value, 18);
+                    return;
+                }
+                value = -value;
+            }
+            putDigits(value, 1);
+        }
+
+        /*
+        non-negative value in decimal, left padded with zeros to at least given width
+        */
+        private void putDigits(long value, int width)
+        {
+            int length = 1;
+            for (long rest = value / 10; rest != 0; rest /= 10)
+            {
+                length++;
+            }
+            length = Math.max(length, width);
+            for (int i = position + length - 1; i >= position; i--)
+            {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += length;
+        }
+
+        private static boolean isMissing(double value)
+        {
+            return value == ModelUM.NOVALUE || value == -ModelUM.NOVALUE || !(Math.abs(value) < MAX_VALUE);
+        }
+
+        private static byte[] csvHeader()
+        {
+            StringBuilder header = new StringBuilder("point,timestamp");
+            for (String name : NAMES)
+            {
+                header.append(',').append(name);
+            }
+            header.append(",temperature_precision,pressure_precision\n");
+            return ascii(header.toString());
+        }
+
+        private static byte[][] jsonKeys()
+        {
+            byte[][] keys = new byte[NAMES.length][];
+            for (int i = 0; i < NAMES.length; i++)
+            {
+                keys[i] = ascii(",\"" + NAMES[i] + "\":[");
+            }
+            return keys;
+        }
+
+        private static byte[] ascii(String text)
+        {
+            return text.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
@@ -0,0 +1,63 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Classifies pixels of a chart row by color key, many pixels at once.
+
+Result of classify() is one bit plane per key: bit x of plane k is set where pixel (x0 + x, y)
+has key keys[first + k]; plane k takes words k * words(width) ... (k + 1) * words(width) - 1 of hits.
+ModelUM then visits set bits only, charts are mostly background.
+
+Implementation is RowClassifierVector, built on jdk.incubator.vector; it is used only when that
+module is in boot layer (java --add-modules jdk.incubator.vector) and not disabled with
+-Dlibmeteopl.vector=false. Without it, or for pixel layouts it cannot read, ModelUM scans rows
+with scalar code.
+*/
+abstract class RowClassifier
+    {
+        private static final RowClassifier VECTOR = loadVector();
+
+        /*
+        classifier able to read given source with given keys, null when scalar code must be used
+        */
+        static RowClassifier of(PixelSource pixels, int[] keys)
+        {
+            if (VECTOR != null && VECTOR.supports(pixels, keys))
+            {
+                return VECTOR;
+            }
+            return null;
+        }
+
+        static boolean isVectorAvailable()
+        {
+            return VECTOR != null;
+        }
+
+        static int words(int width)
+        {
+            return (width + 63) >>> 6;
+        }
+
+        abstract boolean supports(PixelSource pixels, int[] keys);
+
+        abstract void classify(PixelSource pixels, int x0, int y, int width, int[] keys, int first, int count, long[] hits);
+
+        private static RowClassifier loadVector()
+        {
+            if (!Boolean.parseBoolean(System.getProperty("libmeteopl.vector", "true")) ||
+                !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            {
+                return null;
+            }
+            try
+            {
+                // loaded by name, so that scalar code never links against the incubator module
+                return (RowClassifier) Class.forName("com.pgssoft.meteopllibrary.RowClassifierVector")
+                    .getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | LinkageError e)
+            {
+                return null;
+            }
+        }
+    }
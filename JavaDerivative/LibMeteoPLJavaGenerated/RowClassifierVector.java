@@ -0,0 +1,173 @@
+package com.pgssoft.meteopllibrary;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+RowClassifier comparing a vector of pixels with a key at once, for int RGB arrays
+(PixelSource.ofRGB(), TYPE_INT_RGB rasters) and palette indices (PixelSource.ofIndexed(),
+8 bit palette images) - a row of these is a plain run of array elements.
+
+Chart rows are mostly background, so a vector is first only tested for any pixel of the key;
+bits of vectors holding some are then made with lane arithmetic: VectorMask.toLong() would
+give them directly, but Java 17 does not compile it to machine code and boxes every mask.
+Each key gets its own pass over row, Java 17 does not keep a vector in register across
+several keys. Vector lengths divide 64, so a vector never crosses a word of bit plane.
+Do not reference this class directly, see RowClassifier.
+*/
+final class RowClassifierVector extends RowClassifier
+    {
+        private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+        private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+        private static final VectorSpecies<Long> BYTES_AS_LONGS = LongVector.SPECIES_PREFERRED.withShape(BYTES.vectorShape());
+        // bit of each int lane, and position of each 8 byte group in word
+        private static final IntVector LANE_BITS = IntVector.fromArray(INTS, laneBits(), 0);
+        private static final LongVector GROUP_SHIFTS = LongVector.fromArray(BYTES_AS_LONGS, groupShifts(), 0);
+
+        @Override
+        boolean supports(PixelSource pixels, int[] keys)
+        {
+            if (64 % INTS.length() != 0 || INTS.length() > 32 ||
+                64 % BYTES.length() != 0 || BYTES.length() < 8)
+            {
+                return false;
+            }
+            if (pixels instanceof PixelSource.IntRGB || pixels instanceof PixelSource.Indexed)
+            {
+                return true;
+            }
+            if (pixels instanceof PixelSource.IndexedRemapped)
+            {
+                // indices are compared, so every key must be the only index of its color
+                int[] remap = ((PixelSource.IndexedRemapped) pixels).keys;
+                for (int key : keys)
+                {
+                    for (int i = 0; key >= 0 && i < remap.length; i++)
+                    {
+                        if (remap[i] == key && i != key)
+                        {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void classify(PixelSource pixels, int x0, int y, int width, int[] keys, int first, int count, long[] hits)
+        {
+            int words = words(width);
+            for (int i = 0; i < count * words; i++)
+            {
+                hits[i] = 0;
+            }
+
+            if (pixels instanceof PixelSource.IntRGB)
+            {
+                PixelSource.IntRGB source = (PixelSource.IntRGB) pixels;
+                classifyInts(source.data, source.offset + y * source.scanline + x0, width, keys, first, count, hits, words);
+            }
+            else if (pixels instanceof PixelSource.Indexed)
+            {
+                PixelSource.Indexed source = (PixelSource.Indexed) pixels;
+                classifyBytes(source.data, source.offset + y * source.scanline + x0, width, keys, first, count, hits, words);
+            }
+            else
+            {
+                PixelSource.IndexedRemapped source = (PixelSource.IndexedRemapped) pixels;
+                classifyBytes(source.data, source.offset + y * source.scanline + x0, width, keys, first, count, hits, words);
+            }
+        }
+
+        private static void classifyInts(int[] data, int base, int width, int[] keys, int first, int count, long[] hits, int words)
+        {
+            int step = INTS.length();
+            long laneMask = (1L << step) - 1;
+            for (int k = 0; k < count; k++)
+            {
+                int key = keys[first + k];
+                int plane = k * words;
+                int x = 0;
+                for (; x + step <= width; x += step)
+                {
+                    VectorMask<Integer> equal = IntVector.fromArray(INTS, data, base + x).and(0xffffff).eq(key);
+                    if (equal.anyTrue())
+                    {
+                        long bits = IntVector.zero(INTS).blend(LANE_BITS, equal).reduceLanes(VectorOperators.OR) & laneMask;
+                        hits[plane + (x >>> 6)] |= bits << x;
+                    }
+                }
+                for (; x < width; x++)
+                {
+                    if ((data[base + x] & 0xffffff) == key)
+                    {
+                        hits[plane + (x >>> 6)] |= 1L << x;
+                    }
+                }
+            }
+        }
+
+        private static void classifyBytes(byte[] data, int base, int width, int[] keys, int first, int count, long[] hits, int words)
+        {
+            int step = BYTES.length();
+            for (int k = 0; k < count; k++)
+            {
+                int key = keys[first + k];
+                if (key < 0)
+                {
+                    continue; // color not in palette
+                }
+                int plane = k * words;
+                int x = 0;
+                for (; x + step <= width; x += step)
+                {
+                    VectorMask<Byte> equal = ByteVector.fromArray(BYTES, data, base + x).eq((byte) key);
+                    if (equal.anyTrue())
+                    {
+                        // every 8 bytes of 0 / -1 to one byte of bits: keep bit i of byte i, add bytes up
+                        // in top byte with multiplication, then place the groups side by side
+                        long bits = ByteVector.zero(BYTES).blend((byte) -1, equal).reinterpretAsLongs()
+                            .and(0x8040201008040201L)
+                            .lanewise(VectorOperators.MUL, 0x0101010101010101L)
+                            .lanewise(VectorOperators.LSHR, 56)
+                            .lanewise(VectorOperators.LSHL, GROUP_SHIFTS)
+                            .reduceLanes(VectorOperators.OR);
+                        hits[plane + (x >>> 6)] |= bits << x;
+                    }
+                }
+                for (; x < width; x++)
+                {
+                    if ((data[base + x] & 0xff) == key)
+                    {
+                        hits[plane + (x >>> 6)] |= 1L << x;
+                    }
+                }
+            }
+        }
+
+        private static int[] laneBits()
+        {
+            int[] bits = new int[INTS.length()];
+            for (int i = 0; i < bits.length; i++)
+            {
+                bits[i] = 1 << i;
+            }
+            return bits;
+        }
+
+        private static long[] groupShifts()
+        {
+            long[] shifts = new long[BYTES_AS_LONGS.length()];
+            for (int i = 0; i < shifts.length; i++)
+            {
+                shifts[i] = 8 * i;
+            }
+            return shifts;
+        }
+    }
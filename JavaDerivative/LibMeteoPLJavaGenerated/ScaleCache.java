@@ -0,0 +1,183 @@
+package com.pgssoft.meteopllibrary;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Bounded cache of axis scales read by ModelUM, shared by all parses of one parser.
+
+Meteograms of one model run use few distinct axis scales, so the OCR of scale labels is mostly
+repeated work. Key of a scale is the ink of its label band - the columns where ModelUM reads label
+digits, over all rows it tries - as one long per row with bit set where pixel is black; when the
+same bitmap was seen before, labels read from it then are given back and OCR is skipped. Bitmaps
+are compared in full, hash only picks the slot, so a hit always gives what OCR would read.
+
+Cache holds up to given number of scales; slot of a new one is picked by hash, among a few
+neighbouring slots an empty one is taken first, otherwise the first one is replaced. Lookups
+and inserts may run in many threads at once, entries are immutable.
+*/
+public final class ScaleCache
+    {
+        private static final int WAYS = 4; // slots checked for each hash
+        private static final long HASH = 0x9E3779B97F4A7C15L;
+
+        /*
+        labels read from one band: first and last row with a label and values of the labels
+        */
+        static final int LABEL_START = 0;
+        static final int LABEL_START_VALUE = 1;
+        static final int LABEL_END = 2;
+        static final int LABEL_END_VALUE = 3;
+        static final int LABELS = 4;
+
+        private static final class Entry
+            {
+                final int x;
+                final int y;
+                final int hash;
+                final long[] band;
+                final int[] labels;
+
+                Entry(int x, int y, int hash, long[] band, int[] labels)
+                {
+                    this.x = x;
+                    this.y = y;
+                    this.hash = hash;
+                    this.band = band;
+                    this.labels = labels;
+                }
+            }
+
+        private final AtomicReferenceArray<Entry> slots;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public ScaleCache(int capacity)
+        {
+            if (capacity < 1)
+            {
+                throw new IllegalArgumentException("Capacity must be positive");
+            }
+            this.slots = new AtomicReferenceArray<Entry>(capacity);
+        }
+
+        public int getCapacity()
+        {
+            return slots.length();
+        }
+
+        // lookups answered from cache
+        public long getHits()
+        {
+            return hits.sum();
+        }
+
+        // lookups that needed OCR
+        public long getMisses()
+        {
+            return misses.sum();
+        }
+
+        // number of scales held
+        public int size()
+        {
+            int size = 0;
+            for (int i = 0; i < slots.length(); i++)
+            {
+                if (slots.get(i) != null)
+                {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        // forget all scales, counters are kept
+        public void clear()
+        {
+            for (int i = 0; i < slots.length(); i++)
+            {
+                slots.set(i, null);
+            }
+        }
+
+        /*
+        band of rows at (x, y), bit x' of row y' set where pixel (x + x', y + y') has label color
+        (see TextBand.lines); if the same band is cached, copy its labels into labels and return true
+        */
+        boolean find(int x, int y, long[] band, int[] labels)
+        {
+            int hash = hash(x, y, band);
+            int slot = slot(hash);
+            for (int i = 0; i < WAYS; i++)
+            {
+                Entry entry = slots.get((slot + i) % slots.length());
+                if (entry != null && matches(entry, x, y, hash, band))
+                {
+                    System.arraycopy(entry.labels, 0, labels, 0, LABELS);
+                    hits.increment();
+                    return true;
+                }
+            }
+            misses.increment();
+            return false;
+        }
+
+        /*
+        cache labels read by OCR from band filled by last find() at (x, y)
+        */
+        void add(int x, int y, long[] band, int[] labels)
+        {
+            int hash = hash(x, y, band);
+            Entry entry = new Entry(x, y, hash, band.clone(), labels.clone());
+            int slot = slot(hash);
+            for (int i = 0; i < WAYS; i++)
+            {
+                int index = (slot + i) % slots.length();
+                Entry old = slots.get(index);
+                if (old == null)
+                {
+                    if (slots.compareAndSet(index, null, entry))
+                    {
+                        return;
+                    }
+                }
+                else if (matches(old, x, y, hash, band))
+                {
+                    return; // added by another thread meanwhile
+                }
+            }
+            slots.set(slot, entry);
+        }
+
+        private int slot(int hash)
+        {
+            return (int)((hash & 0xffffffffL) % slots.length());
+        }
+
+        private static boolean matches(Entry entry, int x, int y, int hash, long[] band)
+        {
+            if (entry.hash != hash || entry.x != x || entry.y != y || entry.band.length != band.length)
+            {
+                return false;
+            }
+            for (int row = 0; row < band.length; row++)
+            {
+                if (entry.band[row] != band[row])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(int x, int y, long[] band)
+        {
+            long h = x * 31L + y;
+            for (long bits : band)
+            {
+                h = (h ^ bits) * HASH;
+            }
+            return (int)(h ^ (h >>> 32));
+        }
+    }
@@ -0,0 +1,213 @@
+package com.pgssoft.meteopllibrary;
+
+import java.util.Arrays;
+
+/*
+Ink of one band of text - a row of date or time glyphs, a column of axis labels - projected onto
+lines, so that OCR runs only where a glyph may start.
+
+Band is read into lines of ink: one long per line with bit set where pixel has the text color,
+lines being columns of a row of text (bits are rows) or rows of a column of labels (bits are
+columns). Lines are the projection profile of the band, a line has glyph ink where it has any of
+glyph bits given to constructor: rows of glyph cell without its last row, which only 9 pixel high
+templates have, or the columns of one cell of a label.
+
+A glyph cell matches a template only when its first line with glyph ink is one of the lines
+templates start at (ModelUM.GLYPH_START_COLUMNS or GLYPH_START_ROWS, counted from the cell), so
+startsGlyph() tells exactly at which positions OCR can give a digit, and glyph() packs the cell
+from lines instead of pixels. Text readers stop at the first label they find, so a band opened
+by start() is read READ_AHEAD lines at a time as positions are asked for; build() reads it whole.
+
+Label bands are also keys of ScaleCache. Band is reused from image to image and allocates
+nothing after construction.
+*/
+final class TextBand
+    {
+        static final int READ_AHEAD = 32;
+
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        final boolean byRows; // lines are rows, otherwise columns
+        final long[] lines;
+        private final long glyphBits; // bits of a line counted as glyph ink
+        private final int starts; // bit o set when a template starts o lines into its cell
+        private final int reach; // lines after position that tell whether a glyph starts there
+
+        // source of band between start() and finish(), lines read so far
+        private PixelSource pixels;
+        private int pixelKey;
+        private int read;
+
+        // glyph cells packed by glyph(), counted only while ParseMetrics measures a parse
+        boolean counting;
+        int probes;
+
+        TextBand(int x, int y, int width, int height, boolean byRows, long glyphBits, int starts)
+        {
+            if ((byRows ? width : height) > 64)
+            {
+                throw new IllegalArgumentException("Band is too thick");
+            }
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.byRows = byRows;
+            this.lines = new long[byRows ? height : width];
+            this.glyphBits = glyphBits;
+            this.starts = starts;
+            this.reach = 32 - Integer.numberOfLeadingZeros(starts);
+        }
+
+        /*
+        read whole band from image, pixels of given color key
+        */
+        void build(PixelSource pixels, int pixelKey)
+        {
+            start(pixels, pixelKey);
+            readTo(lines.length);
+            finish();
+        }
+
+        /*
+        start band of image, read as needed until finish()
+        */
+        void start(PixelSource pixels, int pixelKey)
+        {
+            this.pixels = pixels;
+            this.pixelKey = pixelKey;
+            this.read = 0;
+        }
+
+        // image is not kept after band is read
+        void finish()
+        {
+            pixels = null;
+        }
+
+        /*
+        read lines up to end, at least READ_AHEAD of them; one pass over their pixels, row by row
+        */
+        private void readTo(int end)
+        {
+            if (end <= read)
+            {
+                return;
+            }
+            end = Math.min(lines.length, Math.max(end, read + READ_AHEAD));
+            if (byRows)
+            {
+                for (int row = read; row < end; row++)
+                {
+                    long bits = 0;
+                    for (int col = 0; col < width; col++)
+                    {
+                        if (pixels.getKey(x + col, y + row) == pixelKey)
+                        {
+                            bits |= 1L << col;
+                        }
+                    }
+                    lines[row] = bits;
+                }
+            }
+            else
+            {
+                Arrays.fill(lines, read, end, 0);
+                for (int row = 0; row < height; row++)
+                {
+                    long bit = 1L << row;
+                    for (int col = read; col < end; col++)
+                    {
+                        if (pixels.getKey(x + col, y + row) == pixelKey)
+                        {
+                            lines[col] |= bit;
+                        }
+                    }
+                }
+            }
+            read = end;
+        }
+
+        // first line of band, along lines
+        private int origin()
+        {
+            return byRows ? y : x;
+        }
+
+        /*
+        true when a template may match cell starting at given row (band of rows) or column (band of columns)
+        */
+        boolean startsGlyph(int position)
+        {
+            return startsAt(position - origin());
+        }
+
+        /*
+        first position from given one where startsGlyph(), end of band when none
+        */
+        int nextStart(int from)
+        {
+            int line = from - origin();
+            while (line < lines.length && !startsAt(line))
+            {
+                line++;
+            }
+            return origin() + line;
+        }
+
+        private boolean startsAt(int line)
+        {
+            int end = Math.min(line + reach, lines.length);
+            readTo(end);
+            for (int ink = line; ink < end; ink++)
+            {
+                if ((lines[ink] & glyphBits) != 0)
+                {
+                    return ((starts >>> (ink - line)) & 1) != 0;
+                }
+            }
+            return false;
+        }
+
+        /*
+        glyph cell of DIGIT_WIDTH x GLYPH_MAX_HEIGHT pixels at (x, y) of image packed into long, row by row;
+        bit (yiter * DIGIT_WIDTH + xiter) is set where pixel has the color of band
+        */
+        long glyph(int x, int y)
+        {
+            if (counting)
+            {
+                probes++;
+            }
+            long glyph = 0;
+            if (byRows)
+            {
+                readTo(y - this.y + ModelUM.GLYPH_MAX_HEIGHT);
+                int shift = x - this.x;
+                for (int yiter = 0; yiter < ModelUM.GLYPH_MAX_HEIGHT; yiter++)
+                {
+                    long row = (lines[y - this.y + yiter] >>> shift) & ((1L << ModelUM.DIGIT_WIDTH) - 1);
+                    glyph |= row << (yiter * ModelUM.DIGIT_WIDTH);
+                }
+            }
+            else
+            {
+                int shift = y - this.y;
+                readTo(x - this.x + ModelUM.DIGIT_WIDTH);
+                for (int xiter = 0; xiter < ModelUM.DIGIT_WIDTH; xiter++)
+                {
+                    long column = lines[x - this.x + xiter] >>> shift;
+                    for (int yiter = 0; yiter < ModelUM.GLYPH_MAX_HEIGHT; yiter++)
+                    {
+                        if (((column >>> yiter) & 1) != 0)
+                        {
+                            glyph |= 1L << (yiter * ModelUM.DIGIT_WIDTH + xiter);
+                        }
+                    }
+                }
+            }
+            return glyph;
+        }
+    }
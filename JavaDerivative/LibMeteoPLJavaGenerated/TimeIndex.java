@@ -0,0 +1,154 @@
+package com.pgssoft.meteopllibrary;
+
+/*
+Time of chart columns, and series read at given times.
+
+Chart spans CHART_WIDTH / 168 days from its first column, whatever the date, so time of column x
+counted from the first one is the same for every meteogram: it is computed once into OFFSETS,
+with the same double maths getTimestamp(px) did on every call, and a timestamp is then the time
+of first column plus OFFSETS[px]. Column of a time is found by binary search of OFFSETS, or by
+walking them for times in steps.
+
+Times are given as offsets from the first column, so callers subtract their timestamp once.
+Series are read with ModelUM.RESAMPLE_NEAREST (sample of nearest column, the earlier one on a
+tie) or RESAMPLE_LINEAR (line between the columns around, sample itself on a column). Times
+outside of chart, and times whose samples are NOVALUE (or -NOVALUE), give the missing value of
+the series: -NOVALUE for maximum series, NOVALUE for others.
+*/
+final class TimeIndex
+    {
+        // time of each chart column from the first one, in ms
+        static final int[] OFFSETS = offsets();
+        static final int LAST = ModelUM.CHART_WIDTH - 1;
+
+        private static int[] offsets()
+        {
+            int[] offsets = new int[ModelUM.CHART_WIDTH];
+            for (int px = 0; px < offsets.length; px++)
+            {
+                double part = px*1.0d / ModelUM.CHART_WIDTH;
+                offsets[px] = (int)(part * (ModelUM.CHART_WIDTH / 168.0) * 24 * 60 * 60 * 1000);
+            }
+            return offsets;
+        }
+
+        /*
+        time of column px from the first one; columns out of chart are computed as before
+        */
+        static long offset(int px)
+        {
+            if (px >= 0 && px < OFFSETS.length)
+            {
+                return OFFSETS[px];
+            }
+            double part = px*1.0d / ModelUM.CHART_WIDTH;
+            return (int)(part * (ModelUM.CHART_WIDTH / 168.0) * 24 * 60 * 60 * 1000);
+        }
+
+        /*
+        NOVALUE, or -NOVALUE for series where parser marks missing samples so
+        */
+        static double missingValue(int type)
+        {
+            switch (type)
+            {
+                case ModelUM.TYPE_TEMPERATURE_MAX:
+                case ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX:
+                    return -ModelUM.NOVALUE;
+            }
+            return ModelUM.NOVALUE;
+        }
+
+        /*
+        last column not after offset, -1 before chart
+        */
+        static int column(long offset)
+        {
+            if (offset < 0)
+            {
+                return -1;
+            }
+            if (offset >= OFFSETS[LAST])
+            {
+                return LAST;
+            }
+            int low = 0;
+            int high = LAST;
+            // OFFSETS[low] <= offset < OFFSETS[high]
+            while (high - low > 1)
+            {
+                int middle = (low + high) >>> 1;
+                if (OFFSETS[middle] <= offset)
+                {
+                    low = middle;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /*
+        sample at offset, column x being column(offset)
+        */
+        static double sample(double[] samples, double missing, long offset, int x, int mode)
+        {
+            if (x < 0 || offset > OFFSETS[LAST])
+            {
+                return missing;
+            }
+            double value = samples[x];
+            if (x < LAST && offset != OFFSETS[x])
+            {
+                long before = offset - OFFSETS[x];
+                long after = OFFSETS[x + 1] - offset;
+                if (mode == ModelUM.RESAMPLE_LINEAR)
+                {
+                    double next = samples[x + 1];
+                    if (isMissing(value) || isMissing(next))
+                    {
+                        return missing;
+                    }
+                    return value + (next - value) * before / (before + after);
+                }
+                if (after < before)
+                {
+                    value = samples[x + 1];
+                }
+            }
+            return isMissing(value) ? missing : value;
+        }
+
+        static double sample(double[] samples, double missing, long offset, int mode)
+        {
+            return sample(samples, missing, offset, column(offset), mode);
+        }
+
+        /*
+        count samples at offsets first, first + step, ... into into
+        */
+        static void resample(double[] samples, double missing, long first, long step, int count, int mode, double[] into)
+        {
+            if (step <= 0)
+            {
+                throw new IllegalArgumentException("Step must be positive");
+            }
+            int x = column(first);
+            long offset = first;
+            for (int i = 0; i < count; i++, offset += step)
+            {
+                while (x < LAST && OFFSETS[x + 1] <= offset)
+                {
+                    x++; // times only grow, columns are walked instead of searched
+                }
+                into[i] = sample(samples, missing, offset, x, mode);
+            }
+        }
+
+        static boolean isMissing(double value)
+        {
+            return value == ModelUM.NOVALUE || value == -ModelUM.NOVALUE;
+        }
+    }
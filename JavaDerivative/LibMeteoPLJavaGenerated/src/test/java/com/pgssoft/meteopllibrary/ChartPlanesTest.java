@@ -0,0 +1,91 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+
+/**
+ * Chart panels read in one row-major pass by ModelUM.readChartValues() give
+ * the series of the per-section readers, and ChartPlanes hold the same bits
+ * whether rows are classified by RowClassifier or pixel by pixel.
+ */
+class ChartPlanesTest {
+
+    @Test
+    void readChartValuesGivesValuesOfSectionReaders() throws Exception {
+        for (String name : Samples.NAMES) {
+            for (boolean heuristic : new boolean[] {true, false}) {
+                int[] pixels = Samples.pixels(name);
+                ModelUMResult full = new ModelUM(pixels, Samples.utils(), heuristic).getResult();
+                // lazy parser reads a section when asked for it, pressure first here
+                ModelUM lazy = new ModelUM(pixels, Samples.utils(), heuristic, true);
+                lazy.getSamples(ModelUM.TYPE_PRESSURE_HPA);
+                lazy.getSamples(ModelUM.TYPE_DAYNIGHT);
+                lazy.getSamples(ModelUM.TYPE_TEMPERATURE);
+                lazy.getTimestamp(0);
+                Samples.assertSameValues(full, lazy.getResult(), name + ", heuristic " + heuristic);
+            }
+        }
+    }
+
+    @Test
+    void readChartValuesGivesSameValuesWithAndWithoutClassifier() throws Exception {
+        for (String name : Samples.NAMES) {
+            int[] pixels = Samples.pixels(name);
+            // IntRGB and Indexed rows go through RowClassifier when Vector API is there, int buffers never do
+            PixelSource scalar = PixelSource.of(IntBuffer.wrap(pixels), ModelUM.WIDTH, ModelUM.HEIGHT,
+                    PixelSource.FORMAT_INT_RGB);
+            ModelUM parser = new ModelUM(Samples.utils(), true);
+            ModelUMResult expected = new ModelUMResult();
+            parser.parse(scalar, expected);
+            ModelUMResult result = new ModelUMResult();
+            parser.parse(Samples.source(name), result);
+            Samples.assertSameValues(expected, result, name);
+            parser.parse(Samples.indexed(name), result);
+            Samples.assertSameValues(expected, result, name + " decoded");
+        }
+    }
+
+    @Test
+    void planesHaveSameBitsWithAndWithoutClassifier() throws Exception {
+        for (String name : Samples.NAMES) {
+            for (PixelSource pixels : new PixelSource[] {Samples.source(name), Samples.indexed(name)}) {
+                ModelUMResult result = new ModelUMResult();
+                ModelUM parser = new ModelUM(Samples.utils(), true);
+                parser.parse(pixels, result); // keys of planes are those of the image
+                assertSamePlanes(pixels, result.temperaturePlanes, name);
+                assertSamePlanes(pixels, result.pressurePlanes, name);
+            }
+        }
+    }
+
+    private static void assertSamePlanes(PixelSource pixels, ChartPlanes planes, String name) {
+        RowClassifier classifier = RowClassifier.of(pixels, planes.keys);
+        ChartPlanes expected = copy(planes);
+        expected.build(pixels, null);
+        ChartPlanes actual = copy(planes);
+        actual.build(pixels, classifier);
+        for (int k = 0; k < planes.keys.length; k++) {
+            for (int x = 0; x < planes.width; x++) {
+                String at = name + " " + pixels.getClass().getSimpleName() + ", plane " + k + ", column " + x;
+                assertEquals(expected.first(k, x), actual.first(k, x), at);
+                assertEquals(expected.last(k, x), actual.last(k, x), at);
+                for (int y = 0; y < planes.height; y++) {
+                    if (expected.contains(k, x, y) != actual.contains(k, x, y)) {
+                        assertEquals(expected.contains(k, x, y), actual.contains(k, x, y), at + ", row " + y);
+                    }
+                }
+            }
+            assertEquals(expected.emptyColumns(k), actual.emptyColumns(k), name + ", plane " + k);
+        }
+    }
+
+    private static ChartPlanes copy(ChartPlanes planes) {
+        ChartPlanes copy = new ChartPlanes(planes.colStart, planes.rowStart, planes.width, planes.height,
+                planes.keys.length, planes.firstOnly);
+        System.arraycopy(planes.keys, 0, copy.keys, 0, planes.keys.length);
+        return copy;
+    }
+}
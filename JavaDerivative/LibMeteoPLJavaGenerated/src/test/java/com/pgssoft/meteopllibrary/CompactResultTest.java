@@ -0,0 +1,154 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * CompactResult against the holder it was copied from: quantization error
+ * within 1/12 of scale precision, floats for scales not read, missing samples
+ * of both markers, day/night bits, precision of each category.
+ */
+class CompactResultTest {
+
+    // series quantized on temperature scale
+    private static final int[] TEMPERATURE_TYPES = {
+        ModelUM.TYPE_TEMPERATURE, ModelUM.TYPE_TEMPERATURE_MIN, ModelUM.TYPE_TEMPERATURE_MAX,
+        ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN,
+        ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX};
+
+    @Test
+    void samplesAreWithinTwelfthOfPrecision() throws Exception {
+        for (String name : Samples.NAMES) {
+            for (boolean heuristic : new boolean[] {true, false}) {
+                ModelUMResult result = new ModelUM(Samples.pixels(name), Samples.utils(), heuristic).getResult();
+                CompactResult compact = new CompactResult(result);
+                for (int type : Samples.TYPES) {
+                    double bound = compact.getPrecision(type) / 12 + 1e-9;
+                    double[] expected = result.getSamples(type);
+                    for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                        String at = name + ", heuristic " + heuristic + ", type " + type + ", sample " + x;
+                        double actual = compact.getSample(type, x);
+                        if (isMissing(expected[x])) {
+                            assertEquals(expected[x], actual, at);
+                        } else {
+                            assertEquals(expected[x], actual, bound, at);
+                        }
+                    }
+                }
+                // seven series and day/night as doubles
+                long doubles = 8L * 8 * ModelUM.CHART_WIDTH;
+                assertTrue(compact.getByteSize() * 3 < doubles, name + ": " + compact.getByteSize() + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void seriesOfScalesNotReadAreFloats() throws Exception {
+        for (double precision : new double[] {Double.NaN, Double.POSITIVE_INFINITY}) {
+            ModelUMResult result = new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true).getResult();
+            // as after scales whose labels were not found
+            result.temperature_precision = precision;
+            result.pressure_precision_hPa = precision;
+            result.temperature[7] = 1234.5678;
+            CompactResult compact = new CompactResult(result);
+            for (int type : Samples.TYPES) {
+                double[] expected = result.getSamples(type);
+                for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                    double value = type == ModelUM.TYPE_PRESSURE_MMHG && !isMissing(expected[x])
+                            ? ModelUM.hPaTommHg((float) result.pressurehPa[x]) : (float) expected[x];
+                    assertEquals(isMissing(expected[x]) ? expected[x] : value, compact.getSample(type, x),
+                            "precision " + precision + ", type " + type + ", sample " + x);
+                }
+            }
+        }
+    }
+
+    @Test
+    void missingSamplesKeepTheirMarker() throws Exception {
+        ModelUMResult result = new ModelUM(Samples.pixels("mgram2.png"), Samples.utils(), false).getResult();
+        // maximum series mark missing samples with -NOVALUE, the others with NOVALUE; across word boundaries
+        for (int x : new int[] {0, 63, 64, 65, 200, ModelUM.CHART_WIDTH - 1}) {
+            result.temperature[x] = ModelUM.NOVALUE;
+            result.temperatureMin[x] = ModelUM.NOVALUE;
+            result.temperatureMax[x] = -ModelUM.NOVALUE;
+            result.temperaturePercMax[x] = -ModelUM.NOVALUE;
+            result.pressurehPa[x] = ModelUM.NOVALUE;
+        }
+        CompactResult compact = new CompactResult(result);
+        for (int type : TEMPERATURE_TYPES) {
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                double expected = result.getSamples(type)[x];
+                if (isMissing(expected)) {
+                    assertEquals(expected, compact.getSample(type, x), "type " + type + ", sample " + x);
+                } else {
+                    assertTrue(!isMissing(compact.getSample(type, x)), "type " + type + ", sample " + x);
+                }
+            }
+        }
+        assertEquals(ModelUM.NOVALUE, compact.getSample(ModelUM.TYPE_PRESSURE_MMHG, 64));
+        assertEquals(-ModelUM.NOVALUE, compact.getSample(ModelUM.TYPE_TEMPERATURE_MAX, 63));
+        assertEquals(ModelUM.NOVALUE, compact.getSample(ModelUM.TYPE_TEMPERATURE_MIN, 63));
+    }
+
+    @Test
+    void dayNightIsKeptAsBits() throws Exception {
+        ModelUMResult result = new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true).getResult();
+        assertArrayEquals(result.daynight, new CompactResult(result).getSamples(ModelUM.TYPE_DAYNIGHT));
+        // every other sample, and runs across word boundaries
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            result.daynight[x] = x % 2 == 0 || (x >= 60 && x < 130) ? 1 : 0;
+        }
+        CompactResult compact = new CompactResult(result);
+        assertArrayEquals(result.daynight, compact.getSamples(ModelUM.TYPE_DAYNIGHT));
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            assertEquals(result.daynight[x], compact.getSample(ModelUM.TYPE_DAYNIGHT, x));
+        }
+    }
+
+    @Test
+    void samplesAreWrittenIntoCallersArray() throws Exception {
+        CompactResult compact = new CompactResult(
+                new ModelUM(Samples.pixels("mgram_snow.png"), Samples.utils(), true).getResult());
+        double[] into = new double[ModelUM.CHART_WIDTH];
+        for (int type : Samples.TYPES) {
+            Arrays.fill(into, Double.NaN);
+            assertSame(into, compact.getSamples(type, into));
+            assertArrayEquals(compact.getSamples(type), into, "type " + type);
+        }
+        assertNull(compact.getSamples(ModelUM.TYPE_HUMIDITY));
+        assertThrows(IllegalArgumentException.class, () -> compact.getSamples(ModelUM.TYPE_HUMIDITY, into));
+        assertThrows(IndexOutOfBoundsException.class, () -> compact.getSample(ModelUM.TYPE_TEMPERATURE, -1));
+    }
+
+    @Test
+    void precisionIsScaleResolutionEverywhere() throws Exception {
+        for (String name : Samples.NAMES) {
+            ModelUM parser = new ModelUM(Samples.pixels(name), Samples.utils(), true);
+            ModelUMResult result = parser.getResult();
+            CompactResult compact = new CompactResult(result);
+            assertTrue(result.temperature_precision > 0 && result.pressure_precision_hPa > 0, name);
+            for (int type : Samples.TYPES) {
+                boolean pressure = type == ModelUM.TYPE_PRESSURE_HPA || type == ModelUM.TYPE_PRESSURE_MMHG;
+                double expected = pressure ? result.pressure_precision_hPa : result.temperature_precision;
+                assertEquals(expected, parser.getPrecision(type), name + ", type " + type);
+                assertEquals(expected, compact.getPrecision(type), name + ", type " + type);
+            }
+            // lazy parser reads the scale of the section asked for
+            ModelUM lazy = new ModelUM(Samples.pixels(name), Samples.utils(), true, true);
+            assertEquals(result.pressure_precision_hPa, lazy.getPrecision(ModelUM.TYPE_PRESSURE_MMHG), name);
+            assertEquals(result.temperature_precision, lazy.getPrecision(ModelUM.TYPE_TEMPERATURE_MAX), name);
+        }
+    }
+
+    private static boolean isMissing(double value) {
+        return value == ModelUM.NOVALUE || value == -ModelUM.NOVALUE;
+    }
+}
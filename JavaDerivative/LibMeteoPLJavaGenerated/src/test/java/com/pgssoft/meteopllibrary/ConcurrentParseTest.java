@@ -0,0 +1,74 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * One ModelUM shared by many threads, each parsing every sample in turn, in
+ * its own order, into a holder of its own. Every parse must give what a
+ * single-threaded parse of the same image gave.
+ */
+class ConcurrentParseTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void sharedParserGivesSingleThreadedValues() throws Exception {
+        assertSharedParser(new ModelUM(Samples.utils(), true));
+    }
+
+    @Test
+    void sharedParserAndScaleCacheGiveSingleThreadedValues() throws Exception {
+        ScaleCache cache = new ScaleCache(2);
+        assertSharedParser(new ModelUM(Samples.utils(), true, cache));
+        assertTrue(cache.getHits() > 0, "scale cache was not used");
+    }
+
+    private static void assertSharedParser(ModelUM parser) throws Exception {
+        int images = Samples.NAMES.length;
+        PixelSource[] sources = new PixelSource[2 * images];
+        ModelUMResult[] expected = new ModelUMResult[2 * images];
+        for (int i = 0; i < images; i++) {
+            sources[i] = Samples.source(Samples.NAMES[i]);
+            sources[images + i] = Samples.indexed(Samples.NAMES[i]);
+            expected[i] = new ModelUMResult();
+            new ModelUM(Samples.utils(), true).parse(sources[i], expected[i]);
+            expected[images + i] = expected[i];
+        }
+
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                tasks.add(executor.submit(() -> {
+                    ModelUMResult result = new ModelUMResult();
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        // threads start at different images, so different images are parsed at once
+                        int i = (thread + round) % sources.length;
+                        parser.parse(sources[i], result);
+                        Samples.assertSameValues(expected[i], result,
+                                "thread " + thread + ", round " + round + ", " + Samples.NAMES[i % images]);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(); // rethrows assertion failure of the task
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
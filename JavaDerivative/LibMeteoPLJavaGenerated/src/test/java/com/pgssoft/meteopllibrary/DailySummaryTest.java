@@ -0,0 +1,267 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/**
+ * DailySummary of holders with known series: calendar days of a zone with and
+ * without a DST change, night periods across midnight, grid lines in the
+ * day/night row, partial periods at chart ends and buckets of missing samples;
+ * then the summary kept by the holder.
+ */
+class DailySummaryTest {
+
+    private static final ZoneId WARSAW = ZoneId.of("Europe/Warsaw");
+    private static final int LAST = ModelUM.CHART_WIDTH - 1;
+
+    @Test
+    void daysAreCalendarDaysOfZone() {
+        ZoneId[] zones = {WARSAW, ZoneId.of("America/St_Johns"), ZoneOffset.UTC};
+        // before spring and autumn DST changes of Warsaw, and a day without one
+        ZonedDateTime[] starts = {
+            ZonedDateTime.of(2015, 3, 28, 18, 0, 0, 0, WARSAW),
+            ZonedDateTime.of(2015, 10, 24, 12, 0, 0, 0, WARSAW),
+            ZonedDateTime.of(2015, 6, 1, 0, 0, 0, 0, WARSAW)};
+        for (ZoneId zone : zones) {
+            for (ZonedDateTime start : starts) {
+                ModelUMResult result = holder(start.toInstant().toEpochMilli());
+                DailySummary summary = result.getDailySummary(zone);
+                String at = zone + " from " + start;
+                assertSame(zone, summary.getZone());
+
+                // days as LocalDate of each column gives them
+                int day = 0;
+                int first = 0;
+                for (int x = 1; x <= ModelUM.CHART_WIDTH; x++) {
+                    if (x < ModelUM.CHART_WIDTH && date(result, x, zone).equals(date(result, first, zone))) {
+                        continue;
+                    }
+                    assertDay(result, summary, day, first, x - 1, at + ", day " + day);
+                    if (x < ModelUM.CHART_WIDTH) {
+                        assertEquals(date(result, first, zone).plusDays(1), date(result, x, zone), at);
+                    }
+                    day++;
+                    first = x;
+                }
+                assertEquals(day, summary.getDayCount(), at);
+                // chart ends cut first and last days
+                assertEquals(result.timestamp, summary.getDayStart(0), at);
+                assertEquals(result.getTimestamp(LAST), summary.getDayEnd(day - 1), at);
+            }
+        }
+    }
+
+    @Test
+    void dstChangesLengthOfDay() {
+        ModelUMResult result = holder(ZonedDateTime.of(2015, 3, 28, 18, 0, 0, 0, WARSAW).toInstant().toEpochMilli());
+        DailySummary summary = result.getDailySummary(WARSAW);
+        assertEquals(4, summary.getDayCount());
+        // March 29th has 23 hours, March 30th 24
+        long short29 = columns(summary, 1);
+        long full30 = columns(summary, 2);
+        assertTrue(short29 < full30, short29 + " columns on 29th, " + full30 + " on 30th");
+        assertEquals(ZonedDateTime.of(2015, 3, 30, 0, 0, 0, 0, WARSAW).toInstant().toEpochMilli(),
+                summary.getDayStart(2), TimeIndex.OFFSETS[1]);
+
+        ModelUMResult autumn = holder(ZonedDateTime.of(2015, 10, 24, 12, 0, 0, 0, WARSAW).toInstant().toEpochMilli());
+        DailySummary fall = autumn.getDailySummary(WARSAW);
+        // October 25th has 25 hours
+        assertTrue(columns(fall, 1) > columns(fall, 2), columns(fall, 1) + " columns on 25th, " + columns(fall, 2) + " on 26th");
+    }
+
+    @Test
+    void nightSpansMidnight() {
+        ModelUMResult result = holder(ZonedDateTime.of(2015, 6, 1, 12, 0, 0, 0, WARSAW).toInstant().toEpochMilli());
+        // night from 21:00 to 5:00
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            int hour = Instant.ofEpochMilli(result.getTimestamp(x)).atZone(WARSAW).getHour();
+            result.daynight[x] = hour >= 21 || hour < 5 ? 1 : 0;
+        }
+        DailySummary summary = result.getDailySummary(WARSAW);
+        int[] runs = runs(result.daynight);
+        assertEquals(runs.length - 1, summary.getPeriodCount());
+        int nights = 0;
+        for (int period = 0; period < summary.getPeriodCount(); period++) {
+            assertPeriod(result, summary, period, runs[period], runs[period + 1] - 1);
+            if (summary.isNight(period)) {
+                nights++;
+                LocalDate start = Instant.ofEpochMilli(summary.getPeriodStart(period)).atZone(WARSAW).toLocalDate();
+                LocalDate end = Instant.ofEpochMilli(summary.getPeriodEnd(period)).atZone(WARSAW).toLocalDate();
+                if (period > 0 && period < summary.getPeriodCount() - 1) {
+                    assertEquals(start.plusDays(1), end, "night " + period);
+                }
+            }
+        }
+        // chart ends in the third night, after its midnight
+        assertEquals(3, nights);
+        assertFalse(summary.isNight(0));
+    }
+
+    @Test
+    void gridLinesBelongToPeriodAround() {
+        ModelUMResult result = holder(ZonedDateTime.of(2015, 6, 1, 12, 0, 0, 0, WARSAW).toInstant().toEpochMilli());
+        // night 1 column at chart start, day, night with grid lines of 1 and 2 columns, a short day of
+        // MIN_PERIOD_COLUMNS, night, day with grid line of 2, night of 2 columns at chart end
+        fill(result.daynight, 0, 1, 1);
+        fill(result.daynight, 1, 100, 0);
+        fill(result.daynight, 100, 200, 1);
+        fill(result.daynight, 130, 131, 0);
+        fill(result.daynight, 150, 152, 0);
+        fill(result.daynight, 200, 200 + DailySummary.MIN_PERIOD_COLUMNS, 0);
+        fill(result.daynight, 200 + DailySummary.MIN_PERIOD_COLUMNS, 300, 1);
+        fill(result.daynight, 300, LAST - 1, 0);
+        fill(result.daynight, 350, 352, 1);
+        fill(result.daynight, LAST - 1, ModelUM.CHART_WIDTH, 1);
+        DailySummary summary = result.getDailySummary(WARSAW);
+
+        int[] periods = {0, 1, 100, 200, 200 + DailySummary.MIN_PERIOD_COLUMNS, 300, LAST - 1, ModelUM.CHART_WIDTH};
+        assertEquals(periods.length - 1, summary.getPeriodCount());
+        for (int period = 0; period < periods.length - 1; period++) {
+            assertEquals(period % 2 == 0, summary.isNight(period), "period " + period);
+            assertPeriod(result, summary, period, periods[period], periods[period + 1] - 1);
+        }
+        // partial periods at chart ends
+        assertEquals(result.timestamp, summary.getPeriodStart(0));
+        assertEquals(result.timestamp, summary.getPeriodEnd(0));
+        assertEquals(result.getTimestamp(LAST), summary.getPeriodEnd(periods.length - 2));
+    }
+
+    @Test
+    void bucketsWithoutValidSampleAreNovalue() {
+        ModelUMResult result = holder(ZonedDateTime.of(2015, 6, 1, 12, 0, 0, 0, WARSAW).toInstant().toEpochMilli());
+        fill(result.daynight, 100, 200, 1);
+        DailySummary whole = result.getDailySummary(WARSAW);
+        int first = column(whole, whole.getDayStart(1));
+        int last = column(whole, whole.getDayEnd(1));
+        // second day has no temperature, maximum series marks its missing samples with -NOVALUE
+        fill(result.temperature, first, last + 1, ModelUM.NOVALUE);
+        fill(result.temperatureMax, 100, 200, -ModelUM.NOVALUE);
+        // a single valid sample is left of pressure in the night
+        fill(result.pressurehPa, 100, 200, ModelUM.NOVALUE);
+        result.pressurehPa[150] = 1013;
+        result.summary = null;
+        DailySummary summary = result.getDailySummary(WARSAW);
+
+        for (int statistic = DailySummary.MIN; statistic <= DailySummary.TREND; statistic++) {
+            assertEquals(ModelUM.NOVALUE, summary.getDay(ModelUM.TYPE_TEMPERATURE, 1, statistic));
+            assertEquals(ModelUM.NOVALUE, summary.getPeriod(ModelUM.TYPE_TEMPERATURE_MAX, 1, statistic));
+        }
+        assertEquals(1013, summary.getPeriod(ModelUM.TYPE_PRESSURE_HPA, 1, DailySummary.MIN));
+        assertEquals(1013, summary.getPeriod(ModelUM.TYPE_PRESSURE_HPA, 1, DailySummary.MEAN));
+        assertEquals(0, summary.getPeriod(ModelUM.TYPE_PRESSURE_HPA, 1, DailySummary.TREND));
+        // missing samples are left out of days partly missing
+        assertEquals(first - 1, summary.getDay(ModelUM.TYPE_TEMPERATURE, 0, DailySummary.MAX));
+        assertEquals(last + 1, summary.getDay(ModelUM.TYPE_TEMPERATURE, 2, DailySummary.MIN));
+        assertEquals(0, summary.getPeriod(ModelUM.TYPE_TEMPERATURE_MAX, 0, DailySummary.MAX));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> summary.getDay(ModelUM.TYPE_TEMPERATURE, summary.getDayCount(), DailySummary.MIN));
+        assertThrows(IndexOutOfBoundsException.class, () -> summary.getPeriod(ModelUM.TYPE_TEMPERATURE, -1, DailySummary.MIN));
+        assertThrows(IllegalArgumentException.class, () -> summary.getDay(ModelUM.TYPE_DAYNIGHT, 0, DailySummary.MIN));
+        assertThrows(IllegalArgumentException.class, () -> summary.getDay(ModelUM.TYPE_TEMPERATURE, 0, 4));
+    }
+
+    @Test
+    void summaryIsKeptPerZoneUntilParse() throws Exception {
+        ModelUM parser = new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true);
+        ModelUMResult result = parser.getResult();
+        DailySummary summary = result.getDailySummary(WARSAW);
+        assertSame(summary, result.getDailySummary(ZoneId.of("Europe/Warsaw")));
+        assertSame(summary, parser.getDailySummary(WARSAW));
+        DailySummary utc = result.getDailySummary(ZoneOffset.UTC);
+        assertNotSame(summary, utc);
+        assertEquals(ZoneOffset.UTC, utc.getZone());
+        assertSame(utc, result.getDailySummary(ZoneOffset.UTC));
+        assertNotSame(summary, result.getDailySummary(WARSAW));
+
+        DailySummary before = result.getDailySummary(WARSAW);
+        new ModelUM(Samples.utils(), true).parse(Samples.source("mgram2.png"), result);
+        DailySummary after = result.getDailySummary(WARSAW);
+        assertNotSame(before, after);
+        assertNotEquals(before.getDay(ModelUM.TYPE_TEMPERATURE, 0, DailySummary.MEAN), after.getDay(ModelUM.TYPE_TEMPERATURE, 0, DailySummary.MEAN));
+
+        ModelUMResult lazy = new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true, true).getResult();
+        assertThrows(IllegalStateException.class, () -> lazy.getDailySummary(WARSAW));
+        lazy.getSamples(ModelUM.TYPE_TEMPERATURE);
+        assertThrows(IllegalStateException.class, () -> lazy.getDailySummary(WARSAW));
+    }
+
+    // parsed holder with temperature of column number, other series 0, all day
+    private static ModelUMResult holder(long timestamp) {
+        ModelUMResult result = new ModelUMResult();
+        result.timestamp = timestamp;
+        result.temperatureScaleParsed = true;
+        result.temperatureParsed = true;
+        result.pressureParsed = true;
+        result.otherParsed = true;
+        result.dateParsed = true;
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            result.temperature[x] = x;
+        }
+        return result;
+    }
+
+    // aggregates of temperature over columns first ... last of day
+    private static void assertDay(ModelUMResult result, DailySummary summary, int day, int first, int last, String at) {
+        assertEquals(result.getTimestamp(first), summary.getDayStart(day), at);
+        assertEquals(result.getTimestamp(last), summary.getDayEnd(day), at);
+        assertEquals(first, summary.getDay(ModelUM.TYPE_TEMPERATURE, day, DailySummary.MIN), at);
+        assertEquals(last, summary.getDay(ModelUM.TYPE_TEMPERATURE, day, DailySummary.MAX), at);
+        assertEquals((first + last) / 2.0, summary.getDay(ModelUM.TYPE_TEMPERATURE, day, DailySummary.MEAN), 1e-9, at);
+        assertEquals(last - first, summary.getDay(ModelUM.TYPE_TEMPERATURE, day, DailySummary.TREND), at);
+        assertEquals(0, summary.getDay(ModelUM.TYPE_PRESSURE_HPA, day, DailySummary.MEAN), at);
+    }
+
+    private static void assertPeriod(ModelUMResult result, DailySummary summary, int period, int first, int last) {
+        String at = "period " + period;
+        assertEquals(result.getTimestamp(first), summary.getPeriodStart(period), at);
+        assertEquals(result.getTimestamp(last), summary.getPeriodEnd(period), at);
+        assertEquals(first, summary.getPeriod(ModelUM.TYPE_TEMPERATURE, period, DailySummary.MIN), at);
+        assertEquals(last, summary.getPeriod(ModelUM.TYPE_TEMPERATURE, period, DailySummary.MAX), at);
+        assertEquals((first + last) / 2.0, summary.getPeriod(ModelUM.TYPE_TEMPERATURE, period, DailySummary.MEAN), 1e-9, at);
+        assertEquals(last - first, summary.getPeriod(ModelUM.TYPE_TEMPERATURE, period, DailySummary.TREND), at);
+    }
+
+    // first column of each run of equal values, then CHART_WIDTH
+    private static int[] runs(double[] daynight) {
+        int[] starts = new int[daynight.length + 1];
+        int count = 0;
+        for (int x = 0; x < daynight.length; x++) {
+            if (x == 0 || daynight[x] != daynight[x - 1]) {
+                starts[count++] = x;
+            }
+        }
+        starts[count++] = daynight.length;
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static void fill(double[] series, int from, int to, double value) {
+        Arrays.fill(series, from, to, value);
+    }
+
+    private static LocalDate date(ModelUMResult result, int x, ZoneId zone) {
+        return Instant.ofEpochMilli(result.getTimestamp(x)).atZone(zone).toLocalDate();
+    }
+
+    private static long columns(DailySummary summary, int day) {
+        return column(summary, summary.getDayEnd(day)) - column(summary, summary.getDayStart(day)) + 1;
+    }
+
+    // chart column at time, the first day starting at the first column
+    private static int column(DailySummary summary, long time) {
+        return TimeIndex.column(time - summary.getDayStart(0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * ForecastStore with small segments merged in the appending thread: merged
+ * segments are merged again, so their count stays logarithmic, and every run
+ * is found with its values before and after reopening and compact().
+ */
+class ForecastStoreTest {
+
+    private static final int POINTS = 50;
+    private static final int RUNS = 40;
+    private static final int RECORDS_PER_SEGMENT = 10;
+    private static final long RUN_STEP = 6 * 60 * 60 * 1000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mergedSegmentsAreMergedAgain() throws Exception {
+        ModelUMResult result = new ModelUMResult();
+        new ModelUM(Samples.utils(), true).parse(Samples.source("mgram1.png"), result);
+        long base = result.timestamp;
+
+        try (ForecastStore store = new ForecastStore(directory, RECORDS_PER_SEGMENT, 2, Runnable::run)) {
+            for (int run = 0; run < RUNS; run++) {
+                result.timestamp = base + run * RUN_STEP;
+                for (int point = 0; point < POINTS; point++) {
+                    store.append(point, result);
+                    if (point % 10 == 0) {
+                        store.append(point, result); // replaces the run just appended
+                    }
+                }
+                // 200+ segments appended in all, merged only when fresh there would be 100
+                assertTrue(store.getSegmentCount() <= 20, store.getSegmentCount() + " segments after run " + run);
+            }
+            assertEquals(0, store.getCompactionFailures());
+            assertTrue(store.getCompactions() > 0);
+            assertRuns(store, base, result);
+        }
+
+        try (ForecastStore store = new ForecastStore(directory, RECORDS_PER_SEGMENT, 2, Runnable::run)) {
+            assertRuns(store, base, result);
+            store.compact();
+            assertEquals(1, store.getSegmentCount());
+            assertRuns(store, base, result);
+        }
+    }
+
+    private static void assertRuns(ForecastStore store, long base, ModelUMResult result) throws Exception {
+        assertEquals(POINTS, store.getPointCount());
+        assertEquals((long) POINTS * RUNS, store.getRunCount());
+        double[] samples = new double[ModelUM.CHART_WIDTH];
+        for (int point = 0; point < POINTS; point++) {
+            ForecastStore.Run latest = store.latest(point);
+            assertNotNull(latest);
+            assertEquals(base + (RUNS - 1) * RUN_STEP, latest.getTimestamp());
+            latest.getSamples(ModelUM.TYPE_PRESSURE_HPA, samples);
+            assertEquals(result.getSamples(ModelUM.TYPE_PRESSURE_HPA)[100], samples[100], 1e-3);
+
+            List<ForecastStore.Run> covering = store.covering(point, base + 10 * RUN_STEP);
+            assertFalse(covering.isEmpty());
+            for (int i = 0; i < covering.size(); i++) {
+                assertEquals(point, covering.get(i).getPoint());
+                assertTrue(covering.get(i).getTimestamp() <= base + 10 * RUN_STEP);
+                assertTrue(covering.get(i).getTimestamp() + ForecastStore.SPAN >= base + 10 * RUN_STEP);
+                if (i > 0) {
+                    assertEquals(covering.get(i - 1).getTimestamp() + RUN_STEP, covering.get(i).getTimestamp());
+                }
+            }
+        }
+    }
+}
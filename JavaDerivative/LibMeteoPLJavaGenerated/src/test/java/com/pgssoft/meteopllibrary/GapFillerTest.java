@@ -0,0 +1,214 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * GapFiller policies on short series, and DEFAULT against fixMissingData() of
+ * earlier versions of the parser on the samples.
+ */
+class GapFillerTest {
+
+    private static final double N = ModelUM.NOVALUE;
+
+    @Test
+    void holesAreFilledByPolicy() {
+        GapFiller linear = new GapFiller(GapFiller.HOLES_LINEAR, GapFiller.EDGES_NONE, Integer.MAX_VALUE);
+        assertFilled(linear, new double[] {1, N, N, 4, N, 6}, new double[] {1, 2, 3, 4, 5, 6}, 3);
+        assertFilled(linear, new double[] {0, -N, 10}, new double[] {0, 5, 10}, 1);
+
+        GapFiller nearest = new GapFiller(GapFiller.HOLES_NEAREST, GapFiller.EDGES_NONE, Integer.MAX_VALUE);
+        // middle sample of odd hole is a tie, it goes left
+        assertFilled(nearest, new double[] {0, N, N, N, 4}, new double[] {0, 0, 0, 4, 4}, 3);
+        assertFilled(nearest, new double[] {0, N, N, 3}, new double[] {0, 0, 3, 3}, 2);
+        assertFilled(nearest, new double[] {7, -N, 9}, new double[] {7, 7, 9}, 1);
+
+        GapFiller none = new GapFiller(GapFiller.HOLES_NONE, GapFiller.EDGES_HOLD, Integer.MAX_VALUE);
+        assertFilled(none, new double[] {N, 1, N, -N, 4, N}, new double[] {1, 1, N, -N, 4, 4}, 2);
+    }
+
+    @Test
+    void edgesAreFilledByPolicy() {
+        GapFiller hold = new GapFiller(GapFiller.HOLES_LINEAR, GapFiller.EDGES_HOLD, Integer.MAX_VALUE);
+        assertFilled(hold, new double[] {N, -N, 2, N, 4, N, N}, new double[] {2, 2, 2, 3, 4, 4, 4}, 5);
+
+        GapFiller none = new GapFiller(GapFiller.HOLES_LINEAR, GapFiller.EDGES_NONE, Integer.MAX_VALUE);
+        assertFilled(none, new double[] {N, -N, 2, N, 4, N, N}, new double[] {N, -N, 2, 3, 4, N, N}, 1);
+        // one valid sample: both edges from it
+        assertFilled(hold, new double[] {N, 5, N}, new double[] {5, 5, 5}, 2);
+    }
+
+    @Test
+    void runsLongerThanMaxGapStayMissing() {
+        for (int holes : new int[] {GapFiller.HOLES_LINEAR, GapFiller.HOLES_NEAREST}) {
+            GapFiller filler = new GapFiller(holes, GapFiller.EDGES_HOLD, 2);
+            // edge of 3, hole of 2, hole of 3, edge of 2
+            assertFilled(filler,
+                    new double[] {N, N, N, 1, N, N, 1, N, N, N, 1, N, N},
+                    new double[] {N, N, N, 1, 1, 1, 1, N, N, N, 1, 1, 1}, 4);
+        }
+        GapFiller one = new GapFiller(GapFiller.HOLES_LINEAR, GapFiller.EDGES_HOLD, 1);
+        assertFilled(one, new double[] {N, 0, N, 2, N, N, 5, N}, new double[] {0, 0, 1, 2, N, N, 5, 5}, 3);
+    }
+
+    @Test
+    void seriesWithoutValidSampleStaysMissing() {
+        for (int holes : new int[] {GapFiller.HOLES_NONE, GapFiller.HOLES_LINEAR, GapFiller.HOLES_NEAREST}) {
+            for (int edges : new int[] {GapFiller.EDGES_NONE, GapFiller.EDGES_HOLD}) {
+                GapFiller filler = new GapFiller(holes, edges, Integer.MAX_VALUE);
+                assertFilled(filler, new double[] {N, -N, N, N}, new double[] {N, -N, N, N}, 0);
+                assertFilled(filler, new double[0], new double[0], 0);
+            }
+        }
+    }
+
+    @Test
+    void minimumAndMaximumFollowMainSeries() {
+        ModelUMResult result = new ModelUMResult();
+        Arrays.fill(result.temperature, 10);
+        Arrays.fill(result.temperatureMin, 9);
+        Arrays.fill(result.temperatureMax, 11);
+        Arrays.fill(result.temperaturePerc, 8);
+        Arrays.fill(result.temperaturePercMin, 7);
+        Arrays.fill(result.temperaturePercMax, 9);
+        Arrays.fill(result.pressurehPa, 1000);
+        Arrays.fill(result.pressuremmHg, ModelUM.hPaTommHg(1000));
+        // hole in main series and in its minimum and maximum
+        result.temperature[50] = N;
+        result.temperature[51] = N;
+        result.temperature[52] = 13;
+        result.temperatureMin[51] = N;
+        result.temperatureMax[51] = -N;
+        result.temperaturePercMin[7] = N;
+        result.temperaturePercMax[7] = N;
+        // minimum missing where main is not
+        result.temperatureMin[200] = N;
+        result.pressurehPa[300] = N;
+        result.pressurehPa[301] = N;
+        result.pressurehPa[302] = 1003;
+        result.pressuremmHg[300] = N;
+        result.pressuremmHg[301] = N;
+
+        GapFiller filler = new GapFiller(GapFiller.HOLES_LINEAR, GapFiller.EDGES_NONE, Integer.MAX_VALUE);
+        // temperature hole, its minimum and maximum, perceptible ones, minimum at 200, hPa hole and mm Hg again
+        assertEquals(2 + 2 + 2 + 1 + 2 + 2, filler.fill(result));
+        assertEquals(11, result.temperature[50], 1e-12);
+        assertEquals(12, result.temperature[51], 1e-12);
+        assertEquals(12, result.temperatureMin[51], 1e-12);
+        assertEquals(12, result.temperatureMax[51], 1e-12);
+        assertEquals(9, result.temperatureMin[50]);
+        assertEquals(8, result.temperaturePercMin[7]);
+        assertEquals(8, result.temperaturePercMax[7]);
+        assertEquals(10, result.temperatureMin[200]);
+        assertEquals(1001, result.pressurehPa[300], 1e-9);
+        assertEquals(1002, result.pressurehPa[301], 1e-9);
+        assertEquals(ModelUM.hPaTommHg(result.pressurehPa[300]), result.pressuremmHg[300]);
+        assertEquals(ModelUM.hPaTommHg(result.pressurehPa[301]), result.pressuremmHg[301]);
+
+        // minimum and maximum stay missing where main one is missing too
+        result.temperature[0] = N;
+        result.temperatureMin[0] = N;
+        result.temperatureMax[0] = -N;
+        assertEquals(0, filler.fill(result));
+        assertEquals(N, result.temperatureMin[0]);
+        assertEquals(-N, result.temperatureMax[0]);
+    }
+
+    @Test
+    void defaultIsFixMissingDataOfEarlierParser() throws Exception {
+        for (String name : Samples.NAMES) {
+            ModelUMResult expected = new ModelUM(Samples.pixels(name), Samples.utils(), false).getResult();
+            ModelUMResult actual = new ModelUM(Samples.pixels(name), Samples.utils(), false).getResult();
+            fixMissingData(expected);
+            GapFiller.DEFAULT.fill(actual);
+            Samples.assertSameValues(expected, actual, name);
+            Samples.assertSameValues(new ModelUM(Samples.pixels(name), Samples.utils(), true).getResult(), actual, name);
+        }
+    }
+
+    @Test
+    void unknownPoliciesAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new GapFiller(3, GapFiller.EDGES_NONE, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GapFiller(GapFiller.HOLES_NONE, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GapFiller(-1, GapFiller.EDGES_NONE, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GapFiller(GapFiller.HOLES_LINEAR, GapFiller.EDGES_HOLD, 0));
+    }
+
+    private static void assertFilled(GapFiller filler, double[] series, double[] expected, int filled) {
+        double[] actual = series.clone();
+        assertEquals(filled, filler.fill(actual), "samples filled");
+        assertArrayEquals(expected, actual, 1e-12);
+        for (int x = 0; x < expected.length; x++) {
+            // missing samples keep their marker
+            if (expected[x] == N || expected[x] == -N) {
+                assertEquals(expected[x], actual[x], "sample " + x);
+            }
+        }
+    }
+
+    // heuristic of the parser before GapFiller, on holder's series
+    private static void fixMissingData(ModelUMResult result) {
+        holdEdges(result.temperature);
+        holdEdges(result.temperaturePerc);
+        for (int leftx = 0; leftx < ModelUM.CHART_WIDTH; leftx++) {
+            fillHole(result.temperature, null, leftx);
+            fillHole(result.temperaturePerc, null, leftx);
+            fillHole(result.pressurehPa, result.pressuremmHg, leftx);
+        }
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            if (result.temperaturePercMax[x] == -N || result.temperaturePercMax[x] == N) {
+                result.temperaturePercMax[x] = result.temperaturePerc[x];
+            }
+            if (result.temperaturePercMin[x] == -N || result.temperaturePercMin[x] == N) {
+                result.temperaturePercMin[x] = result.temperaturePerc[x];
+            }
+            if (result.temperatureMax[x] == -N || result.temperatureMax[x] == N) {
+                result.temperatureMax[x] = result.temperature[x];
+            }
+            if (result.temperatureMin[x] == -N || result.temperatureMin[x] == N) {
+                result.temperatureMin[x] = result.temperature[x];
+            }
+        }
+    }
+
+    private static void holdEdges(double[] series) {
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            if (series[x] != N) {
+                for (int fixx = 0; fixx < x; fixx++) {
+                    series[fixx] = series[x];
+                }
+                break;
+            }
+        }
+        for (int x = ModelUM.CHART_WIDTH - 1; x >= 0; x--) {
+            if (series[x] != N) {
+                for (int fixx = ModelUM.CHART_WIDTH - 1; fixx > x; fixx--) {
+                    series[fixx] = series[x];
+                }
+                break;
+            }
+        }
+    }
+
+    private static void fillHole(double[] series, double[] mmHg, int leftx) {
+        if (series[leftx] != N) {
+            return;
+        }
+        int rightx = leftx + 1;
+        while (series[rightx] == N) {
+            rightx++;
+        }
+        double diff = (series[rightx] - series[leftx - 1]) / (rightx - leftx + 1);
+        for (int workx = leftx; workx < rightx; workx++) {
+            series[workx] = series[leftx - 1] + diff * (workx - leftx + 1);
+            if (mmHg != null) {
+                mmHg[workx] = ModelUM.hPaTommHg(series[workx]);
+            }
+        }
+    }
+}
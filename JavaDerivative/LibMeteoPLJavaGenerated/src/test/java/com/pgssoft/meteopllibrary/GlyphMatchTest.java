@@ -0,0 +1,107 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Packed glyph lookup of ModelUM.readDigit() and isMinus() against the
+ * template by template comparison it replaced: every template, templates with
+ * a pixel flipped, and random cells.
+ */
+class GlyphMatchTest {
+
+    // digits in order the templates were tried, minus sign last
+    private static final int[] ORDER = {0, 1, 2, 8, 4, 5, 6, 7, 3, 9, -1};
+    private static final int CELL_BITS = ModelUM.DIGIT_WIDTH * ModelUM.GLYPH_MAX_HEIGHT;
+
+    @Test
+    void templatesAreRead() {
+        for (int digit : ORDER) {
+            for (int height : new int[] {8, 9}) {
+                int[] template = template(digit, height);
+                if (template == null) {
+                    continue;
+                }
+                long cell = pack(template);
+                assertMatch(cell);
+                // last row of cell is not part of 8 pixel high templates
+                if (height == 8) {
+                    assertMatch(cell | (ModelUM.GLYPH_CELL_COLUMNS << 40));
+                    assertMatch(cell | (1L << 42));
+                }
+                for (int bit = 0; bit < CELL_BITS; bit++) {
+                    assertMatch(cell ^ (1L << bit));
+                }
+            }
+        }
+    }
+
+    @Test
+    void otherCellsAreRead() {
+        Random random = new Random(42);
+        assertMatch(0);
+        assertMatch((1L << CELL_BITS) - 1);
+        for (int i = 0; i < 100000; i++) {
+            assertMatch(random.nextLong() & ((1L << CELL_BITS) - 1));
+        }
+    }
+
+    private static void assertMatch(long cell) {
+        assertEquals(scanDigit(cell), ModelUM.readDigit(cell), Long.toBinaryString(cell));
+        assertEquals(matches(cell, ModelUM.digitsMINUS_8, 8), ModelUM.isMinus(cell), Long.toBinaryString(cell));
+    }
+
+    /*
+     * first digit in ORDER whose 8 or 9 pixel high template has exactly the pixels of cell
+     */
+    private static int scanDigit(long cell) {
+        for (int digit : ORDER) {
+            for (int height : new int[] {8, 9}) {
+                int[] template = template(digit, height);
+                if (template != null && matches(cell, template, height)) {
+                    return digit;
+                }
+            }
+        }
+        return ModelUM.ERR;
+    }
+
+    private static boolean matches(long cell, int[] template, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < ModelUM.DIGIT_WIDTH; x++) {
+                int i = y * ModelUM.DIGIT_WIDTH + x;
+                if (template[i] != ((cell >>> i) & 1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long pack(int[] template) {
+        long cell = 0;
+        for (int i = 0; i < template.length; i++) {
+            cell |= (long) template[i] << i;
+        }
+        return cell;
+    }
+
+    private static int[] template(int digit, int height) {
+        switch (digit) {
+            case -1: return height == 8 ? ModelUM.digitsMINUS_8 : null;
+            case 0: return height == 8 ? ModelUM.digits0_8 : ModelUM.digits0_9;
+            case 1: return height == 8 ? ModelUM.digits1_8 : ModelUM.digits1_9;
+            case 2: return height == 8 ? ModelUM.digits2_8 : ModelUM.digits2_9;
+            case 3: return height == 8 ? ModelUM.digits3_8 : ModelUM.digits3_9;
+            case 4: return height == 8 ? ModelUM.digits4_8 : ModelUM.digits4_9;
+            case 5: return height == 8 ? ModelUM.digits5_8 : ModelUM.digits5_9;
+            case 6: return height == 8 ? ModelUM.digits6_8 : ModelUM.digits6_9;
+            case 7: return height == 8 ? ModelUM.digits7_8 : ModelUM.digits7_9;
+            case 8: return height == 8 ? ModelUM.digits8_8 : ModelUM.digits8_9;
+            default: return height == 8 ? ModelUM.digits9_8 : ModelUM.digits9_9;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * LayoutCheck passes every sample, also with its text drawn elsewhere by a
+ * pixel, and tells images without the frame of UM meteogram.
+ */
+class LayoutCheckTest {
+
+    private static final int COLOR_BACKGROUND = 0xfffbf0;
+
+    @Test
+    void samplesPass() throws Exception {
+        for (String name : Samples.NAMES) {
+            assertTrue(LayoutCheck.check(Samples.pixels(name)).isValid(), name);
+            assertTrue(LayoutCheck.check(Samples.indexed(name)).isValid(), name + " decoded");
+        }
+    }
+
+    @Test
+    void textRenderedDifferentlyPasses() throws Exception {
+        for (String name : Samples.NAMES) {
+            int[] pixels = Samples.pixels(name);
+            // title one pixel to the right, axis titles and labels left of charts one pixel down
+            for (int y = 1; y < 50; y++) {
+                int row = y * ModelUM.WIDTH;
+                System.arraycopy(pixels, row, pixels, row + 1, ModelUM.WIDTH - 1);
+            }
+            for (int y = ModelUM.HEIGHT - 1; y > 50; y--) {
+                System.arraycopy(pixels, (y - 1) * ModelUM.WIDTH + 1, pixels, y * ModelUM.WIDTH + 1, 50);
+            }
+            LayoutCheck.Verdict verdict = LayoutCheck.check(pixels);
+            assertTrue(verdict.isValid(), name + ": " + verdict);
+        }
+    }
+
+    @Test
+    void imagesWithoutFrameFail() throws Exception {
+        int[] blank = new int[ModelUM.WIDTH * ModelUM.HEIGHT];
+        Arrays.fill(blank, COLOR_BACKGROUND);
+        LayoutCheck.Verdict verdict = LayoutCheck.check(blank);
+        assertEquals(LayoutCheck.VERDICT_FRAME, verdict.getCode());
+        assertEquals(LayoutCheck.PROBE_COUNT - 9, verdict.getMismatches());
+
+        int[] moved = Samples.pixels("mgram1.png");
+        // chart panels one pixel up
+        System.arraycopy(moved, ModelUM.WIDTH, moved, 0, moved.length - ModelUM.WIDTH);
+        assertEquals(LayoutCheck.VERDICT_FRAME, LayoutCheck.check(moved).getCode());
+
+        assertEquals(LayoutCheck.VERDICT_SIZE, LayoutCheck.check(new int[ModelUM.WIDTH * 10]).getCode());
+        assertFalse(LayoutCheck.check(new int[blank.length]).isValid());
+    }
+}
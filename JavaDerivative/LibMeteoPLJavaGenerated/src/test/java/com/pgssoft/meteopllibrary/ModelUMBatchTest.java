@@ -0,0 +1,178 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ModelUMBatch: values of files as parsed one by one, also by a parser given to
+ * the batch, layout check on and off, interrupt of the calling thread and close().
+ */
+class ModelUMBatchTest {
+
+    private static final int FILES = 24;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void batchGivesValuesOfSingleParse() throws Exception {
+        try (ModelUMBatch batch = new ModelUMBatch(Samples.utils(), true)) {
+            List<ModelUMBatch.Item> items = batch.parse(files());
+            assertEquals(FILES, items.size());
+            for (ModelUMBatch.Item item : items) {
+                assertNull(item.getError());
+                String name = Samples.NAMES[item.getIndex() % Samples.NAMES.length];
+                ModelUMResult expected = new ModelUM(Samples.pixels(name), Samples.utils(), true).getResult();
+                Samples.assertSameValues(expected, item.getResult(), name);
+            }
+        }
+    }
+
+    @Test
+    void batchParsesWithGivenParser() throws Exception {
+        GapFiller filler = new GapFiller(GapFiller.HOLES_NEAREST, GapFiller.EDGES_NONE, 5);
+        AtomicInteger parsed = new AtomicInteger();
+        ModelUM parser = new ModelUM(Samples.utils(), filler, null, (result, metrics) -> parsed.incrementAndGet());
+        try (ModelUMBatch batch = new ModelUMBatch(parser, ForkJoinPool.commonPool(), 4, null, true)) {
+            assertNull(batch.getScaleCache());
+            List<ModelUMBatch.Item> items = batch.parse(files());
+            assertEquals(FILES, parsed.get());
+            ModelUM single = new ModelUM(Samples.utils(), filler, null);
+            for (ModelUMBatch.Item item : items) {
+                assertNull(item.getError());
+                String name = Samples.NAMES[item.getIndex() % Samples.NAMES.length];
+                ModelUMResult expected = new ModelUMResult();
+                single.parse(Samples.source(name), expected);
+                Samples.assertSameValues(expected, item.getResult(), name);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ModelUMBatch(
+                new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true), ForkJoinPool.commonPool(), 4, null, true));
+    }
+
+    @Test
+    void layoutCheckCanBeTurnedOff() throws Exception {
+        int[] pixels = Samples.pixels("mgram1.png");
+        // a frame line painted over, as another renderer might draw it
+        Arrays.fill(pixels, 0, ModelUM.WIDTH, 0x000000);
+        BufferedImage image = new BufferedImage(ModelUM.WIDTH, ModelUM.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, ModelUM.WIDTH, ModelUM.HEIGHT, pixels, 0, ModelUM.WIDTH);
+        Path file = directory.resolve("frame.png");
+        ImageIO.write(image, "png", file.toFile());
+        List<Path> files = Collections.singletonList(file);
+
+        try (ModelUMBatch batch = new ModelUMBatch(Samples.utils(), true)) {
+            assertInstanceOf(IllegalArgumentException.class, batch.parse(files).get(0).getError());
+        }
+        try (ModelUMBatch batch = new ModelUMBatch(Samples.utils(), true, ForkJoinPool.commonPool(), 1, null, false)) {
+            ModelUMBatch.Item item = batch.parse(files).get(0);
+            assertNull(item.getError());
+            Samples.assertSameValues(new ModelUM(pixels, Samples.utils(), true).getResult(), item.getResult(),
+                    "frame.png");
+        }
+    }
+
+    @Test
+    void brokenPngIsNotDecodedAgain() throws Exception {
+        byte[] png = Samples.bytes("mgram1.png");
+        Path file = directory.resolve("truncated.png");
+        byte[] truncated = Arrays.copyOf(png, png.length / 2);
+        Files.write(file, truncated);
+        PngDecoder decoder = new PngDecoder();
+        IOException expected;
+        try {
+            expected = assertThrows(IOException.class,
+                    () -> decoder.decode(truncated, 0, truncated.length, PngDecoder.MODELUM_ROWS));
+        } finally {
+            decoder.end();
+        }
+
+        try (ModelUMBatch batch = new ModelUMBatch(Samples.utils(), true)) {
+            Exception error = batch.parse(Collections.singletonList(file)).get(0).getError();
+            // error of PngDecoder, not of ImageIO reading the file again
+            assertEquals(expected.getClass(), error.getClass());
+            assertEquals(expected.getMessage(), error.getMessage());
+        }
+    }
+
+    @Test
+    void interruptedBatchDoesNotCallListenerAfterThrowing() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ModelUMBatch batch = new ModelUMBatch(Samples.utils(), true, executor, 2)) {
+            AtomicInteger calls = new AtomicInteger();
+            CountDownLatch firstParsed = new CountDownLatch(1);
+            AtomicInteger callsAtThrow = new AtomicInteger(-1);
+            AtomicReference<Throwable> thrown = new AtomicReference<>();
+            Thread caller = new Thread(() -> {
+                try {
+                    batch.parse(files(), item -> {
+                        calls.incrementAndGet();
+                        firstParsed.countDown();
+                        try {
+                            Thread.sleep(50); // keeps files in flight while caller is interrupted
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                } catch (Throwable e) {
+                    callsAtThrow.set(calls.get());
+                    thrown.set(e);
+                }
+            });
+            caller.start();
+            assertTrue(firstParsed.await(30, TimeUnit.SECONDS));
+            caller.interrupt();
+            caller.join(30000);
+
+            assertInstanceOf(InterruptedException.class, thrown.get());
+            assertTrue(callsAtThrow.get() < FILES, "every file was parsed");
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals(callsAtThrow.get(), calls.get(), "listener called after parse() threw");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closedBatchReleasesDecoders() throws Exception {
+        ModelUMBatch batch = new ModelUMBatch(Samples.utils(), true);
+        batch.parse(files());
+        assertFalse(batch.decoders.isEmpty());
+        batch.close();
+        assertTrue(batch.decoders.isEmpty());
+        assertThrows(IllegalStateException.class, () -> batch.parse(files()));
+    }
+
+    private static List<Path> files() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            files.add(Samples.file(Samples.NAMES[i % Samples.NAMES.length]).toPath());
+        }
+        return files;
+    }
+}
@@ -0,0 +1,82 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * ParseMetrics counters change only in measured parses, samples filled by
+ * GapFiller are counted once each, pressure in mm Hg included, and missing
+ * columns are counted per series.
+ */
+class ParseMetricsTest {
+
+    @Test
+    void parsesNotMeasuredLeaveCounters() throws Exception {
+        int[] calls = new int[1];
+        ModelUM measured = new ModelUM(Samples.utils(), GapFiller.DEFAULT, null, (result, metrics) -> calls[0]++);
+        ModelUM plain = new ModelUM(Samples.utils(), true);
+        ModelUMResult result = new ModelUMResult();
+        ModelUMResult previous = new ModelUMResult();
+        for (String name : Samples.NAMES) {
+            measured.parse(Samples.source(name), result);
+            ParseMetrics metrics = result.metrics;
+            int probes = metrics.getGlyphProbes();
+            int filled = metrics.getFilledSamples();
+            int failures = metrics.getScaleFailures();
+            assertTrue(probes > 0, name);
+
+            for (String other : Samples.NAMES) {
+                plain.parse(Samples.source(other), result);
+                plain.parse(Samples.source(other), previous);
+                plain.reparse(Samples.source(other), previous, Samples.source(name), result);
+            }
+            assertEquals(probes, metrics.getGlyphProbes(), name);
+            assertEquals(filled, metrics.getFilledSamples(), name);
+            assertEquals(failures, metrics.getScaleFailures(), name);
+
+            // measured again, counted from zero
+            measured.parse(Samples.source(name), result);
+            assertEquals(probes, metrics.getGlyphProbes(), name);
+            assertEquals(filled, metrics.getFilledSamples(), name);
+        }
+        assertEquals(2 * Samples.NAMES.length, calls[0]);
+    }
+
+    @Test
+    void missingColumnsAreCountedPerSeries() throws Exception {
+        ModelUM measured = new ModelUM(Samples.utils(), null, null, (result, metrics) -> { });
+        ModelUMResult result = new ModelUMResult();
+        for (String name : Samples.NAMES) {
+            measured.parse(Samples.source(name), result);
+            for (int type : ParseMetrics.TYPES) {
+                int missing = 0;
+                for (double sample : result.getSamples(type)) {
+                    if (sample == ModelUM.NOVALUE || sample == -ModelUM.NOVALUE) {
+                        missing++;
+                    }
+                }
+                assertEquals(missing, result.metrics.getMissingColumns(type), name + ", type " + type);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> result.metrics.getMissingColumns(ModelUM.TYPE_DAYNIGHT));
+    }
+
+    @Test
+    void fillPressureCountsSamplesWritten() {
+        ModelUMResult result = new ModelUMResult();
+        Arrays.fill(result.pressurehPa, 1000);
+        Arrays.fill(result.pressuremmHg, ModelUM.hPaTommHg(1000));
+        // 10 samples missing in both series, 5 more only in mm Hg
+        Arrays.fill(result.pressurehPa, 100, 110, ModelUM.NOVALUE);
+        Arrays.fill(result.pressuremmHg, 100, 115, ModelUM.NOVALUE);
+        assertEquals(10 + 15, GapFiller.DEFAULT.fillPressure(result));
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            assertEquals(ModelUM.hPaTommHg(1000), result.pressuremmHg[x], 1e-9);
+        }
+    }
+}
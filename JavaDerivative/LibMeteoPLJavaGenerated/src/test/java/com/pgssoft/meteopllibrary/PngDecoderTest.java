@@ -0,0 +1,214 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PngDecoder on a sample re-encoded with every PNG filter type, compared with
+ * ImageIO; decoding of top rows only, and images it must reject, telling
+ * formats it does not decode from broken images.
+ */
+class PngDecoderTest {
+
+    private static final int FILTER_MIXED = -1; // filter type of row y is y % 5
+
+    private PngDecoder decoder;
+    private byte[] indices;
+    private int[] palette;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        decoder = new PngDecoder();
+        BufferedImage image = ImageIO.read(Samples.file("mgram1.png"));
+        IndexColorModel colors = (IndexColorModel) image.getColorModel();
+        palette = new int[colors.getMapSize()];
+        colors.getRGBs(palette);
+        indices = new byte[ModelUM.WIDTH * ModelUM.HEIGHT];
+        for (int y = 0; y < ModelUM.HEIGHT; y++) {
+            for (int x = 0; x < ModelUM.WIDTH; x++) {
+                indices[y * ModelUM.WIDTH + x] = (byte) image.getRaster().getSample(x, y, 0);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        decoder.end();
+    }
+
+    @Test
+    void everyFilterTypeDecodesAsImageIO() throws Exception {
+        for (int filter : new int[] {0, 1, 2, 3, 4, FILTER_MIXED}) {
+            byte[] png = encode(ModelUM.WIDTH, ModelUM.HEIGHT, indices, palette, filter, 3, 8);
+            BufferedImage expected = ImageIO.read(new ByteArrayInputStream(png));
+            PixelSource actual = decoder.decode(png, 0, png.length, Integer.MAX_VALUE);
+            for (int y = 0; y < ModelUM.HEIGHT; y++) {
+                for (int x = 0; x < ModelUM.WIDTH; x++) {
+                    if ((expected.getRGB(x, y) & 0xffffff) != actual.getPixel(x, y)) {
+                        assertEquals(expected.getRGB(x, y) & 0xffffff, actual.getPixel(x, y),
+                                "filter " + filter + ", pixel " + x + ", " + y);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void rowsBelowLimitAreZero() throws Exception {
+        byte[] png = encode(ModelUM.WIDTH, ModelUM.HEIGHT, indices, palette, FILTER_MIXED, 3, 8);
+        // whole image first, so the rows left from it must be cleared
+        decoder.decode(png, 0, png.length, Integer.MAX_VALUE);
+        int rows = 100;
+        PixelSource pixels = decoder.decode(new ByteArrayInputStream(png), rows);
+        for (int y = 0; y < ModelUM.HEIGHT; y++) {
+            for (int x = 0; x < ModelUM.WIDTH; x++) {
+                int expected = y < rows ? indices[y * ModelUM.WIDTH + x] & 0xff : 0;
+                if (expected != pixels.getKey(x, y)) {
+                    assertEquals(expected, pixels.getKey(x, y), "pixel " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void otherImagesAreRejected() throws Exception {
+        byte[] small = encode(100, 100, new byte[100 * 100], palette, 0, 3, 8);
+        assertNotUnsupported(assertThrows(IOException.class,
+                () -> decoder.decode(small, 0, small.length, Integer.MAX_VALUE)));
+
+        // formats other decoders may read
+        BufferedImage rgb = new BufferedImage(ModelUM.WIDTH, ModelUM.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (String format : new String[] {"png", "bmp"}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(rgb, format, out);
+            byte[] other = out.toByteArray();
+            assertThrows(PngDecoder.UnsupportedFormatException.class,
+                    () -> decoder.decode(other, 0, other.length, Integer.MAX_VALUE), format);
+        }
+        byte[] grey = encode(ModelUM.WIDTH, ModelUM.HEIGHT, indices, palette, 0, 0, 8);
+        assertThrows(PngDecoder.UnsupportedFormatException.class,
+                () -> decoder.decode(grey, 0, grey.length, Integer.MAX_VALUE));
+        byte[] packed = encode(ModelUM.WIDTH, ModelUM.HEIGHT, indices, palette, 0, 3, 4);
+        assertThrows(PngDecoder.UnsupportedFormatException.class,
+                () -> decoder.decode(packed, 0, packed.length, Integer.MAX_VALUE));
+
+        byte[] png = encode(ModelUM.WIDTH, ModelUM.HEIGHT, indices, palette, FILTER_MIXED, 3, 8);
+        // cut inside IDAT data, and inside the chunks before it
+        for (int length : new int[] {png.length / 2, 200}) {
+            assertNotUnsupported(assertThrows(IOException.class,
+                    () -> decoder.decode(png, 0, length, Integer.MAX_VALUE), "length " + length));
+        }
+        byte[] few = encode(ModelUM.WIDTH, ModelUM.HEIGHT, indices, palette, 0, 3, 8, 10); // IDAT ends after 10 rows
+        assertNotUnsupported(assertThrows(IOException.class, () -> decoder.decode(few, 0, few.length, Integer.MAX_VALUE)));
+
+        // decoder is still usable after failures
+        PixelSource pixels = decoder.decode(png, 0, png.length, Integer.MAX_VALUE);
+        assertEquals(indices[ModelUM.WIDTH * 300 + 200] & 0xff, pixels.getKey(200, 300));
+    }
+
+    // broken or wrong image, not one to give to another decoder
+    private static void assertNotUnsupported(IOException e) {
+        assertFalse(e instanceof PngDecoder.UnsupportedFormatException, e.toString());
+    }
+
+    static byte[] encode(int width, int height, byte[] indices, int[] palette, int filter, int colorType,
+            int bitDepth) throws IOException {
+        return encode(width, height, indices, palette, filter, colorType, bitDepth, height);
+    }
+
+    /*
+     * PNG of given palette indices, each row with given filter type; only the first rows rows are in IDAT
+     */
+    static byte[] encode(int width, int height, byte[] indices, int[] palette, int filter, int colorType,
+            int bitDepth, int rows) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(png);
+        out.writeLong(0x89504E470D0A1A0AL);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.write(new byte[] {(byte) bitDepth, (byte) colorType, 0, 0, 0});
+        chunk(out, "IHDR", header.toByteArray());
+
+        byte[] plte = new byte[3 * palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            plte[3 * i] = (byte) (palette[i] >> 16);
+            plte[3 * i + 1] = (byte) (palette[i] >> 8);
+            plte[3 * i + 2] = (byte) palette[i];
+        }
+        chunk(out, "PLTE", plte);
+
+        byte[] raw = new byte[rows * (width + 1)];
+        for (int y = 0; y < rows; y++) {
+            int type = filter == FILTER_MIXED ? y % 5 : filter;
+            int line = y * (width + 1);
+            raw[line] = (byte) type;
+            for (int x = 0; x < width; x++) {
+                int a = x > 0 ? indices[y * width + x - 1] & 0xff : 0;
+                int b = y > 0 ? indices[(y - 1) * width + x] & 0xff : 0;
+                int c = x > 0 && y > 0 ? indices[(y - 1) * width + x - 1] & 0xff : 0;
+                int predictor;
+                switch (type) {
+                    case 1: predictor = a; break;
+                    case 2: predictor = b; break;
+                    case 3: predictor = (a + b) >>> 1; break;
+                    case 4: predictor = paeth(a, b, c); break;
+                    default: predictor = 0;
+                }
+                raw[line + 1 + x] = (byte) ((indices[y * width + x] & 0xff) - predictor);
+            }
+        }
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            data.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        // data in two IDAT chunks
+        byte[] idat = data.toByteArray();
+        chunk(out, "IDAT", Arrays.copyOf(idat, idat.length / 2));
+        chunk(out, "IDAT", Arrays.copyOfRange(idat, idat.length / 2, idat.length));
+        chunk(out, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+
+    private static void chunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] name = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(name);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,123 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * ModelUM.reparse() gives exactly the values of parse() of the new image,
+ * whatever part of it is equal to the previous one: chains of reparses over
+ * the samples, scale label bands or chart columns changed, previous images
+ * having no area in common with the new one.
+ */
+class ReparseTest {
+
+    @Test
+    void chainOfReparsesGivesValuesOfParse() throws Exception {
+        // every sample after every other one, then each again unchanged
+        String[] chain = {
+            "mgram1.png", "mgram2.png", "mgram_snow.png", "mgram1.png", "mgram1.png",
+            "mgram_snow.png", "mgram2.png", "mgram2.png", "mgram1.png", "mgram_snow.png", "mgram_snow.png"};
+        for (boolean heuristic : new boolean[] {true, false}) {
+            for (boolean indexed : new boolean[] {false, true}) {
+                PixelSource[] images = new PixelSource[chain.length];
+                for (int i = 0; i < chain.length; i++) {
+                    images[i] = indexed ? Samples.indexed(chain[i]) : Samples.source(chain[i]);
+                }
+                assertChain(new ModelUM(Samples.utils(), heuristic), images,
+                        "heuristic " + heuristic + (indexed ? ", decoded" : ""));
+            }
+        }
+    }
+
+    @Test
+    void changedScaleLabelsAreReadAgain() throws Exception {
+        int[] base = Samples.pixels("mgram1.png");
+        int[] other = Samples.pixels("mgram2.png");
+        int[] temperature = copyArea(base, other, ModelUM.TEMPERATURE_TEXT_COL, ModelUM.TEMPERATURE_LABEL_ROW,
+                ModelUM.TEMPERATURE_LABEL_WIDTH, ModelUM.TEMPERATURE_LABEL_ROWS);
+        int[] pressure = copyArea(base, other, ModelUM.PRESSURE_TEXT_COL, ModelUM.PRESSURE_LABEL_ROW,
+                ModelUM.PRESSURE_LABEL_WIDTH, ModelUM.PRESSURE_LABEL_ROWS);
+        assertFalse(PixelSource.sameArea(source(base), source(temperature), ModelUM.TEMPERATURE_TEXT_COL,
+                ModelUM.TEMPERATURE_LABEL_ROW, ModelUM.TEMPERATURE_LABEL_WIDTH, ModelUM.TEMPERATURE_LABEL_ROWS));
+        assertFalse(PixelSource.sameArea(source(base), source(pressure), ModelUM.PRESSURE_TEXT_COL,
+                ModelUM.PRESSURE_LABEL_ROW, ModelUM.PRESSURE_LABEL_WIDTH, ModelUM.PRESSURE_LABEL_ROWS));
+
+        ModelUM parser = new ModelUM(Samples.utils(), true);
+        assertChain(parser, new PixelSource[] {source(base), source(temperature), source(base)}, "temperature scale");
+        assertChain(parser, new PixelSource[] {source(base), source(pressure), source(base)}, "pressure scale");
+        assertChain(parser, new PixelSource[] {source(temperature), source(pressure)}, "both scales");
+    }
+
+    @Test
+    void changedChartColumnsAreReadAgain() throws Exception {
+        int[] base = Samples.pixels("mgram1.png");
+        int[] changed = base.clone();
+        // temperature line moved in one block of columns, one pressure column painted black
+        for (int y = ModelUM.TEMPERATURE_ROW_START; y <= ModelUM.TEMPERATURE_ROW_END; y++) {
+            changed[y * ModelUM.WIDTH + ModelUM.CHART_START_COL + 100] = ModelUM.COLOR_TEMPERATURE_RED;
+        }
+        for (int y = ModelUM.PRESSURE_ROW_START; y < ModelUM.PRESSURE_ROW_START + ModelUM.PRESSURE_PANEL_HEIGHT; y++) {
+            changed[y * ModelUM.WIDTH + ModelUM.CHART_START_COL + 250] = ModelUM.COLOR_BLACK;
+        }
+        assertChain(new ModelUM(Samples.utils(), true), new PixelSource[] {source(base), source(changed), source(base)},
+                "chart columns");
+    }
+
+    @Test
+    void previousImageWithNothingInCommonIsNotUsed() throws Exception {
+        int[] blank = new int[ModelUM.WIDTH * ModelUM.HEIGHT];
+        Arrays.fill(blank, 0xfffbf0);
+        PixelSource image = Samples.source("mgram1.png");
+        assertFalse(PixelSource.sameArea(source(blank), image, ModelUM.CHART_START_COL, ModelUM.TEMPERATURE_ROW_START,
+                ModelUM.CHART_WIDTH, ModelUM.TEMPERATURE_PANEL_HEIGHT));
+
+        ModelUM parser = new ModelUM(Samples.utils(), true);
+        ModelUMResult expected = new ModelUMResult();
+        parser.parse(image, expected);
+        // holder of blank image parsed, then of image the other way round
+        assertChain(parser, new PixelSource[] {source(blank), image, source(blank)}, "blank previous image");
+
+        // previous holder with sections not parsed is not used at all
+        ModelUM lazy = new ModelUM(Samples.pixels("mgram2.png"), Samples.utils(), true, true);
+        lazy.getSamples(ModelUM.TYPE_PRESSURE_HPA);
+        ModelUMResult result = new ModelUMResult();
+        parser.reparse(Samples.source("mgram2.png"), lazy.getResult(), image, result);
+        Samples.assertSameValues(expected, result, "lazy previous holder");
+    }
+
+    /*
+     * parse the first image, reparse each next one from the one before, two holders taking turns;
+     * every holder must have values of parse() of its image
+     */
+    private static void assertChain(ModelUM parser, PixelSource[] images, String message) {
+        ModelUMResult previous = new ModelUMResult();
+        ModelUMResult result = new ModelUMResult();
+        ModelUMResult expected = new ModelUMResult();
+        parser.parse(images[0], previous);
+        for (int i = 1; i < images.length; i++) {
+            parser.reparse(images[i - 1], previous, images[i], result);
+            parser.parse(images[i], expected);
+            Samples.assertSameValues(expected, result, message + ", image " + i);
+            assertTrue(result.temperatureIndexed && result.pressureIndexed);
+            ModelUMResult swap = previous;
+            previous = result;
+            result = swap;
+        }
+    }
+
+    private static int[] copyArea(int[] into, int[] from, int x0, int y0, int width, int height) {
+        int[] copy = into.clone();
+        for (int y = y0; y < y0 + height; y++) {
+            System.arraycopy(from, y * ModelUM.WIDTH + x0, copy, y * ModelUM.WIDTH + x0, width);
+        }
+        return copy;
+    }
+
+    private static PixelSource source(int[] pixels) {
+        return PixelSource.ofRGB(pixels, ModelUM.WIDTH, ModelUM.HEIGHT);
+    }
+}
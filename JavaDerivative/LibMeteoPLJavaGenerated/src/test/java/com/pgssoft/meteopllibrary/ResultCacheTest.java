@@ -0,0 +1,88 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * ResultCache on disk: results survive reopening, timestamps are made by Utils
+ * of the parser loading them, files left half written are deleted when the
+ * cache opens.
+ */
+class ResultCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedCacheGivesStoredResult() throws Exception {
+        ModelUM parser = new ModelUM(Samples.utils(), true);
+        byte[] png = Samples.bytes("mgram1.png");
+        ModelUMResult expected = new ModelUMResult();
+        parser.parse(Samples.indexed("mgram1.png"), expected);
+        new ResultCache(0, directory, 1 << 20).store(parser, png, 0, png.length, expected);
+
+        ResultCache cache = new ResultCache(0, directory, 1 << 20);
+        ModelUMResult result = new ModelUMResult();
+        assertTrue(cache.load(parser, png, 0, png.length, result));
+        assertEquals(1, cache.getDiskHits());
+        Samples.assertSameValues(expected, result, "mgram1.png");
+    }
+
+    @Test
+    void timestampIsMadeByUtilsOfLoadingParser() throws Exception {
+        // a year later than Samples, as Utils inferring the year from the current date would give
+        Utils later = new Utils() {
+            @Override
+            public long getTimestamp(int m, int d, double hour) {
+                return Samples.utils().getTimestamp(m, d, hour) + 365L * 24 * 60 * 60 * 1000;
+            }
+
+            @Override
+            public void throwException(String description) {
+                throw new RuntimeException(description);
+            }
+        };
+        byte[] png = Samples.bytes("mgram2.png");
+        ModelUM parser = new ModelUM(Samples.utils(), true);
+        ModelUMResult stored = new ModelUMResult();
+        parser.parse(Samples.indexed("mgram2.png"), stored);
+        new ResultCache(1 << 20, directory, 1 << 20).store(parser, png, 0, png.length, stored);
+
+        ModelUM laterParser = new ModelUM(later, true);
+        ModelUMResult expected = new ModelUMResult();
+        laterParser.parse(Samples.indexed("mgram2.png"), expected);
+        assertTrue(expected.timestamp != stored.timestamp);
+
+        // from disk, then from memory
+        ResultCache cache = new ResultCache(1 << 20, directory, 1 << 20);
+        for (int i = 0; i < 2; i++) {
+            ModelUMResult result = new ModelUMResult();
+            assertTrue(cache.load(laterParser, png, 0, png.length, result));
+            Samples.assertSameValues(expected, result, "mgram2.png, load " + i);
+            result = new ModelUMResult();
+            assertTrue(cache.load(parser, png, 0, png.length, result));
+            Samples.assertSameValues(stored, result, "mgram2.png, load " + i);
+        }
+        assertEquals(1, cache.getDiskHits());
+    }
+
+    @Test
+    void openingCacheDeletesTemporaryFiles() throws Exception {
+        // as left by a crash between write and rename
+        Path temp = Files.createTempFile(directory, "result", ".tmp");
+        Files.write(temp, new byte[100]);
+        Path other = Files.write(directory.resolve("notes.tmp"), new byte[1]);
+
+        ResultCache cache = new ResultCache(0, directory, 1 << 20);
+        assertFalse(Files.exists(temp));
+        assertTrue(Files.exists(other), "file not written by cache was deleted");
+        assertEquals(0, cache.getDiskEntries());
+    }
+}
@@ -0,0 +1,198 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ResultFileWriter and ResultFileReader over the samples: every sample, NOVALUE
+ * bit and scale of many records comes back as written, a record cut short is
+ * not seen, files of other magic or version are refused, and records copied
+ * from a reader are the same bytes.
+ */
+class ResultFileTest {
+
+    private static final int RUNS = 20;
+    private static final long RUN_STEP = 6 * 60 * 60 * 1000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsReadBackAsWritten() throws Exception {
+        Path file = directory.resolve("results.umcf");
+        List<ModelUM> parsers = parsers();
+        int written = write(file, parsers);
+
+        try (ResultFileReader reader = new ResultFileReader(file)) {
+            assertEquals(written, reader.getRecordCount());
+            assertEquals(ModelUM.CHART_WIDTH, reader.getWidth());
+            assertArrayEquals(ResultFileWriter.TYPES, reader.getTypes());
+            double[] samples = new double[ModelUM.CHART_WIDTH];
+            long[] missing = new long[RowClassifier.words(ModelUM.CHART_WIDTH)];
+            for (int record = 0; record < written; record++) {
+                ModelUM parser = parsers.get(record % parsers.size());
+                ModelUMResult result = parser.getResult();
+                assertEquals(result.timestamp + record / parsers.size() * RUN_STEP, reader.getTimestamp(record));
+                for (int type : ResultFileWriter.TYPES) {
+                    String at = "record " + record + ", type " + type;
+                    assertTrue(reader.hasSeries(type), at);
+                    assertEquals(parser.getPrecision(type), reader.getPrecision(record, type), at);
+                    assertEquals(type == ModelUM.TYPE_PRESSURE_HPA || type == ModelUM.TYPE_PRESSURE_MMHG
+                            ? result.pressure_row0_hPa : result.temperature_row0, reader.getRow0(record, type), at);
+                    double[] expected = result.getSamples(type);
+                    reader.getSamples(record, type, samples);
+                    reader.getMissing(record, type, missing);
+                    for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                        boolean novalue = expected[x] == ModelUM.NOVALUE || expected[x] == -ModelUM.NOVALUE;
+                        assertEquals((float) expected[x], reader.getSample(record, type, x), at + ", sample " + x);
+                        assertEquals((float) expected[x], samples[x], at + ", sample " + x);
+                        assertEquals(novalue, reader.isMissing(record, type, x), at + ", sample " + x);
+                        assertEquals(novalue, (missing[x >>> 6] & (1L << x)) != 0, at + ", sample " + x);
+                    }
+                }
+            }
+            assertTrue(!reader.hasSeries(ModelUM.TYPE_HUMIDITY));
+            assertThrows(IllegalArgumentException.class, () -> reader.getSample(0, ModelUM.TYPE_HUMIDITY, 0));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.getSample(0, ModelUM.TYPE_TEMPERATURE, ModelUM.CHART_WIDTH));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.getTimestamp(written));
+        }
+    }
+
+    @Test
+    void recordCutShortIsNotSeen() throws Exception {
+        Path file = directory.resolve("results.umcf");
+        List<ModelUM> parsers = parsers();
+        int written = write(file, parsers);
+        long size = Files.size(file);
+        int recordSize = ResultFileWriter.recordSize(ModelUM.CHART_WIDTH, ResultFileWriter.TYPES.length);
+        // writer killed in the middle of the next record
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            out.write(new byte[recordSize / 2]);
+        }
+
+        try (ResultFileReader reader = new ResultFileReader(file)) {
+            assertEquals(written, reader.getRecordCount());
+            int last = written - 1;
+            ModelUMResult result = parsers.get(last % parsers.size()).getResult();
+            assertEquals(result.timestamp + (RUNS - 1) * RUN_STEP, reader.getTimestamp(last));
+            assertEquals((float) result.temperature[ModelUM.CHART_WIDTH - 1],
+                    reader.getSample(last, ModelUM.TYPE_TEMPERATURE, ModelUM.CHART_WIDTH - 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.getTimestamp(written));
+        }
+        assertEquals(size + recordSize / 2, Files.size(file));
+    }
+
+    @Test
+    void otherFilesAreRefused() throws Exception {
+        Path file = directory.resolve("results.umcf");
+        write(file, parsers());
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path magic = directory.resolve("magic.umcf");
+        Files.write(magic, header(bytes, 0, 0x474e5089));
+        IOException e = assertThrows(IOException.class, () -> new ResultFileReader(magic));
+        assertTrue(e.getMessage().startsWith("Not a meteogram result file"), e.getMessage());
+
+        Path version = directory.resolve("version.umcf");
+        Files.write(version, header(bytes, 4, ResultFileWriter.VERSION + 1));
+        e = assertThrows(IOException.class, () -> new ResultFileReader(version));
+        assertTrue(e.getMessage().startsWith("Unsupported result file version"), e.getMessage());
+
+        Path empty = directory.resolve("empty.umcf");
+        Files.write(empty, Arrays.copyOf(bytes, 10));
+        assertThrows(IOException.class, () -> new ResultFileReader(empty));
+    }
+
+    @Test
+    void copiedRecordsAreSameBytes() throws Exception {
+        Path file = directory.resolve("results.umcf");
+        List<ModelUM> parsers = parsers();
+        int written = write(file, parsers);
+        Path copy = directory.resolve("copy.umcf");
+        int count;
+        try (ResultFileReader reader = new ResultFileReader(file);
+             ResultFileWriter writer = new ResultFileWriter(Files.newOutputStream(copy))) {
+            // every other record, last first
+            for (long record = reader.getRecordCount() - 1; record >= 0; record -= 2) {
+                writer.write(reader, record);
+            }
+            count = (int) writer.getRecordCount();
+        }
+
+        byte[] source = Files.readAllBytes(file);
+        byte[] copied = Files.readAllBytes(copy);
+        int header = ResultFileWriter.headerSize(ResultFileWriter.TYPES.length);
+        int recordSize = ResultFileWriter.recordSize(ModelUM.CHART_WIDTH, ResultFileWriter.TYPES.length);
+        assertEquals(header + (long) count * recordSize, copied.length);
+        assertArrayEquals(Arrays.copyOf(source, header), Arrays.copyOf(copied, header));
+        for (int i = 0; i < count; i++) {
+            int record = written - 1 - 2 * i;
+            assertArrayEquals(Arrays.copyOfRange(source, header + record * recordSize, header + (record + 1) * recordSize),
+                    Arrays.copyOfRange(copied, header + i * recordSize, header + (i + 1) * recordSize), "record " + record);
+        }
+        try (ResultFileReader reader = new ResultFileReader(copy)) {
+            assertEquals(count, reader.getRecordCount());
+            assertEquals(parsers.get(parsers.size() - 1).getResult().timestamp + (RUNS - 1) * RUN_STEP, reader.getTimestamp(0));
+        }
+    }
+
+    @Test
+    void partlyParsedResultIsRefused() throws Exception {
+        // lazy parser has parsed nothing yet
+        ModelUMResult result = new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true, true).getResult();
+        try (ResultFileWriter writer = new ResultFileWriter(Files.newOutputStream(directory.resolve("results.umcf")))) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(result));
+            assertEquals(0, writer.getRecordCount());
+        }
+        assertEquals(ResultFileWriter.headerSize(ResultFileWriter.TYPES.length), Files.size(directory.resolve("results.umcf")));
+    }
+
+    // each sample parsed with and without heuristic
+    private static List<ModelUM> parsers() throws IOException {
+        List<ModelUM> parsers = new ArrayList<>();
+        for (String name : Samples.NAMES) {
+            parsers.add(new ModelUM(Samples.pixels(name), Samples.utils(), true));
+            parsers.add(new ModelUM(Samples.pixels(name), Samples.utils(), false));
+        }
+        return parsers;
+    }
+
+    // RUNS rounds of every parser, each round six hours later; returns records written
+    private static int write(Path file, List<ModelUM> parsers) throws IOException {
+        try (ResultFileWriter writer = new ResultFileWriter(Files.newOutputStream(file))) {
+            for (int run = 0; run < RUNS; run++) {
+                for (ModelUM parser : parsers) {
+                    ModelUMResult result = parser.getResult();
+                    long timestamp = result.timestamp;
+                    result.timestamp = timestamp + run * RUN_STEP;
+                    writer.write(result);
+                    result.timestamp = timestamp;
+                }
+            }
+            assertEquals(RUNS * parsers.size(), writer.getRecordCount());
+            return (int) writer.getRecordCount();
+        }
+    }
+
+    private static byte[] header(byte[] bytes, int offset, int value) {
+        byte[] changed = bytes.clone();
+        ByteBuffer.wrap(changed).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return changed;
+    }
+}
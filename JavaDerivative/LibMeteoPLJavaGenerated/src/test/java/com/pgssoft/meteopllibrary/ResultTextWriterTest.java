@@ -0,0 +1,284 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ResultTextWriter output read back: CSV columns and JSON Lines keys in order
+ * with the holder's values, missing values as empty fields and nulls, rounding
+ * of hand formatted numbers, a buffer drained across many meteograms, and
+ * nothing allocated per value as measured by ThreadMXBean.
+ */
+class ResultTextWriterTest {
+
+    private static final String CSV_HEADER = "point,timestamp,temperature,temperature_min,temperature_max,"
+            + "temperature_perceptible,temperature_perceptible_min,temperature_perceptible_max,"
+            + "pressure_hpa,pressure_mmhg,daynight,temperature_precision,pressure_precision";
+    private static final String[] SERIES = {
+        "temperature", "temperature_min", "temperature_max",
+        "temperature_perceptible", "temperature_perceptible_min", "temperature_perceptible_max",
+        "pressure_hpa", "pressure_mmhg", "daynight"};
+
+    private static final int WRITES = 50;
+    private static final int MAX_ROUNDS = 50;
+    private static final long ALLOCATION_SLACK = 1024;
+
+    @Test
+    void csvHasHeaderAndColumnPerSeries() throws Exception {
+        for (String name : Samples.NAMES) {
+            ModelUMResult result = new ModelUM(Samples.pixels(name), Samples.utils(), false).getResult();
+            String[] lines = text(ResultTextWriter.FORMAT_CSV, 3, 42, result).split("\n", -1);
+            assertEquals(CSV_HEADER, lines[0]);
+            assertEquals(ModelUM.CHART_WIDTH + 2, lines.length, name);
+            assertEquals("", lines[lines.length - 1], name);
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                String[] fields = lines[x + 1].split(",", -1);
+                String at = name + ", column " + x;
+                assertEquals(2 + ResultFileWriter.TYPES.length + 2, fields.length, at);
+                assertEquals("42", fields[0], at);
+                assertEquals(Long.toString(result.getTimestamp(x)), fields[1], at);
+                for (int i = 0; i < ResultFileWriter.TYPES.length; i++) {
+                    assertValue(result.getSamples(ResultFileWriter.TYPES[i])[x], 3, fields[2 + i], "", at + ", " + SERIES[i]);
+                }
+                assertValue(result.temperature_precision, 6, fields[fields.length - 2], "", at);
+                assertValue(result.pressure_precision_hPa, 6, fields[fields.length - 1], "", at);
+            }
+        }
+    }
+
+    @Test
+    void jsonHasObjectPerLine() throws Exception {
+        List<ModelUMResult> results = new ArrayList<>();
+        for (String name : Samples.NAMES) {
+            results.add(new ModelUM(Samples.pixels(name), Samples.utils(), false).getResult());
+        }
+        String[] lines = text(ResultTextWriter.FORMAT_JSON, 2, -7, results.toArray(new ModelUMResult[0])).split("\n", -1);
+        assertEquals(results.size() + 1, lines.length);
+        assertEquals("", lines[results.size()]);
+        for (int i = 0; i < results.size(); i++) {
+            ModelUMResult result = results.get(i);
+            String line = lines[i];
+            String at = Samples.NAMES[i];
+            String head = "{\"point\":-7,\"timestamp\":" + result.timestamp + ",\"temperature_precision\":";
+            assertTrue(line.startsWith(head), at);
+            assertTrue(line.endsWith("]}"), at);
+            String[] precisions = line.substring(head.length(), line.indexOf(",\"timestamps\":[")).split(",\"pressure_precision\":", -1);
+            assertEquals(2, precisions.length, at);
+            assertValue(result.temperature_precision, 6, precisions[0], "null", at);
+            assertValue(result.pressure_precision_hPa, 6, precisions[1], "null", at);
+
+            // arrays in order, CHART_WIDTH values each
+            int from = line.indexOf(",\"timestamps\":[");
+            String[] timestamps = array(line, "timestamps", from);
+            for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                assertEquals(Long.toString(result.getTimestamp(x)), timestamps[x], at + ", timestamp " + x);
+            }
+            for (int s = 0; s < SERIES.length; s++) {
+                from = line.indexOf(",\"" + SERIES[s] + "\":[", from + 1);
+                assertTrue(from > 0, at + ", " + SERIES[s]);
+                String[] values = array(line, SERIES[s], from);
+                double[] samples = result.getSamples(ResultFileWriter.TYPES[s]);
+                for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+                    assertValue(samples[x], 2, values[x], "null", at + ", " + SERIES[s] + " " + x);
+                }
+            }
+        }
+    }
+
+    @Test
+    void missingValuesAreEmptyOrNull() throws Exception {
+        ModelUMResult result = holder();
+        result.temperature[1] = ModelUM.NOVALUE;
+        result.temperatureMax[1] = -ModelUM.NOVALUE;
+        result.temperaturePerc[1] = Double.NaN;
+        result.temperaturePercMin[1] = Double.NEGATIVE_INFINITY;
+        result.pressurehPa[1] = 1e13;
+        result.temperature_precision = Double.NaN;
+
+        String[] fields = text(ResultTextWriter.FORMAT_CSV, 1, 0, result).split("\n")[2].split(",", -1);
+        assertEquals("", fields[2]);
+        assertEquals("0.0", fields[3]);
+        assertEquals("", fields[4]);
+        assertEquals("", fields[5]);
+        assertEquals("", fields[6]);
+        assertEquals("", fields[8]);
+        assertEquals("", fields[11]);
+        assertEquals("0.500000", fields[12]);
+
+        String json = text(ResultTextWriter.FORMAT_JSON, 1, 0, result);
+        assertTrue(json.contains(",\"temperature_precision\":null,\"pressure_precision\":0.500000,"), json);
+        assertEquals("null", array(json, "temperature", json.indexOf(",\"temperature\":["))[1]);
+        assertEquals("null", array(json, "temperature_max", json.indexOf(",\"temperature_max\":["))[1]);
+        assertEquals("null", array(json, "temperature_perceptible", json.indexOf(",\"temperature_perceptible\":["))[1]);
+        assertEquals("null", array(json, "pressure_hpa", json.indexOf(",\"pressure_hpa\":["))[1]);
+        assertEquals("0.0", array(json, "temperature_min", json.indexOf(",\"temperature_min\":["))[1]);
+    }
+
+    @Test
+    void numbersAreRoundedHalfUp() throws Exception {
+        assertFormatted(2, 0.125, "0.13");
+        assertFormatted(2, -0.125, "-0.13");
+        assertFormatted(1, 0.05, "0.1");
+        assertFormatted(0, 2.5, "3");
+        assertFormatted(0, -2.5, "-3");
+        assertFormatted(0, 123.456, "123");
+        assertFormatted(3, 999.9996, "1000.000");
+        assertFormatted(3, 0.0005, "0.001");
+        assertFormatted(3, 1.02, "1.020");
+        assertFormatted(6, -12.000001, "-12.000001");
+        // negative values rounded to zero lose their sign
+        assertFormatted(2, -0.004, "0.00");
+        assertFormatted(0, -0.4, "0");
+        assertFormatted(3, -0.0, "0.000");
+        assertFormatted(3, 999_999_999_999.0, "999999999999.000");
+
+        for (long point : new long[] {0, -1, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, -9_000_000_000_000_000_000L}) {
+            String csv = text(ResultTextWriter.FORMAT_CSV, 0, point, holder());
+            assertEquals(point + ",", csv.split("\n")[1].substring(0, Long.toString(point).length() + 1));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new ResultTextWriter(new ByteArrayOutputStream(), 2, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResultTextWriter(new ByteArrayOutputStream(), ResultTextWriter.FORMAT_CSV, ResultTextWriter.MAX_DECIMALS + 1));
+        ModelUMResult lazy = new ModelUM(Samples.pixels("mgram1.png"), Samples.utils(), true, true).getResult();
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResultTextWriter(new ByteArrayOutputStream(), ResultTextWriter.FORMAT_JSON, 0).write(0, lazy));
+    }
+
+    @Test
+    void bufferIsDrainedAcrossMeteograms() throws Exception {
+        ModelUMResult[] results = new ModelUMResult[Samples.NAMES.length];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new ModelUM(Samples.pixels(Samples.NAMES[i]), Samples.utils(), true).getResult();
+        }
+        for (int format : new int[] {ResultTextWriter.FORMAT_CSV, ResultTextWriter.FORMAT_JSON}) {
+            // each meteogram by a writer of its own, header once
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (int i = 0; i < WRITES; i++) {
+                ByteArrayOutputStream one = new ByteArrayOutputStream();
+                try (ResultTextWriter writer = new ResultTextWriter(one, format, 4)) {
+                    writer.write(i, results[i % results.length]);
+                }
+                String text = one.toString(StandardCharsets.US_ASCII.name());
+                if (i > 0 && format == ResultTextWriter.FORMAT_CSV) {
+                    text = text.substring(CSV_HEADER.length() + 1);
+                }
+                expected.write(text.getBytes(StandardCharsets.US_ASCII));
+            }
+            assertTrue(expected.size() > 4 * ResultTextWriter.BUFFER_SIZE, expected.size() + " bytes");
+
+            List<Integer> writes = new ArrayList<>();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream() {
+                @Override
+                public synchronized void write(byte[] b, int off, int len) {
+                    writes.add(len);
+                    super.write(b, off, len);
+                }
+            };
+            ByteArrayOutputStream channel = new ByteArrayOutputStream();
+            try (ResultTextWriter toStream = new ResultTextWriter(stream, format, 4);
+                 ResultTextWriter toChannel = new ResultTextWriter(Channels.newChannel(channel), format, 4)) {
+                for (int i = 0; i < WRITES; i++) {
+                    toStream.write(i, results[i % results.length]);
+                    toChannel.write(i, results[i % results.length]);
+                }
+                assertTrue(writes.size() >= expected.size() / ResultTextWriter.BUFFER_SIZE, "writes before flush " + writes);
+            }
+            assertArrayEquals(expected.toByteArray(), stream.toByteArray(), "format " + format);
+            assertArrayEquals(expected.toByteArray(), channel.toByteArray(), "format " + format);
+            for (int len : writes) {
+                assertTrue(len > 0 && len <= ResultTextWriter.BUFFER_SIZE, "write of " + len);
+            }
+        }
+    }
+
+    @Test
+    void writingAllocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "JVM does not measure allocation");
+        long thread = Thread.currentThread().getId();
+        ModelUMResult result = new ModelUM(Samples.pixels("mgram2.png"), Samples.utils(), false).getResult();
+        OutputStream out = OutputStream.nullOutputStream();
+        for (int format : new int[] {ResultTextWriter.FORMAT_CSV, ResultTextWriter.FORMAT_JSON}) {
+            ResultTextWriter writer = new ResultTextWriter(out, format, 3);
+            // rounds go on until JIT has compiled writer and one allocates nothing
+            long allocated = Long.MAX_VALUE;
+            for (int round = 0; round < MAX_ROUNDS && allocated >= ALLOCATION_SLACK; round++) {
+                long before = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < WRITES; i++) {
+                    writer.write(i, result);
+                }
+                writer.flush();
+                allocated = threads.getThreadAllocatedBytes(thread) - before;
+            }
+            assertTrue(allocated < ALLOCATION_SLACK, "format " + format + ": " + allocated + " bytes in " + WRITES + " meteograms");
+        }
+    }
+
+    // parsed holder of zeros, scales of 0.25 and 0.5
+    private static ModelUMResult holder() {
+        ModelUMResult result = new ModelUMResult();
+        result.timestamp = 1_420_070_400_000L;
+        result.temperatureScaleParsed = true;
+        result.temperatureParsed = true;
+        result.pressureParsed = true;
+        result.otherParsed = true;
+        result.dateParsed = true;
+        result.temperature_precision = 0.25;
+        result.pressure_precision_hPa = 0.5;
+        return result;
+    }
+
+    private static void assertFormatted(int decimals, double value, String expected) throws IOException {
+        ModelUMResult result = holder();
+        result.temperature[0] = value;
+        String csv = text(ResultTextWriter.FORMAT_CSV, decimals, 0, result);
+        assertEquals(expected, csv.split("\n")[1].split(",", -1)[2], value + " with " + decimals + " decimals");
+        String json = text(ResultTextWriter.FORMAT_JSON, decimals, 0, result);
+        assertEquals(expected, array(json, "temperature", json.indexOf(",\"temperature\":["))[0], value + " with " + decimals + " decimals");
+    }
+
+    // value written with given decimals, or missing text for NOVALUE
+    private static void assertValue(double expected, int decimals, String text, String missing, String at) {
+        if (expected == ModelUM.NOVALUE || expected == -ModelUM.NOVALUE) {
+            assertEquals(missing, text, at);
+            return;
+        }
+        int point = text.indexOf('.');
+        assertEquals(decimals, point < 0 ? 0 : text.length() - point - 1, at + ": " + text);
+        assertTrue(!text.startsWith("-0") || Double.parseDouble(text) != 0, at + ": " + text);
+        assertEquals(expected, Double.parseDouble(text), 0.5 / Math.pow(10, decimals) + 1e-9, at);
+    }
+
+    // values of JSON array of given key starting at from
+    private static String[] array(String line, String key, int from) {
+        int start = from + key.length() + 5;
+        String[] values = line.substring(start, line.indexOf(']', start)).split(",", -1);
+        assertEquals(ModelUM.CHART_WIDTH, values.length, key);
+        return values;
+    }
+
+    private static String text(int format, int decimals, long point, ModelUMResult... results) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultTextWriter writer = new ResultTextWriter(out, format, decimals)) {
+            for (ModelUMResult result : results) {
+                writer.write(point, result);
+            }
+        }
+        return out.toString(StandardCharsets.US_ASCII.name());
+    }
+}
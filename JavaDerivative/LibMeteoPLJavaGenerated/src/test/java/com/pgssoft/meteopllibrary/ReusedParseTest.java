@@ -0,0 +1,66 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * ModelUM.parse() into one caller-owned ModelUMResult: the same values as a
+ * parser created for each image, and nothing allocated per parse in steady
+ * state, as measured by ThreadMXBean.getThreadAllocatedBytes().
+ */
+class ReusedParseTest {
+
+    private static final int PARSES = 200;
+    private static final int MAX_ROUNDS = 50;
+    // a parse allocating even one object would take more than this over PARSES
+    private static final long ALLOCATION_SLACK = 1024;
+
+    @Test
+    void reusedHolderHasValuesOfNewParser() throws Exception {
+        for (boolean heuristic : new boolean[] {true, false}) {
+            ModelUM parser = new ModelUM(Samples.utils(), heuristic);
+            ModelUMResult result = new ModelUMResult();
+            // every sample into the same holder, twice round, so that each parse overwrites another image
+            for (int round = 0; round < 2; round++) {
+                for (String name : Samples.NAMES) {
+                    ModelUMResult expected = new ModelUM(Samples.pixels(name), Samples.utils(), heuristic).getResult();
+                    parser.parse(Samples.source(name), result);
+                    Samples.assertSameValues(expected, result, name + ", heuristic " + heuristic);
+                    parser.parse(Samples.indexed(name), result);
+                    Samples.assertSameValues(expected, result, name + " decoded, heuristic " + heuristic);
+                }
+            }
+        }
+    }
+
+    @Test
+    void reusedHolderAllocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "JVM does not measure allocation");
+        long thread = Thread.currentThread().getId();
+        for (String name : Samples.NAMES) {
+            for (PixelSource pixels : new PixelSource[] {Samples.source(name), Samples.indexed(name)}) {
+                for (boolean heuristic : new boolean[] {true, false}) {
+                    ModelUM parser = new ModelUM(Samples.utils(), heuristic);
+                    ModelUMResult result = new ModelUMResult();
+                    // Vector API kernels box their vectors until JIT compiles them, so rounds go on until one
+                    // allocates nothing or there were too many of them
+                    long allocated = Long.MAX_VALUE;
+                    for (int round = 0; round < MAX_ROUNDS && allocated >= ALLOCATION_SLACK; round++) {
+                        long before = threads.getThreadAllocatedBytes(thread);
+                        for (int i = 0; i < PARSES; i++) {
+                            parser.parse(pixels, result);
+                        }
+                        allocated = threads.getThreadAllocatedBytes(thread) - before;
+                    }
+                    assertTrue(allocated < ALLOCATION_SLACK, name + " " + pixels.getClass().getSimpleName() +
+                            ", heuristic " + heuristic + ": " + allocated + " bytes in " + PARSES + " parses");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Vector API RowClassifier against pixel by pixel comparison of keys, on every
+ * row of the samples as int RGB and as palette indices. Runs only when the JVM
+ * has jdk.incubator.vector, as the build gives it to tests.
+ */
+class RowClassifierTest {
+
+    @Test
+    void vectorClassifierMatchesScalarKeys() throws Exception {
+        assumeTrue(RowClassifier.isVectorAvailable(), "jdk.incubator.vector is not in boot layer");
+        for (String name : Samples.NAMES) {
+            for (PixelSource pixels : new PixelSource[] {Samples.source(name), Samples.indexed(name)}) {
+                int[] keys = {
+                    pixels.keyOf(ModelUM.COLOR_TEMPERATURE_RED), pixels.keyOf(ModelUM.COLOR_TEMPERATURE_PERC_BLUE),
+                    pixels.keyOf(ModelUM.COLOR_TEMPERATURE_MINMAX_RED1), pixels.keyOf(ModelUM.COLOR_TEMPERATURE_MINMAX_RED2),
+                    pixels.keyOf(ModelUM.COLOR_TEMPERATURE_PERC_MINMAX_BLUE), pixels.keyOf(ModelUM.COLOR_BLACK),
+                    pixels.keyOf(ModelUM.COLOR_WHITE)};
+                RowClassifier classifier = RowClassifier.of(pixels, keys);
+                assertNotNull(classifier, name + ": " + pixels.getClass().getSimpleName() + " is not supported");
+                // whole rows and rows starting off word boundary, with a ragged end
+                assertRows(classifier, pixels, keys, 0, ModelUM.WIDTH, name);
+                assertRows(classifier, pixels, keys, ModelUM.CHART_START_COL, ModelUM.CHART_WIDTH, name);
+                assertRows(classifier, pixels, keys, 3, 67, name);
+            }
+        }
+    }
+
+    private static void assertRows(RowClassifier classifier, PixelSource pixels, int[] keys, int x0, int width,
+            String name) {
+        int words = RowClassifier.words(width);
+        long[] hits = new long[keys.length * words];
+        // planes of keys 1 ... count, first key left out
+        int first = 1;
+        int count = keys.length - 1;
+        for (int y = 0; y < pixels.getHeight(); y++) {
+            classifier.classify(pixels, x0, y, width, keys, first, count, hits);
+            for (int k = 0; k < count; k++) {
+                for (int w = 0; w < words; w++) {
+                    long expected = 0;
+                    for (int bit = 0; bit < 64 && (w << 6) + bit < width; bit++) {
+                        if (pixels.getKey(x0 + (w << 6) + bit, y) == keys[first + k]) {
+                            expected |= 1L << bit;
+                        }
+                    }
+                    assertEquals(expected, hits[k * words + w], name + " " + pixels.getClass().getSimpleName() +
+                            ", row " + y + " from " + x0 + ", key " + (first + k) + ", word " + w);
+                }
+            }
+        }
+    }
+}
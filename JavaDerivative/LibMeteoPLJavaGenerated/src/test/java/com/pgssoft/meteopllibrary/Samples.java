@@ -0,0 +1,107 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Meteograms of the top level Samples directory, a Utils for parsing them and
+ * comparison of parsed values.
+ *
+ * The directory is given by the libmeteopl.samples system property, which the
+ * build sets, or looked up from the working directory upwards.
+ */
+final class Samples implements Utils {
+
+    static final String[] NAMES = {"mgram1.png", "mgram2.png", "mgram_snow.png"};
+
+    // every series a holder has
+    static final int[] TYPES = {
+        ModelUM.TYPE_TEMPERATURE, ModelUM.TYPE_TEMPERATURE_MIN, ModelUM.TYPE_TEMPERATURE_MAX,
+        ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE, ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MIN,
+        ModelUM.TYPE_TEMPERATURE_PERCEPTIBLE_MAX, ModelUM.TYPE_PRESSURE_HPA, ModelUM.TYPE_PRESSURE_MMHG,
+        ModelUM.TYPE_DAYNIGHT};
+
+    // sample images do not carry the year: 2015, without java.time so that allocation measured is parser's own
+    private static final long YEAR_START_DAY = 16436;
+    private static final int[] MONTH_START_DAY = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    static Utils utils() {
+        return new Samples();
+    }
+
+    static File file(String name) throws IOException {
+        String property = System.getProperty("libmeteopl.samples");
+        if (property != null) {
+            return new File(property, name);
+        }
+        File dir = new File("").getAbsoluteFile();
+        while (dir != null) {
+            File candidate = new File(new File(dir, "Samples"), name);
+            if (candidate.isFile()) {
+                return candidate;
+            }
+            dir = dir.getParentFile();
+        }
+        throw new IOException("Cannot find Samples/" + name + ", set -Dlibmeteopl.samples=<dir>");
+    }
+
+    static byte[] bytes(String name) throws IOException {
+        return Files.readAllBytes(file(name).toPath());
+    }
+
+    // pixels as BufferedImage.getRGB() gives them
+    static int[] pixels(String name) throws IOException {
+        BufferedImage img = ImageIO.read(file(name));
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+
+    static PixelSource source(String name) throws IOException {
+        return PixelSource.ofRGB(pixels(name), ModelUM.WIDTH, ModelUM.HEIGHT);
+    }
+
+    // palette indices as PngDecoder gives them, a decoder of its own per image
+    static PixelSource indexed(String name) throws IOException {
+        byte[] png = bytes(name);
+        PngDecoder decoder = new PngDecoder();
+        try {
+            return decoder.decode(png, 0, png.length, PngDecoder.MODELUM_ROWS);
+        } finally {
+            decoder.end();
+        }
+    }
+
+    /**
+     * Fails unless both holders have the same values, bit for bit: every series,
+     * scales and time of the first column.
+     */
+    static void assertSameValues(ModelUMResult expected, ModelUMResult actual, String message) {
+        for (int type : TYPES) {
+            assertArrayEquals(expected.getSamples(type), actual.getSamples(type), message + ", type " + type);
+        }
+        assertEquals(expected.timestamp, actual.timestamp, message + ", timestamp");
+        assertEquals(expected.temperature_precision, actual.temperature_precision, message + ", temperature precision");
+        assertEquals(expected.temperature_row0, actual.temperature_row0, message + ", temperature row 0");
+        assertEquals(expected.pressure_precision_hPa, actual.pressure_precision_hPa, message + ", pressure precision");
+        assertEquals(expected.pressure_row0_hPa, actual.pressure_row0_hPa, message + ", pressure row 0");
+    }
+
+    @Override
+    public long getTimestamp(int m, int d, double hour) {
+        if (m < 1 || m > 12 || d < 1 || d > 31) {
+            return 0;
+        }
+        return (YEAR_START_DAY + MONTH_START_DAY[m - 1] + d - 1) * DAY_MILLIS + (long) (hour * 60 * 60 * 1000);
+    }
+
+    @Override
+    public void throwException(String description) {
+        throw new RuntimeException(description);
+    }
+}
@@ -0,0 +1,131 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ScaleCache gives the scales OCR reads, misses for label bands that changed
+ * by a pixel, and replaces one of the scales of a full set of slots.
+ */
+class ScaleCacheTest {
+
+    @Test
+    void cachedScalesAreThoseOfOcr() throws Exception {
+        ScaleCache cache = new ScaleCache(64);
+        ModelUM cached = new ModelUM(Samples.utils(), true, cache);
+        ModelUM plain = new ModelUM(Samples.utils(), true);
+        ModelUMResult expected = new ModelUMResult();
+        ModelUMResult result = new ModelUMResult();
+        for (String name : Samples.NAMES) {
+            plain.parse(Samples.source(name), expected);
+            cached.parse(Samples.source(name), result);
+            Samples.assertSameValues(expected, result, name);
+        }
+        assertEquals(2 * Samples.NAMES.length, cache.getHits() + cache.getMisses());
+        long misses = cache.getMisses();
+
+        // every scale is cached now
+        for (String name : Samples.NAMES) {
+            plain.parse(Samples.indexed(name), expected);
+            cached.parse(Samples.indexed(name), result);
+            Samples.assertSameValues(expected, result, name + " from cache");
+        }
+        assertEquals(misses, cache.getMisses());
+        assertEquals(4 * Samples.NAMES.length - misses, cache.getHits());
+    }
+
+    @Test
+    void changedLabelBandIsReadAgain() throws Exception {
+        ScaleCache cache = new ScaleCache(64);
+        ModelUM cached = new ModelUM(Samples.utils(), true, cache);
+        ModelUM plain = new ModelUM(Samples.utils(), true);
+        int[] pixels = Samples.pixels("mgram1.png");
+        ModelUMResult result = new ModelUMResult();
+        cached.parse(source(pixels), result);
+
+        // label digits with one pixel more or less: first black pixel of the band cleared, a white one set
+        for (int[] area : new int[][] {
+                {ModelUM.TEMPERATURE_TEXT_COL, ModelUM.TEMPERATURE_LABEL_ROW, ModelUM.TEMPERATURE_LABEL_WIDTH,
+                    ModelUM.TEMPERATURE_LABEL_ROWS},
+                {ModelUM.PRESSURE_TEXT_COL, ModelUM.PRESSURE_LABEL_ROW, ModelUM.PRESSURE_LABEL_WIDTH,
+                    ModelUM.PRESSURE_LABEL_ROWS}}) {
+            int black = find(pixels, area, true);
+            int background = find(pixels, area, false);
+            for (int[] changed : new int[][] {set(pixels, black, 0xfffbf0), set(pixels, background, ModelUM.COLOR_BLACK)}) {
+                long misses = cache.getMisses();
+                ModelUMResult expected = new ModelUMResult();
+                plain.parse(source(changed), expected);
+                cached.parse(source(changed), result);
+                assertEquals(misses + 1, cache.getMisses());
+                Samples.assertSameValues(expected, result, "label band at " + area[0] + ", " + area[1]);
+            }
+        }
+    }
+
+    @Test
+    void fullSlotsReplaceOneScale() {
+        // capacity 4: every slot is one of the 4 ways of any hash
+        ScaleCache cache = new ScaleCache(4);
+        int[] labels = new int[ScaleCache.LABELS];
+        for (int i = 0; i < 4; i++) {
+            assertFalse(cache.find(1, 2, band(i), labels));
+            cache.add(1, 2, band(i), new int[] {i, 10 * i, i + 1, 10 * i + 10});
+        }
+        assertEquals(4, cache.size());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(cache.find(1, 2, band(i), labels));
+            assertArrayEquals(new int[] {i, 10 * i, i + 1, 10 * i + 10}, labels);
+        }
+        // same band elsewhere in image is another scale
+        assertFalse(cache.find(1, 3, band(0), labels));
+
+        cache.add(1, 2, band(4), new int[] {4, 40, 5, 50});
+        assertEquals(4, cache.size());
+        assertTrue(cache.find(1, 2, band(4), labels));
+        assertArrayEquals(new int[] {4, 40, 5, 50}, labels);
+        int kept = 0;
+        for (int i = 0; i < 4; i++) {
+            if (cache.find(1, 2, band(i), labels)) {
+                kept++;
+            }
+        }
+        assertEquals(3, kept);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(cache.find(1, 2, band(4), labels));
+    }
+
+    private static long[] band(int i) {
+        long[] band = new long[20];
+        band[i] = 0b10110;
+        band[19 - i] = 1L << i;
+        return band;
+    }
+
+    // index of first pixel of area that is black, or that is not
+    private static int find(int[] pixels, int[] area, boolean black) {
+        for (int y = area[1]; y < area[1] + area[3]; y++) {
+            for (int x = area[0]; x < area[0] + area[2]; x++) {
+                if (((pixels[y * ModelUM.WIDTH + x] & 0xffffff) == ModelUM.COLOR_BLACK) == black) {
+                    return y * ModelUM.WIDTH + x;
+                }
+            }
+        }
+        throw new AssertionError("no such pixel in label band");
+    }
+
+    private static int[] set(int[] pixels, int index, int color) {
+        int[] copy = pixels.clone();
+        copy[index] = color;
+        return copy;
+    }
+
+    private static PixelSource source(int[] pixels) {
+        return PixelSource.ofRGB(pixels, ModelUM.WIDTH, ModelUM.HEIGHT);
+    }
+}
@@ -0,0 +1,176 @@
+package com.pgssoft.meteopllibrary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Column times of TimeIndex against the formula getTimestamp(px) computed on
+ * every call, and series read at given times: nearest column (the earlier one
+ * on a tie), lines between columns, missing samples and times off the chart.
+ */
+class TimeIndexTest {
+
+    private static final long TIMESTAMP = 1_420_070_400_000L + 123_456L;
+    private static final int LAST = ModelUM.CHART_WIDTH - 1;
+
+    @Test
+    void offsetsAreOldTimestampMaths() {
+        ModelUMResult result = new ModelUMResult();
+        result.timestamp = TIMESTAMP;
+        for (int px = -10; px < ModelUM.CHART_WIDTH + 10; px++) {
+            double part = px * 1.0d / ModelUM.CHART_WIDTH;
+            long expected = TIMESTAMP + (int) (part * (ModelUM.CHART_WIDTH / 168.0) * 24 * 60 * 60 * 1000);
+            assertEquals(expected, result.getTimestamp(px), "column " + px);
+            assertEquals(expected, new CompactResult(result).getTimestamp(px), "column " + px);
+            if (px >= 0 && px < ModelUM.CHART_WIDTH) {
+                assertEquals(expected - TIMESTAMP, TimeIndex.OFFSETS[px], "column " + px);
+                assertEquals(px, TimeIndex.column(TimeIndex.OFFSETS[px]), "column " + px);
+                if (px > 0) {
+                    assertEquals(px - 1, TimeIndex.column(TimeIndex.OFFSETS[px] - 1), "column " + px);
+                }
+            }
+        }
+    }
+
+    @Test
+    void nearestTieTakesEarlierColumn() {
+        ModelUMResult result = ramp();
+        int ties = 0;
+        for (int x = 0; x < LAST; x++) {
+            long from = TimeIndex.OFFSETS[x];
+            long to = TimeIndex.OFFSETS[x + 1];
+            long middle = (from + to) / 2;
+            if ((to - from) % 2 == 0) {
+                assertEquals(x, sampleAt(result, ModelUM.TYPE_TEMPERATURE, middle, ModelUM.RESAMPLE_NEAREST), "tie after column " + x);
+                ties++;
+            } else {
+                assertEquals(x, sampleAt(result, ModelUM.TYPE_TEMPERATURE, middle, ModelUM.RESAMPLE_NEAREST), "before middle of column " + x);
+                middle++;
+            }
+            assertEquals(x + 1, sampleAt(result, ModelUM.TYPE_TEMPERATURE, middle + 1, ModelUM.RESAMPLE_NEAREST), "after column " + x);
+            assertEquals(x, sampleAt(result, ModelUM.TYPE_TEMPERATURE, from, ModelUM.RESAMPLE_NEAREST), "column " + x);
+            assertEquals(x, sampleAt(result, ModelUM.TYPE_TEMPERATURE, from + 1, ModelUM.RESAMPLE_NEAREST), "column " + x);
+        }
+        assertTrue(ties > 0, "no column pair an even number of ms apart");
+    }
+
+    @Test
+    void linearIsLineBetweenColumns() {
+        ModelUMResult result = ramp();
+        for (int x = 0; x < LAST; x++) {
+            long from = TimeIndex.OFFSETS[x];
+            long to = TimeIndex.OFFSETS[x + 1];
+            assertEquals(x, sampleAt(result, ModelUM.TYPE_TEMPERATURE, from, ModelUM.RESAMPLE_LINEAR), "column " + x);
+            for (long offset = from + 1; offset < to; offset += (to - from) / 7) {
+                double expected = x + (double) (offset - from) / (to - from);
+                assertEquals(expected, sampleAt(result, ModelUM.TYPE_TEMPERATURE, offset, ModelUM.RESAMPLE_LINEAR), 1e-9,
+                        "column " + x + " + " + (offset - from) + " ms");
+            }
+        }
+        assertEquals(LAST, sampleAt(result, ModelUM.TYPE_TEMPERATURE, TimeIndex.OFFSETS[LAST], ModelUM.RESAMPLE_LINEAR));
+    }
+
+    @Test
+    void missingSamplesGiveMissingValueOfSeries() {
+        ModelUMResult result = ramp();
+        result.temperature[100] = ModelUM.NOVALUE;
+        result.temperatureMax[100] = -ModelUM.NOVALUE;
+        // heuristic may leave either marker in a series
+        result.temperatureMax[200] = ModelUM.NOVALUE;
+        long between99 = (TimeIndex.OFFSETS[99] + TimeIndex.OFFSETS[100]) / 2;
+        long between100 = (TimeIndex.OFFSETS[100] + TimeIndex.OFFSETS[101]) / 2;
+        long between200 = (TimeIndex.OFFSETS[200] + TimeIndex.OFFSETS[201]) / 2;
+
+        assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, between99, ModelUM.RESAMPLE_LINEAR));
+        assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, between100, ModelUM.RESAMPLE_LINEAR));
+        assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, TimeIndex.OFFSETS[100], ModelUM.RESAMPLE_NEAREST));
+        assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, TimeIndex.OFFSETS[100], ModelUM.RESAMPLE_LINEAR));
+        assertEquals(99, sampleAt(result, ModelUM.TYPE_TEMPERATURE, TimeIndex.OFFSETS[99], ModelUM.RESAMPLE_LINEAR));
+        assertEquals(99, sampleAt(result, ModelUM.TYPE_TEMPERATURE, TimeIndex.OFFSETS[99] + 1, ModelUM.RESAMPLE_NEAREST));
+        assertEquals(101, sampleAt(result, ModelUM.TYPE_TEMPERATURE, TimeIndex.OFFSETS[101] - 1, ModelUM.RESAMPLE_NEAREST));
+
+        assertEquals(-ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE_MAX, between99, ModelUM.RESAMPLE_LINEAR));
+        assertEquals(-ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE_MAX, TimeIndex.OFFSETS[100], ModelUM.RESAMPLE_NEAREST));
+        assertEquals(-ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE_MAX, between200, ModelUM.RESAMPLE_LINEAR));
+        assertEquals(-ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE_MAX, TimeIndex.OFFSETS[200], ModelUM.RESAMPLE_NEAREST));
+    }
+
+    @Test
+    void timesOffChartAreMissing() {
+        ModelUMResult result = ramp();
+        long end = TimeIndex.OFFSETS[LAST];
+        for (int mode : new int[] {ModelUM.RESAMPLE_NEAREST, ModelUM.RESAMPLE_LINEAR}) {
+            assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, -1, mode));
+            assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, -1_000_000_000L, mode));
+            assertEquals(-ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE_MAX, -1, mode));
+            assertEquals(0, sampleAt(result, ModelUM.TYPE_TEMPERATURE, 0, mode));
+            assertEquals(LAST, sampleAt(result, ModelUM.TYPE_TEMPERATURE, end, mode));
+            assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, end + 1, mode));
+            assertEquals(ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE, Long.MAX_VALUE - TIMESTAMP, mode));
+            assertEquals(-ModelUM.NOVALUE, sampleAt(result, ModelUM.TYPE_TEMPERATURE_MAX, end + 1, mode));
+        }
+    }
+
+    @Test
+    void resampleIsSampleAtEachTime() throws Exception {
+        ModelUMResult result = new ModelUM(Samples.pixels("mgram2.png"), Samples.utils(), false).getResult();
+        result.timestamp = TIMESTAMP;
+        int count = 200;
+        double[] into = new double[count];
+        long[] times = new long[count];
+        double[] atTimes = new double[count];
+        // steps shorter than a column, about one, longer; start before chart and inside it
+        for (long step : new long[] {60_000L, 514_285L, 514_286L, 3_600_000L}) {
+            for (long start : new long[] {TIMESTAMP - 5 * step - 1, TIMESTAMP - 1, TIMESTAMP, TIMESTAMP + 7_777_777L}) {
+                for (int mode : new int[] {ModelUM.RESAMPLE_NEAREST, ModelUM.RESAMPLE_LINEAR}) {
+                    for (int type : Samples.TYPES) {
+                        for (int i = 0; i < count; i++) {
+                            // backwards, so that times are not walked in order
+                            times[count - 1 - i] = start + i * step;
+                        }
+                        assertSame(into, result.resample(type, start, step, count, mode, into));
+                        assertSame(atTimes, result.resample(type, times, mode, atTimes));
+                        for (int i = 0; i < count; i++) {
+                            String at = "step " + step + ", start " + (start - TIMESTAMP) + ", mode " + mode + ", type " + type + ", time " + i;
+                            double expected = result.getSampleAt(type, start + i * step, mode);
+                            assertEquals(expected, into[i], at);
+                            assertEquals(expected, atTimes[count - 1 - i], at);
+                            if (start + i * step < TIMESTAMP) {
+                                assertEquals(TimeIndex.missingValue(type), expected, at);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void badArgumentsAreRefused() {
+        ModelUMResult result = ramp();
+        double[] into = new double[10];
+        assertThrows(IllegalArgumentException.class, () -> result.resample(ModelUM.TYPE_TEMPERATURE, TIMESTAMP, 0, 10, ModelUM.RESAMPLE_LINEAR, into));
+        assertThrows(IllegalArgumentException.class, () -> result.resample(ModelUM.TYPE_TEMPERATURE, TIMESTAMP, -60_000L, 10, ModelUM.RESAMPLE_NEAREST, into));
+        assertThrows(IllegalArgumentException.class, () -> result.getSampleAt(ModelUM.TYPE_TEMPERATURE, TIMESTAMP, 2));
+        assertThrows(IllegalArgumentException.class, () -> result.getSampleAt(ModelUM.TYPE_HUMIDITY, TIMESTAMP, ModelUM.RESAMPLE_NEAREST));
+    }
+
+    // temperature series of column numbers, maximum series too
+    private static ModelUMResult ramp() {
+        ModelUMResult result = new ModelUMResult();
+        result.timestamp = TIMESTAMP;
+        for (int x = 0; x < ModelUM.CHART_WIDTH; x++) {
+            result.temperature[x] = x;
+            result.temperatureMax[x] = x;
+        }
+        return result;
+    }
+
+    private static double sampleAt(ModelUMResult result, int type, long offset, int mode) {
+        return result.getSampleAt(type, TIMESTAMP + offset, mode);
+    }
+}
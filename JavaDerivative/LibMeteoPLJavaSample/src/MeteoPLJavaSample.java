@@ -1,10 +1,10 @@
 import com.pgssoft.meteopllibrary.*;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
 
@@ -22,13 +22,16 @@ public class MeteoPLJavaSample implements Utils {
 
     private void demo() throws IOException
     {
-        BufferedImage img = ImageIO.read(new File("../../samples/mgram2.png"));
-        int pixels[] = new int[img.getWidth()*img.getHeight()];
-
-        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
-
-
-        ModelUM modelUM = new ModelUM(data, this, true);
+        PngDecoder decoder = new PngDecoder();
+        ModelUM modelUM;
+        try (InputStream in = new FileInputStream("../../samples/mgram2.png"))
+        {
+            modelUM = new ModelUM(decoder.decode(in, PngDecoder.MODELUM_ROWS), this, true);
+        }
+        finally
+        {
+            decoder.end();
+        }
         double temp[] = modelUM.getSamples(modelUM.TYPE_TEMPERATURE);
         double tempPerc[] = modelUM.getSamples(modelUM.TYPE_TEMPERATURE_PERCEPTIBLE);
         double press[] = modelUM.getSamples(modelUM.TYPE_PRESSURE_HPA);
@@ -54,6 +57,18 @@ public class MeteoPLJavaSample implements Utils {
         writer.println();
         writer.close();
 
+        // the same data, all series, in binary columnar form (read with ResultFileReader)
+        try (ResultFileWriter binary = new ResultFileWriter(new BufferedOutputStream(new FileOutputStream("../../samples/mgram1javaoutput.umc"))))
+        {
+            binary.write(modelUM.getResult());
+        }
+
+        // and all series as CSV, one line per chart column, formatted without DecimalFormat
+        try (ResultTextWriter csv = new ResultTextWriter(new FileOutputStream("../../samples/mgram1javaoutput.csv"), ResultTextWriter.FORMAT_CSV, 2))
+        {
+            csv.write(0, modelUM.getResult());
+        }
+
     }
 
     @Override